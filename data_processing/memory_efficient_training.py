@@ -13,6 +13,7 @@ from concurrent.futures import ProcessPoolExecutor, ThreadPoolExecutor, as_compl
 import faker
 from datetime import datetime, timedelta
 import random
+import struct
 
 load_dotenv()
 
@@ -169,7 +170,9 @@ class MemoryEfficientRecommender:
                 user_id VARCHAR(100) PRIMARY KEY,
                 username VARCHAR(50),
                 password VARCHAR(100) DEFAULT '$2a$10$FDDfHJ8YeOvrBa41RZpdHOx7q1OVtsNoLXUIvcECnRXFBS8hTRoIC',
-                role VARCHAR(20) DEFAULT 'ROLE_USER'
+                role VARCHAR(20) DEFAULT 'ROLE_USER',
+                created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+                INDEX idx_users_created_at (created_at)
             )
         """)
 
@@ -303,6 +306,7 @@ class MemoryEfficientRecommender:
         if self.combined_model:
             combined_path = self.model_dir / 'combined_model.joblib'
             joblib.dump(self.combined_model, combined_path)
+            self.export_factors(self.combined_model, self.model_dir / 'combined_factors.bin')
         
         for category, model in self.category_models.items():
             model_path = self.model_dir / f"{category}_model.joblib"
@@ -312,6 +316,23 @@ class MemoryEfficientRecommender:
         with open(self.model_dir / 'test_user_id.txt', 'w') as f:
             f.write(self.test_user_id)
 
+    def export_factors(self, model, path):
+        """Writes the SVD factors in the layout the recommendation service's FactorModel reads."""
+        trainset = model.trainset
+        user_ids = [str(trainset.to_raw_uid(inner)) for inner in range(trainset.n_users)]
+        item_ids = [str(trainset.to_raw_iid(inner)) for inner in range(trainset.n_items)]
+        tmp_path = Path(str(path) + '.tmp')
+        with open(tmp_path, 'wb') as f:
+            f.write(struct.pack('>iiiiif', 0x524D4643, 1, model.n_factors, len(user_ids), len(item_ids), trainset.global_mean))
+            for raw_id in user_ids + item_ids:
+                encoded = raw_id.encode('utf-8')
+                f.write(struct.pack('>H', len(encoded)))
+                f.write(encoded)
+            for matrix in (model.bu, model.pu, model.bi, model.qi):
+                f.write(np.ascontiguousarray(matrix, dtype='>f4').tobytes())
+        # the service reloads on a changed file, so it must never see a partial one
+        os.replace(tmp_path, path)
+
     def load_models(self):
         combined_path = self.model_dir / 'combined_model.joblib'
         if combined_path.exists():
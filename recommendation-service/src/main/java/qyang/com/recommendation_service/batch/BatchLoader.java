@@ -0,0 +1,151 @@
+package qyang.com.recommendation_service.batch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Collects point lookups that arrive close together and resolves them with one call to a batch
+ * function, typically a single {@code IN} query. A batch is dispatched when the first key in it
+ * has waited {@code window}, or as soon as it holds {@code maxBatchSize} distinct keys, whichever
+ * comes first. Every caller gets its own future; callers asking for the same key in the same
+ * batch share one.
+ * <p>
+ * The batch function runs on {@code dispatcher}, outside the caller's transaction, and must
+ * return a map keyed like its input. Keys missing from the map complete with null; an exception
+ * completes every future of the batch exceptionally.
+ */
+public class BatchLoader<K, V> {
+	private final String name;
+	private final Function<List<K>, Map<K, V>> batchFunction;
+	private final long windowNanos;
+	private final int maxBatchSize;
+	private final ScheduledExecutorService scheduler;
+	private final Executor dispatcher;
+	// guards pending and flushTimer; a ReentrantLock does not pin virtual threads
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder keys = new LongAdder();
+	private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+	private ScheduledFuture<?> flushTimer;
+
+	public BatchLoader(String name, Function<List<K>, Map<K, V>> batchFunction, long windowNanos, int maxBatchSize,
+					   ScheduledExecutorService scheduler, Executor dispatcher) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be at least 1");
+		}
+		this.name = name;
+		this.batchFunction = batchFunction;
+		this.windowNanos = windowNanos;
+		this.maxBatchSize = maxBatchSize;
+		this.scheduler = scheduler;
+		this.dispatcher = dispatcher;
+	}
+
+	public CompletableFuture<V> load(K key) {
+		Map<K, CompletableFuture<V>> full = null;
+		CompletableFuture<V> future;
+		lock.lock();
+		try {
+			future = pending.get(key);
+			if (future != null) {
+				return future;
+			}
+			future = new CompletableFuture<>();
+			pending.put(key, future);
+			if (pending.size() >= maxBatchSize) {
+				full = takePending();
+			} else if (pending.size() == 1) {
+				flushTimer = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (full != null) {
+			dispatch(full);
+		}
+		return future;
+	}
+
+	/**
+	 * Blocking form of {@link #load}; rethrows the batch function's exception unwrapped.
+	 */
+	public V get(K key) {
+		try {
+			return load(key).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Dispatches whatever is pending without waiting for the window.
+	 */
+	public void flush() {
+		Map<K, CompletableFuture<V>> batch;
+		lock.lock();
+		try {
+			batch = takePending();
+		} finally {
+			lock.unlock();
+		}
+		if (!batch.isEmpty()) {
+			dispatch(batch);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	public long getKeyCount() {
+		return keys.sum();
+	}
+
+	private Map<K, CompletableFuture<V>> takePending() {
+		if (flushTimer != null) {
+			flushTimer.cancel(false);
+			flushTimer = null;
+		}
+		Map<K, CompletableFuture<V>> batch = pending;
+		pending = new LinkedHashMap<>();
+		return batch;
+	}
+
+	private void dispatch(Map<K, CompletableFuture<V>> batch) {
+		try {
+			dispatcher.execute(() -> run(batch));
+		} catch (RejectedExecutionException e) {
+			batch.values().forEach(future -> future.completeExceptionally(e));
+		}
+	}
+
+	private void run(Map<K, CompletableFuture<V>> batch) {
+		batches.increment();
+		keys.add(batch.size());
+		try {
+			Map<K, V> values = batchFunction.apply(new ArrayList<>(batch.keySet()));
+			batch.forEach((key, future) -> future.complete(values.get(key)));
+		} catch (Throwable e) {
+			batch.values().forEach(future -> future.completeExceptionally(e));
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package qyang.com.recommendation_service.batch;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Shared timer and dispatch threads for the {@link BatchLoader}s of the repository read paths.
+ * Micro-batching is off by default: each lookup then keeps its own query and no threads are
+ * started. The dispatch pool bounds how many batch queries run at once, so keep it well below
+ * the connection pool size.
+ */
+@Component
+public class BatchLoaderFactory {
+	private final boolean enabled;
+	private final Duration window;
+	private final int maxBatchSize;
+	private final MeterRegistry meterRegistry;
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService dispatcher;
+
+	public BatchLoaderFactory(@Value("${recommendation.batching.enabled:false}") boolean enabled,
+							  @Value("${recommendation.batching.window:1ms}") Duration window,
+							  @Value("${recommendation.batching.max-size:100}") int maxBatchSize,
+							  @Value("${recommendation.batching.threads:4}") int threads,
+							  MeterRegistry meterRegistry) {
+		this.enabled = enabled;
+		this.window = window;
+		this.maxBatchSize = maxBatchSize;
+		this.meterRegistry = meterRegistry;
+		this.scheduler = enabled ? Executors.newSingleThreadScheduledExecutor(daemonThreads("batch-loader-timer")) : null;
+		this.dispatcher = enabled ? Executors.newFixedThreadPool(threads, daemonThreads("batch-loader")) : null;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * A loader for {@code batchFunction}, or null when micro-batching is disabled.
+	 */
+	public <K, V> BatchLoader<K, V> create(String name, Function<List<K>, Map<K, V>> batchFunction) {
+		if (!enabled) {
+			return null;
+		}
+		BatchLoader<K, V> loader = new BatchLoader<>(name, batchFunction, window.toNanos(), maxBatchSize, scheduler, dispatcher);
+		FunctionCounter.builder("batch.loader.batches", loader, BatchLoader::getBatchCount)
+				.description("Batch queries issued")
+				.tag("loader", name)
+				.register(meterRegistry);
+		FunctionCounter.builder("batch.loader.keys", loader, BatchLoader::getKeyCount)
+				.description("Keys resolved by batch queries; divided by batches gives the mean batch size")
+				.tag("loader", name)
+				.register(meterRegistry);
+		return loader;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (enabled) {
+			scheduler.shutdownNow();
+			dispatcher.shutdown();
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -0,0 +1,218 @@
+package qyang.com.recommendation_service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.dtos.CacheStatsResponse;
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.models.CategoryRecommendationId;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process cache of finished recommendation responses.
+ * Entries are evicted by size (W-TinyLFU) and by time since write, so a
+ * refreshed batch job becomes visible after at most one TTL.
+ * <p>
+ * Misses go through a {@link SingleFlight} per cache, so when a popular entry expires or the
+ * cache starts cold only one load per key reaches the database and concurrent callers share it.
+ */
+@Component
+public class RecommendationCache {
+	private final boolean enabled;
+	private final Cache<String, RecommendationResponse> userRecommendations;
+	private final Cache<CategoryRecommendationId, CategoryRecommendationResponse> categoryRecommendations;
+	private final SingleFlight<String, RecommendationResponse> userLoads = new SingleFlight<>();
+	private final SingleFlight<CategoryRecommendationId, CategoryRecommendationResponse> categoryLoads = new SingleFlight<>();
+
+	public RecommendationCache(@Value("${recommendation.cache.enabled:true}") boolean enabled,
+							   @Value("${recommendation.cache.maximum-size:100000}") long maximumSize,
+							   @Value("${recommendation.cache.ttl:10m}") Duration ttl,
+							   MeterRegistry meterRegistry) {
+		this.enabled = enabled;
+		this.userRecommendations = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		this.categoryRecommendations = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, userRecommendations, "recommendations.user");
+		CaffeineCacheMetrics.monitor(meterRegistry, categoryRecommendations, "recommendations.category");
+		registerLoadMetrics(meterRegistry, userLoads, "recommendations.user");
+		registerLoadMetrics(meterRegistry, categoryLoads, "recommendations.category");
+	}
+
+	public RecommendationResponse getUserRecommendation(String userId) {
+		return enabled ? userRecommendations.getIfPresent(userId) : null;
+	}
+
+	/**
+	 * The cached response, or the result of {@code loader}, which is cached before it is returned.
+	 * Concurrent misses for the same user share one call to {@code loader}; an exception it throws
+	 * is rethrown to every waiting caller and nothing is cached.
+	 */
+	public RecommendationResponse getUserRecommendation(String userId, Supplier<RecommendationResponse> loader) {
+		RecommendationResponse cached = getUserRecommendation(userId);
+		if (cached != null) {
+			return cached;
+		}
+		return userLoads.load(userId, () -> {
+			// the previous flight may have filled the cache after the check above
+			RecommendationResponse loaded = getUserRecommendation(userId);
+			if (loaded == null) {
+				loaded = loader.get();
+				putUserRecommendation(loaded);
+			}
+			return loaded;
+		});
+	}
+
+	/**
+	 * Non-blocking form of {@link #getUserRecommendation(String, Supplier)}, sharing its loads:
+	 * a miss joins any load for the user already in flight, blocking or not.
+	 */
+	public CompletableFuture<RecommendationResponse> getUserRecommendationAsync(String userId, Supplier<CompletableFuture<RecommendationResponse>> loader) {
+		RecommendationResponse cached = getUserRecommendation(userId);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		return userLoads.loadAsync(userId, () -> {
+			RecommendationResponse loaded = getUserRecommendation(userId);
+			if (loaded != null) {
+				return CompletableFuture.completedFuture(loaded);
+			}
+			return loader.get().thenApply(response -> {
+				putUserRecommendation(response);
+				return response;
+			});
+		});
+	}
+
+	public void putUserRecommendation(RecommendationResponse response) {
+		if (enabled) {
+			userRecommendations.put(response.getUserId(), response);
+		}
+	}
+
+	public CategoryRecommendationResponse getCategoryRecommendation(CategoryRecommendationId id) {
+		return enabled ? categoryRecommendations.getIfPresent(id) : null;
+	}
+
+	public CategoryRecommendationResponse getCategoryRecommendation(CategoryRecommendationId id, Supplier<CategoryRecommendationResponse> loader) {
+		CategoryRecommendationResponse cached = getCategoryRecommendation(id);
+		if (cached != null) {
+			return cached;
+		}
+		return categoryLoads.load(id, () -> {
+			CategoryRecommendationResponse loaded = getCategoryRecommendation(id);
+			if (loaded == null) {
+				loaded = loader.get();
+				putCategoryRecommendation(loaded);
+			}
+			return loaded;
+		});
+	}
+
+	public CompletableFuture<CategoryRecommendationResponse> getCategoryRecommendationAsync(CategoryRecommendationId id, Supplier<CompletableFuture<CategoryRecommendationResponse>> loader) {
+		CategoryRecommendationResponse cached = getCategoryRecommendation(id);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		return categoryLoads.loadAsync(id, () -> {
+			CategoryRecommendationResponse loaded = getCategoryRecommendation(id);
+			if (loaded != null) {
+				return CompletableFuture.completedFuture(loaded);
+			}
+			return loader.get().thenApply(response -> {
+				putCategoryRecommendation(response);
+				return response;
+			});
+		});
+	}
+
+	public void putCategoryRecommendation(CategoryRecommendationResponse response) {
+		if (enabled) {
+			categoryRecommendations.put(new CategoryRecommendationId(response.getUserId(), response.getCategory()), response);
+		}
+	}
+
+	public void invalidateUser(String userId) {
+		userRecommendations.invalidate(userId);
+		categoryRecommendations.asMap().keySet().removeIf(id -> userId.equals(id.getUserId()));
+	}
+
+	public void invalidateAll() {
+		userRecommendations.invalidateAll();
+		categoryRecommendations.invalidateAll();
+	}
+
+	/**
+	 * Recomputes every cached entry in place, e.g. after the underlying data changed version,
+	 * so that the swap does not start from a cold cache. A loader is given the key and the cached
+	 * entry and returns the entry's replacement, which may be the entry itself; null drops it.
+	 * Loaders run on the calling thread without holding any of the cache's locks, and an entry
+	 * that was replaced while its loader ran keeps the newer value.
+	 */
+	public void refreshAll(BiFunction<String, RecommendationResponse, RecommendationResponse> userLoader,
+						   BiFunction<CategoryRecommendationId, CategoryRecommendationResponse, CategoryRecommendationResponse> categoryLoader) {
+		refreshAll(userRecommendations.asMap(), userLoader);
+		refreshAll(categoryRecommendations.asMap(), categoryLoader);
+	}
+
+	private static <K, V> void refreshAll(ConcurrentMap<K, V> entries, BiFunction<K, V, V> loader) {
+		for (Map.Entry<K, V> entry : entries.entrySet()) {
+			V cached = entry.getValue();
+			V refreshed = loader.apply(entry.getKey(), cached);
+			if (refreshed == null) {
+				entries.remove(entry.getKey(), cached);
+			} else if (refreshed != cached) {
+				entries.replace(entry.getKey(), cached, refreshed);
+			}
+		}
+	}
+
+	public CacheStatsResponse getUserRecommendationStats() {
+		return toStatsResponse(userRecommendations, userLoads);
+	}
+
+	public CacheStatsResponse getCategoryRecommendationStats() {
+		return toStatsResponse(categoryRecommendations, categoryLoads);
+	}
+
+	private static void registerLoadMetrics(MeterRegistry meterRegistry, SingleFlight<?, ?> loads, String cacheName) {
+		FunctionCounter.builder("cache.loads.coalesced", loads, SingleFlight::getCoalescedCount)
+				.description("Cache misses that waited for a load already in flight instead of loading again")
+				.tag("cache", cacheName)
+				.register(meterRegistry);
+		meterRegistry.gauge("cache.loads.in.flight", Tags.of("cache", cacheName), loads, SingleFlight::getInFlightCount);
+	}
+
+	private static CacheStatsResponse toStatsResponse(Cache<?, ?> cache, SingleFlight<?, ?> loads) {
+		CacheStats stats = cache.stats();
+		return new CacheStatsResponse(
+				cache.estimatedSize(),
+				stats.hitCount(),
+				stats.missCount(),
+				stats.evictionCount(),
+				stats.hitRate(),
+				loads.getLoadCount(),
+				loads.getCoalescedCount()
+		);
+	}
+}
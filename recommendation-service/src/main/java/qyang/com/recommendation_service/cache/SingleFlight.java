@@ -0,0 +1,109 @@
+package qyang.com.recommendation_service.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one load per key at a time. The first caller for a key runs the loader on its
+ * own thread; callers arriving while that load is in flight wait for it and get the same result
+ * or the same exception instead of loading again. Nothing is kept once the load completes, so
+ * this only collapses concurrent misses and never serves stale values.
+ * <p>
+ * {@link #loadAsync} shares the same flights without blocking: blocking and asynchronous callers
+ * for a key join whichever load is already running.
+ */
+public class SingleFlight<K, V> {
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	public V load(K key, Supplier<V> loader) {
+		CompletableFuture<V> flight = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+		if (existing != null) {
+			coalesced.increment();
+			return await(existing);
+		}
+
+		loads.increment();
+		try {
+			V value = loader.get();
+			flight.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	/**
+	 * Asynchronous form of {@link #load}: the first caller for a key starts the loader's future,
+	 * later callers get a future that completes with it. Every caller gets its own copy, so
+	 * completing or cancelling one does not affect the others.
+	 */
+	public CompletableFuture<V> loadAsync(K key, Supplier<CompletableFuture<V>> loader) {
+		CompletableFuture<V> flight = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+		if (existing != null) {
+			coalesced.increment();
+			return existing.copy();
+		}
+
+		loads.increment();
+		CompletableFuture<V> source;
+		try {
+			source = loader.get();
+		} catch (RuntimeException | Error e) {
+			source = CompletableFuture.failedFuture(e);
+		}
+		source.whenComplete((value, e) -> {
+			if (e != null) {
+				// unwrapped so that waiters in load() rethrow the loader's own exception
+				flight.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+			} else {
+				flight.complete(value);
+			}
+			inFlight.remove(key, flight);
+		});
+		return flight.copy();
+	}
+
+	/**
+	 * Loads that ran the loader.
+	 */
+	public long getLoadCount() {
+		return loads.sum();
+	}
+
+	/**
+	 * Callers that shared another caller's load instead of running their own.
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	private static <V> V await(CompletableFuture<V> flight) {
+		try {
+			return flight.join();
+		} catch (CompletionException e) {
+			// rethrow the leader's exception as is so that waiters map it to the same response
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			if (e.getCause() instanceof Error cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+}
@@ -5,20 +5,31 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import qyang.com.recommendation_service.dtos.ErrorResponse;
+import qyang.com.recommendation_service.dtos.KnownUserFilterStatsResponse;
+import qyang.com.recommendation_service.dtos.ProductListMigrationResponse;
 import qyang.com.recommendation_service.dtos.ProductRequest;
 import qyang.com.recommendation_service.dtos.ProductResponse;
 import qyang.com.recommendation_service.dtos.ProductUpdateRequest;
+import qyang.com.recommendation_service.dtos.RecommendationCacheStatsResponse;
+import qyang.com.recommendation_service.dtos.RecommendationSnapshotResponse;
+import qyang.com.recommendation_service.dtos.RecommendationSnapshotStatusResponse;
 import qyang.com.recommendation_service.exceptions.ResourceAlreadyExistsException;
 import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
 import qyang.com.recommendation_service.services.AdminService;
+import qyang.com.recommendation_service.services.ProductListMigrationService;
+import qyang.com.recommendation_service.services.RecommendationSnapshotService;
 
 @RestController
 @RequestMapping("/api/admin")
 public class AdminController {
 	private final AdminService adminService;
+	private final ProductListMigrationService productListMigrationService;
+	private final RecommendationSnapshotService recommendationSnapshotService;
 
-	public AdminController(AdminService adminService) {
+	public AdminController(AdminService adminService, ProductListMigrationService productListMigrationService, RecommendationSnapshotService recommendationSnapshotService) {
 		this.adminService = adminService;
+		this.productListMigrationService = productListMigrationService;
+		this.recommendationSnapshotService = recommendationSnapshotService;
 	}
 
 	@PostMapping("/products")
@@ -48,4 +59,95 @@ public class AdminController {
 					.body(new ErrorResponse("Error updating product"));
 		}
 	}
+
+	@GetMapping("/cache/recommendations")
+	public ResponseEntity<RecommendationCacheStatsResponse> getRecommendationCacheStats() {
+		return ResponseEntity.ok(adminService.getRecommendationCacheStats());
+	}
+
+	@DeleteMapping("/cache/recommendations")
+	public ResponseEntity<Void> invalidateRecommendationCache() {
+		adminService.invalidateRecommendationCache();
+		return ResponseEntity.noContent().build();
+	}
+
+	@DeleteMapping("/cache/recommendations/{userId}")
+	public ResponseEntity<Void> invalidateRecommendationCache(@PathVariable String userId) {
+		adminService.invalidateRecommendationCache(userId);
+		return ResponseEntity.noContent().build();
+	}
+
+	@PostMapping("/migrations/product-list-binary")
+	public ResponseEntity<?> migrateProductListsToBinary(@RequestParam(defaultValue = "false") boolean clearJson) {
+		try {
+			ProductListMigrationResponse response = productListMigrationService.migrateToBinary(clearJson);
+			return ResponseEntity.ok(response);
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error migrating product lists"));
+		}
+	}
+
+	@PostMapping("/snapshots/export")
+	public ResponseEntity<?> exportRecommendationSnapshot() {
+		try {
+			RecommendationSnapshotResponse response = recommendationSnapshotService.export();
+			return ResponseEntity.ok(response);
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error exporting recommendation snapshot"));
+		}
+	}
+
+	@GetMapping("/snapshots")
+	public ResponseEntity<RecommendationSnapshotStatusResponse> getRecommendationSnapshotStatus() {
+		return ResponseEntity.ok(recommendationSnapshotService.getStatus());
+	}
+
+	@PostMapping("/snapshots/{version}/activate")
+	public ResponseEntity<?> activateRecommendationSnapshot(@PathVariable String version) {
+		try {
+			RecommendationSnapshotStatusResponse response = recommendationSnapshotService.activateAsync(version);
+			return ResponseEntity.accepted().body(response);
+		} catch (ResourceNotFoundException e) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND)
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT)
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error activating recommendation snapshot"));
+		}
+	}
+
+	@PostMapping("/snapshots/rollback")
+	public ResponseEntity<?> rollbackRecommendationSnapshot() {
+		try {
+			RecommendationSnapshotStatusResponse response = recommendationSnapshotService.rollback();
+			return ResponseEntity.ok(response);
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT)
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error rolling back recommendation snapshot"));
+		}
+	}
+
+	@GetMapping("/known-users")
+	public ResponseEntity<KnownUserFilterStatsResponse> getKnownUserFilterStats() {
+		return ResponseEntity.ok(adminService.getKnownUserFilterStats());
+	}
+
+	@PostMapping("/known-users/rebuild")
+	public ResponseEntity<?> rebuildKnownUserFilter() {
+		try {
+			KnownUserFilterStatsResponse response = adminService.rebuildKnownUserFilter();
+			return ResponseEntity.ok(response);
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error rebuilding known user filter"));
+		}
+	}
 }
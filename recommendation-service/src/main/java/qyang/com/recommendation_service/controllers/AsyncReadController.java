@@ -0,0 +1,73 @@
+package qyang.com.recommendation_service.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import qyang.com.recommendation_service.dtos.ErrorResponse;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.services.ProductService;
+import qyang.com.recommendation_service.services.RecommendationService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Asynchronous variants of the recommendation and product reads. The servlet thread is released
+ * as soon as the lookup is started and the response is written when its future completes, so
+ * the number of requests in flight is not bounded by Tomcat's worker pool. Responses and status
+ * codes match the blocking endpoints.
+ */
+@RestController
+@RequestMapping("/api/async")
+public class AsyncReadController {
+	private final RecommendationService recommendationService;
+	private final ProductService productService;
+
+	public AsyncReadController(RecommendationService recommendationService, ProductService productService) {
+		this.recommendationService = recommendationService;
+		this.productService = productService;
+	}
+
+	@GetMapping("/recommendations/{userId}")
+	public CompletableFuture<ResponseEntity<?>> getUserRecommendations(@PathVariable String userId) {
+		return recommendationService.getUserRecommendationAsync(userId)
+				.<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+				.exceptionally(e -> toErrorResponse(e, "Error retrieving recommendations"));
+	}
+
+	@GetMapping("/recommendations/{userId}/{category}")
+	public CompletableFuture<ResponseEntity<?>> getCategoryRecommendations(@PathVariable String userId, @PathVariable String category) {
+		return recommendationService.getCategoryRecommendationAsync(userId, category)
+				.<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+				.exceptionally(e -> toErrorResponse(e, "Error retrieving category recommendations"));
+	}
+
+	@GetMapping("/products/{productId}")
+	public CompletableFuture<ResponseEntity<?>> getProductDetailByProductId(@PathVariable String productId) {
+		return productService.findByParentAsinAsync(productId)
+				.<ResponseEntity<?>>thenApply(product -> {
+					if (product == null) {
+						throw new ResourceNotFoundException("Product not found with ID: " + productId);
+					}
+					return ResponseEntity.ok(product);
+				})
+				.exceptionally(e -> toErrorResponse(e, "An error occurred while retrieving the product: " + productId));
+	}
+
+	private static ResponseEntity<?> toErrorResponse(Throwable e, String internalErrorMessage) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		if (cause instanceof ResourceNotFoundException) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND)
+					.body(new ErrorResponse(cause.getMessage()));
+		}
+		if (cause instanceof IllegalArgumentException) {
+			return ResponseEntity.badRequest()
+					.body(new ErrorResponse(cause.getMessage()));
+		}
+		return ResponseEntity.internalServerError()
+				.body(new ErrorResponse(internalErrorMessage));
+	}
+}
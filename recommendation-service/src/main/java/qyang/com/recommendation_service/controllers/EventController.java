@@ -0,0 +1,56 @@
+package qyang.com.recommendation_service.controllers;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import qyang.com.recommendation_service.dtos.ErrorResponse;
+import qyang.com.recommendation_service.dtos.EventBatchRequest;
+import qyang.com.recommendation_service.dtos.EventIngestResponse;
+import qyang.com.recommendation_service.dtos.EventRequest;
+import qyang.com.recommendation_service.exceptions.EventBufferFullException;
+import qyang.com.recommendation_service.services.EventService;
+
+import java.util.Collections;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/events")
+public class EventController {
+	private final EventService eventService;
+
+	public EventController(EventService eventService) {
+		this.eventService = eventService;
+	}
+
+	@PostMapping
+	public ResponseEntity<?> recordEvent(@RequestBody EventRequest request) {
+		return record(Collections.singletonList(request));
+	}
+
+	@PostMapping("/batch")
+	public ResponseEntity<?> recordEvents(@RequestBody EventBatchRequest request) {
+		return record(request.getEvents());
+	}
+
+	private ResponseEntity<?> record(List<EventRequest> events) {
+		try {
+			int accepted = eventService.record(events);
+			return ResponseEntity.status(HttpStatus.ACCEPTED)
+					.body(new EventIngestResponse(accepted));
+		} catch (EventBufferFullException e) {
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+					.header(HttpHeaders.RETRY_AFTER, "1")
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest()
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error recording events"));
+		}
+	}
+}
@@ -6,9 +6,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import qyang.com.recommendation_service.dtos.ErrorResponse;
 import qyang.com.recommendation_service.dtos.ProductResponse;
+import qyang.com.recommendation_service.dtos.RelatedProductsResponse;
 import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
 import qyang.com.recommendation_service.services.ProductService;
 
@@ -40,6 +42,23 @@ public class ProductController {
         }
     }
 
+    @GetMapping("/{productId}/related")
+    public ResponseEntity<?> getRelatedProducts(@PathVariable String productId, @RequestParam(defaultValue = "10") int limit) {
+        try {
+            RelatedProductsResponse related = productService.findRelated(productId, limit);
+            return ResponseEntity.ok(related);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(new ErrorResponse("An error occurred while retrieving related products: " + productId));
+        }
+    }
+
     @GetMapping("/category/{categoryName}")
     public ResponseEntity<?> getProductsByCategory(@PathVariable String categoryName) {
         try{
@@ -4,10 +4,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import qyang.com.recommendation_service.dtos.BatchRecommendationRequest;
+import qyang.com.recommendation_service.dtos.BatchRecommendationResponse;
 import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
 import qyang.com.recommendation_service.dtos.ErrorResponse;
+import qyang.com.recommendation_service.dtos.InteractionsRequest;
 import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
 import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.ProductFilter;
 import qyang.com.recommendation_service.services.RecommendationService;
 
 @RestController
@@ -20,30 +25,104 @@ public class RecommendationController {
 	}
 
 	@GetMapping("/{userId}")
-	public ResponseEntity<?> getUserRecommendations(@PathVariable String userId) {
+	public ResponseEntity<?> getUserRecommendations(@PathVariable String userId, @RequestParam(required = false) String expand,
+													@RequestParam(required = false) Float minPrice, @RequestParam(required = false) Float maxPrice,
+													@RequestParam(required = false) Float minRating, @RequestParam(required = false) String category,
+													@RequestParam(defaultValue = "false") boolean rerank, @RequestParam(defaultValue = "false") boolean diversify,
+													@RequestParam(defaultValue = "0") int offset, @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int limit) {
 		try {
-			RecommendationResponse recommendations = recommendationService.getUserRecommendation(userId);
+			ProductFilter filter = new ProductFilter(minPrice, maxPrice, minRating, category);
+			RecommendationResponse recommendations = recommendationService.getUserRecommendation(userId, expandsProducts(expand), filter, rerank, diversify, offset, limit);
 			return ResponseEntity.ok(recommendations);
 		} catch (ResourceNotFoundException e) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND)
 					.body(new ErrorResponse(e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest()
+					.body(new ErrorResponse(e.getMessage()));
 		} catch (Exception e) {
 			return ResponseEntity.internalServerError()
 					.body(new ErrorResponse("Error retrieving recommendations"));
 		}
 	}
 
+	@PostMapping("/batch")
+	public ResponseEntity<?> getBatchRecommendations(@RequestBody BatchRecommendationRequest request) {
+		try {
+			BatchRecommendationResponse recommendations = recommendationService.getUserRecommendations(request.getUserIds());
+			return ResponseEntity.ok(recommendations);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest()
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error retrieving batch recommendations"));
+		}
+	}
+
+	@PostMapping("/{userId}/interactions")
+	public ResponseEntity<?> foldInInteractions(@PathVariable String userId, @RequestBody InteractionsRequest request) {
+		try {
+			RecommendationResponse recommendations = recommendationService.foldInInteractions(userId, request.getInteractions());
+			return ResponseEntity.ok(recommendations);
+		} catch (ResourceNotFoundException e) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND)
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest()
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error folding in interactions"));
+		}
+	}
+
+	// a literal segment outranks {category}, so this wins over the single-category mapping
+	@GetMapping("/{userId}/categories")
+	public ResponseEntity<?> getAllCategoryRecommendations(@PathVariable String userId, @RequestParam(required = false) String expand) {
+		try {
+			UserCategoryRecommendationsResponse recommendations = recommendationService.getAllCategoryRecommendations(userId, expandsProducts(expand));
+			return ResponseEntity.ok(recommendations);
+		} catch (ResourceNotFoundException e) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND)
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest()
+					.body(new ErrorResponse(e.getMessage()));
+		} catch (Exception e) {
+			return ResponseEntity.internalServerError()
+					.body(new ErrorResponse("Error retrieving category recommendations"));
+		}
+	}
+
 	@GetMapping("/{userId}/{category}")
-	public ResponseEntity<?> getCategoryRecommendations(@PathVariable String userId, @PathVariable String category) {
+	public ResponseEntity<?> getCategoryRecommendations(@PathVariable String userId, @PathVariable String category, @RequestParam(required = false) String expand,
+														@RequestParam(defaultValue = "0") int offset, @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int limit) {
 		try {
-			CategoryRecommendationResponse recommendations = recommendationService.getCategoryRecommendation(userId, category);
+			CategoryRecommendationResponse recommendations = recommendationService.getCategoryRecommendation(userId, category, expandsProducts(expand), offset, limit);
 			return ResponseEntity.ok(recommendations);
 		} catch (ResourceNotFoundException e) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND)
 					.body(new ErrorResponse(e.getMessage()));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest()
+					.body(new ErrorResponse(e.getMessage()));
 		} catch (Exception e) {
 			return ResponseEntity.internalServerError()
 					.body(new ErrorResponse("Error retrieving category recommendations"));
 		}
 	}
+
+	private static boolean expandsProducts(String expand) {
+		if (expand == null) {
+			return false;
+		}
+		if (!"products".equals(expand)) {
+			throw new IllegalArgumentException("Unsupported expand value: " + expand);
+		}
+		return true;
+	}
 }
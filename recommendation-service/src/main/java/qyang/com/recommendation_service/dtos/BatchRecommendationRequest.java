@@ -0,0 +1,15 @@
+package qyang.com.recommendation_service.dtos;
+
+import java.util.List;
+
+public class BatchRecommendationRequest {
+	private List<String> userIds;
+
+	public List<String> getUserIds() {
+		return userIds;
+	}
+
+	public void setUserIds(List<String> userIds) {
+		this.userIds = userIds;
+	}
+}
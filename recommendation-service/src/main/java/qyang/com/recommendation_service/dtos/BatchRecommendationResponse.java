@@ -0,0 +1,22 @@
+package qyang.com.recommendation_service.dtos;
+
+import java.util.Map;
+
+public class BatchRecommendationResponse {
+	private Map<String, RecommendationResponse> recommendations;
+	// userId -> the message the single-user endpoint would have returned with its 404
+	private Map<String, String> notFound;
+
+	public BatchRecommendationResponse(Map<String, RecommendationResponse> recommendations, Map<String, String> notFound) {
+		this.recommendations = recommendations;
+		this.notFound = notFound;
+	}
+
+	public Map<String, RecommendationResponse> getRecommendations() {
+		return recommendations;
+	}
+
+	public Map<String, String> getNotFound() {
+		return notFound;
+	}
+}
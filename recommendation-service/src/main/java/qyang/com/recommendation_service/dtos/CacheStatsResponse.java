@@ -0,0 +1,49 @@
+package qyang.com.recommendation_service.dtos;
+
+public class CacheStatsResponse {
+	private long size;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private double hitRate;
+	private long loadCount;
+	private long coalescedLoadCount;
+
+	public CacheStatsResponse(long size, long hitCount, long missCount, long evictionCount, double hitRate, long loadCount, long coalescedLoadCount) {
+		this.size = size;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.hitRate = hitRate;
+		this.loadCount = loadCount;
+		this.coalescedLoadCount = coalescedLoadCount;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public double getHitRate() {
+		return hitRate;
+	}
+
+	public long getLoadCount() {
+		return loadCount;
+	}
+
+	public long getCoalescedLoadCount() {
+		return coalescedLoadCount;
+	}
+}
@@ -1,11 +1,24 @@
 package qyang.com.recommendation_service.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.util.RawValue;
+import qyang.com.recommendation_service.models.ProductListCodec;
+
 import java.util.List;
 
 public class CategoryRecommendationResponse {
 	private String userId;
 	private String category;
 	private List<String> productList;
+	// stored product_list JSON, written to the response body verbatim when present
+	private String productListJson;
+	// personalized, or popularity for the cold-start fallback
+	private String source = RecommendationResponse.SOURCE_PERSONALIZED;
+	// only set when the caller asked for ?expand=products
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private List<ProductResponse> products;
 
 	public CategoryRecommendationResponse() {
 	}
@@ -16,6 +29,14 @@ public class CategoryRecommendationResponse {
 		this.productList = productList;
 	}
 
+	public static CategoryRecommendationResponse ofJson(String userId, String category, String productListJson) {
+		CategoryRecommendationResponse response = new CategoryRecommendationResponse();
+		response.userId = userId;
+		response.category = category;
+		response.productListJson = productListJson;
+		return response;
+	}
+
 	public String getUserId() {
 		return userId;
 	}
@@ -32,11 +53,73 @@ public class CategoryRecommendationResponse {
 		this.category = category;
 	}
 
+	// decoded on every call rather than kept: cached responses are shared between request threads
+	// and are never modified once built
+	@JsonIgnore
 	public List<String> getProductList() {
+		if (productList == null && productListJson != null) {
+			return ProductListCodec.decodeJson(productListJson);
+		}
 		return productList;
 	}
 
+	@JsonProperty("productList")
 	public void setProductList(List<String> productList) {
 		this.productList = productList;
+		this.productListJson = null;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public void setSource(String source) {
+		this.source = source;
+	}
+
+	public List<ProductResponse> getProducts() {
+		return products;
+	}
+
+	public CategoryRecommendationResponse withProducts(List<ProductResponse> products) {
+		CategoryRecommendationResponse copy = new CategoryRecommendationResponse();
+		copy.userId = userId;
+		copy.category = category;
+		copy.productList = productList;
+		copy.productListJson = productListJson;
+		copy.source = source;
+		copy.products = products;
+		return copy;
+	}
+
+	public CategoryRecommendationResponse withProductList(List<String> productList) {
+		CategoryRecommendationResponse copy = new CategoryRecommendationResponse(userId, category, productList);
+		copy.source = source;
+		return copy;
+	}
+
+	/**
+	 * A copy holding only elements {@code offset} to {@code offset + limit - 1} of the list.
+	 * A stored JSON list that has not been decoded yet is read only up to the end of the slice.
+	 */
+	public CategoryRecommendationResponse slice(int offset, int limit) {
+		List<String> decoded = productList;
+		List<String> slice;
+		if (decoded != null) {
+			int from = Math.min(offset, decoded.size());
+			slice = List.copyOf(decoded.subList(from, (int) Math.min(decoded.size(), (long) from + limit)));
+		} else if (productListJson != null) {
+			slice = ProductListCodec.decodeJson(productListJson, offset, limit);
+		} else {
+			slice = List.of();
+		}
+		CategoryRecommendationResponse copy = new CategoryRecommendationResponse(userId, category, slice);
+		copy.source = source;
+		return copy;
+	}
+
+	@JsonProperty("productList")
+	private Object getSerializedProductList() {
+		return productListJson != null ? new RawValue(productListJson) : productList;
 	}
 }
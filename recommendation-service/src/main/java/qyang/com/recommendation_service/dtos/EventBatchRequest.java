@@ -0,0 +1,15 @@
+package qyang.com.recommendation_service.dtos;
+
+import java.util.List;
+
+public class EventBatchRequest {
+	private List<EventRequest> events;
+
+	public List<EventRequest> getEvents() {
+		return events;
+	}
+
+	public void setEvents(List<EventRequest> events) {
+		this.events = events;
+	}
+}
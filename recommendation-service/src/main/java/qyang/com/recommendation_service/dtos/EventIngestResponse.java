@@ -0,0 +1,14 @@
+package qyang.com.recommendation_service.dtos;
+
+public class EventIngestResponse {
+	// events buffered for writing; they reach the events table shortly after the response
+	private int accepted;
+
+	public EventIngestResponse(int accepted) {
+		this.accepted = accepted;
+	}
+
+	public int getAccepted() {
+		return accepted;
+	}
+}
@@ -0,0 +1,52 @@
+package qyang.com.recommendation_service.dtos;
+
+import java.time.Instant;
+
+public class EventRequest {
+	private String userId;
+	private String parentAsin;
+	private String type;
+	// optional; the time the event was accepted when missing
+	private Instant occurredAt;
+
+	public EventRequest() {
+	}
+
+	public EventRequest(String userId, String parentAsin, String type) {
+		this.userId = userId;
+		this.parentAsin = parentAsin;
+		this.type = type;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public String getParentAsin() {
+		return parentAsin;
+	}
+
+	public void setParentAsin(String parentAsin) {
+		this.parentAsin = parentAsin;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public Instant getOccurredAt() {
+		return occurredAt;
+	}
+
+	public void setOccurredAt(Instant occurredAt) {
+		this.occurredAt = occurredAt;
+	}
+}
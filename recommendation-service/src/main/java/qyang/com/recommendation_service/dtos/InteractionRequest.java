@@ -0,0 +1,30 @@
+package qyang.com.recommendation_service.dtos;
+
+public class InteractionRequest {
+	private String parentAsin;
+	private Float rating;
+
+	public InteractionRequest() {
+	}
+
+	public InteractionRequest(String parentAsin, Float rating) {
+		this.parentAsin = parentAsin;
+		this.rating = rating;
+	}
+
+	public String getParentAsin() {
+		return parentAsin;
+	}
+
+	public void setParentAsin(String parentAsin) {
+		this.parentAsin = parentAsin;
+	}
+
+	public Float getRating() {
+		return rating;
+	}
+
+	public void setRating(Float rating) {
+		this.rating = rating;
+	}
+}
@@ -0,0 +1,15 @@
+package qyang.com.recommendation_service.dtos;
+
+import java.util.List;
+
+public class InteractionsRequest {
+	private List<InteractionRequest> interactions;
+
+	public List<InteractionRequest> getInteractions() {
+		return interactions;
+	}
+
+	public void setInteractions(List<InteractionRequest> interactions) {
+		this.interactions = interactions;
+	}
+}
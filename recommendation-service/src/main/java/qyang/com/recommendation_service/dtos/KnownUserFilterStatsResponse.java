@@ -0,0 +1,43 @@
+package qyang.com.recommendation_service.dtos;
+
+public class KnownUserFilterStatsResponse {
+	private boolean ready;
+	private long insertions;
+	private long bitSize;
+	private int hashFunctions;
+	private long memoryBytes;
+	private double expectedFalsePositiveRate;
+
+	public KnownUserFilterStatsResponse(boolean ready, long insertions, long bitSize, int hashFunctions, long memoryBytes, double expectedFalsePositiveRate) {
+		this.ready = ready;
+		this.insertions = insertions;
+		this.bitSize = bitSize;
+		this.hashFunctions = hashFunctions;
+		this.memoryBytes = memoryBytes;
+		this.expectedFalsePositiveRate = expectedFalsePositiveRate;
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	public long getInsertions() {
+		return insertions;
+	}
+
+	public long getBitSize() {
+		return bitSize;
+	}
+
+	public int getHashFunctions() {
+		return hashFunctions;
+	}
+
+	public long getMemoryBytes() {
+		return memoryBytes;
+	}
+
+	public double getExpectedFalsePositiveRate() {
+		return expectedFalsePositiveRate;
+	}
+}
@@ -0,0 +1,31 @@
+package qyang.com.recommendation_service.dtos;
+
+public class ProductListMigrationResponse {
+	private long recommendationsMigrated;
+	private long categoryRecommendationsMigrated;
+	private int dictionarySize;
+	private long productListsCleared;
+
+	public ProductListMigrationResponse(long recommendationsMigrated, long categoryRecommendationsMigrated, int dictionarySize, long productListsCleared) {
+		this.recommendationsMigrated = recommendationsMigrated;
+		this.categoryRecommendationsMigrated = categoryRecommendationsMigrated;
+		this.dictionarySize = dictionarySize;
+		this.productListsCleared = productListsCleared;
+	}
+
+	public long getRecommendationsMigrated() {
+		return recommendationsMigrated;
+	}
+
+	public long getCategoryRecommendationsMigrated() {
+		return categoryRecommendationsMigrated;
+	}
+
+	public int getDictionarySize() {
+		return dictionarySize;
+	}
+
+	public long getProductListsCleared() {
+		return productListsCleared;
+	}
+}
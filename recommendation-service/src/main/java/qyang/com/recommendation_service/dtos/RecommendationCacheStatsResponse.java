@@ -0,0 +1,19 @@
+package qyang.com.recommendation_service.dtos;
+
+public class RecommendationCacheStatsResponse {
+	private CacheStatsResponse userRecommendations;
+	private CacheStatsResponse categoryRecommendations;
+
+	public RecommendationCacheStatsResponse(CacheStatsResponse userRecommendations, CacheStatsResponse categoryRecommendations) {
+		this.userRecommendations = userRecommendations;
+		this.categoryRecommendations = categoryRecommendations;
+	}
+
+	public CacheStatsResponse getUserRecommendations() {
+		return userRecommendations;
+	}
+
+	public CacheStatsResponse getCategoryRecommendations() {
+		return categoryRecommendations;
+	}
+}
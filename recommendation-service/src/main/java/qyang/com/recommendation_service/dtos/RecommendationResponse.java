@@ -1,10 +1,27 @@
 package qyang.com.recommendation_service.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.util.RawValue;
+import qyang.com.recommendation_service.models.ProductListCodec;
+
 import java.util.List;
 
 public class RecommendationResponse {
+	public static final String SOURCE_PERSONALIZED = "personalized";
+	public static final String SOURCE_POPULARITY = "popularity";
+	public static final String SOURCE_MODEL = "model";
+
 	private String userId;
 	private List<String> productList;
+	// stored product_list JSON, written to the response body verbatim when present
+	private String productListJson;
+	// personalized, or popularity for the cold-start fallback
+	private String source = SOURCE_PERSONALIZED;
+	// only set when the caller asked for ?expand=products
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private List<ProductResponse> products;
 
 	public RecommendationResponse() {
 	}
@@ -14,6 +31,13 @@ public class RecommendationResponse {
 		this.productList = productList;
 	}
 
+	public static RecommendationResponse ofJson(String userId, String productListJson) {
+		RecommendationResponse response = new RecommendationResponse();
+		response.userId = userId;
+		response.productListJson = productListJson;
+		return response;
+	}
+
 	public String getUserId() {
 		return userId;
 	}
@@ -22,11 +46,72 @@ public class RecommendationResponse {
 		this.userId = userId;
 	}
 
+	// decoded on every call rather than kept: cached responses are shared between request threads
+	// and are never modified once built
+	@JsonIgnore
 	public List<String> getProductList() {
+		if (productList == null && productListJson != null) {
+			return ProductListCodec.decodeJson(productListJson);
+		}
 		return productList;
 	}
 
+	@JsonProperty("productList")
 	public void setProductList(List<String> productList) {
 		this.productList = productList;
+		this.productListJson = null;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public void setSource(String source) {
+		this.source = source;
+	}
+
+	public List<ProductResponse> getProducts() {
+		return products;
+	}
+
+	public RecommendationResponse withProducts(List<ProductResponse> products) {
+		RecommendationResponse copy = new RecommendationResponse();
+		copy.userId = userId;
+		copy.productList = productList;
+		copy.productListJson = productListJson;
+		copy.source = source;
+		copy.products = products;
+		return copy;
+	}
+
+	public RecommendationResponse withProductList(List<String> productList) {
+		RecommendationResponse copy = new RecommendationResponse(userId, productList);
+		copy.source = source;
+		return copy;
+	}
+
+	/**
+	 * A copy holding only elements {@code offset} to {@code offset + limit - 1} of the list.
+	 * A stored JSON list that has not been decoded yet is read only up to the end of the slice.
+	 */
+	public RecommendationResponse slice(int offset, int limit) {
+		List<String> decoded = productList;
+		List<String> slice;
+		if (decoded != null) {
+			int from = Math.min(offset, decoded.size());
+			slice = List.copyOf(decoded.subList(from, (int) Math.min(decoded.size(), (long) from + limit)));
+		} else if (productListJson != null) {
+			slice = ProductListCodec.decodeJson(productListJson, offset, limit);
+		} else {
+			slice = List.of();
+		}
+		RecommendationResponse copy = new RecommendationResponse(userId, slice);
+		copy.source = source;
+		return copy;
+	}
+
+	@JsonProperty("productList")
+	private Object getSerializedProductList() {
+		return productListJson != null ? new RawValue(productListJson) : productList;
 	}
 }
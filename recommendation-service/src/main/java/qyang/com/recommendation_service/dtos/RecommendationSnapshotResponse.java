@@ -0,0 +1,49 @@
+package qyang.com.recommendation_service.dtos;
+
+public class RecommendationSnapshotResponse {
+	private String version;
+	private String path;
+	private long createdAt;
+	private int users;
+	private int categoryRecommendations;
+	private int products;
+	private long sizeBytes;
+
+	public RecommendationSnapshotResponse(String version, String path, long createdAt, int users, int categoryRecommendations, int products, long sizeBytes) {
+		this.version = version;
+		this.path = path;
+		this.createdAt = createdAt;
+		this.users = users;
+		this.categoryRecommendations = categoryRecommendations;
+		this.products = products;
+		this.sizeBytes = sizeBytes;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	public int getUsers() {
+		return users;
+	}
+
+	public int getCategoryRecommendations() {
+		return categoryRecommendations;
+	}
+
+	public int getProducts() {
+		return products;
+	}
+
+	public long getSizeBytes() {
+		return sizeBytes;
+	}
+}
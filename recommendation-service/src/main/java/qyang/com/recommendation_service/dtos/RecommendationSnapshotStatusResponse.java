@@ -0,0 +1,41 @@
+package qyang.com.recommendation_service.dtos;
+
+import java.util.List;
+
+public class RecommendationSnapshotStatusResponse {
+	private RecommendationSnapshotResponse active;
+	// kept open for rollback
+	private RecommendationSnapshotResponse previous;
+	private String loadingVersion;
+	private String lastError;
+	// newest first
+	private List<String> availableVersions;
+
+	public RecommendationSnapshotStatusResponse(RecommendationSnapshotResponse active, RecommendationSnapshotResponse previous, String loadingVersion, String lastError, List<String> availableVersions) {
+		this.active = active;
+		this.previous = previous;
+		this.loadingVersion = loadingVersion;
+		this.lastError = lastError;
+		this.availableVersions = availableVersions;
+	}
+
+	public RecommendationSnapshotResponse getActive() {
+		return active;
+	}
+
+	public RecommendationSnapshotResponse getPrevious() {
+		return previous;
+	}
+
+	public String getLoadingVersion() {
+		return loadingVersion;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public List<String> getAvailableVersions() {
+		return availableVersions;
+	}
+}
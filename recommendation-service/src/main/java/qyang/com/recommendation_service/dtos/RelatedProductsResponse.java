@@ -0,0 +1,22 @@
+package qyang.com.recommendation_service.dtos;
+
+import java.util.List;
+
+public class RelatedProductsResponse {
+	private String parentAsin;
+	// most often interacted with by the same users, best first
+	private List<String> relatedProducts;
+
+	public RelatedProductsResponse(String parentAsin, List<String> relatedProducts) {
+		this.parentAsin = parentAsin;
+		this.relatedProducts = relatedProducts;
+	}
+
+	public String getParentAsin() {
+		return parentAsin;
+	}
+
+	public List<String> getRelatedProducts() {
+		return relatedProducts;
+	}
+}
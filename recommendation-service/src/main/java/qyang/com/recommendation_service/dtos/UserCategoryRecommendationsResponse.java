@@ -0,0 +1,21 @@
+package qyang.com.recommendation_service.dtos;
+
+import java.util.List;
+
+public class UserCategoryRecommendationsResponse {
+	private String userId;
+	private List<CategoryRecommendationResponse> categories;
+
+	public UserCategoryRecommendationsResponse(String userId, List<CategoryRecommendationResponse> categories) {
+		this.userId = userId;
+		this.categories = categories;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public List<CategoryRecommendationResponse> getCategories() {
+		return categories;
+	}
+}
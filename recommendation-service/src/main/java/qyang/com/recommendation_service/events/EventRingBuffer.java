@@ -0,0 +1,110 @@
+package qyang.com.recommendation_service.events;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free ring buffer for many producers and one consumer. Every slot carries a
+ * sequence number that says whose turn it is: a producer may fill the slot at position {@code p}
+ * when its sequence is {@code p}, the consumer may take it when it is {@code p + 1}, and taking it
+ * hands it to the producer of the next lap. Producers claim positions with one CAS on the tail
+ * and never wait for each other or for the consumer; a full buffer fails the offer instead.
+ */
+public class EventRingBuffer<E> {
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	// only the consumer thread moves the head; the atomic just publishes it to size()
+	private final AtomicLong head = new AtomicLong();
+
+	public EventRingBuffer(int requestedCapacity) {
+		if (requestedCapacity < 1 || requestedCapacity > 1 << 30) {
+			throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+		}
+		// rounded up to a power of two so that a position maps to its slot with a mask
+		this.capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+		this.mask = capacity - 1;
+		this.elements = new AtomicReferenceArray<>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Adds all of {@code batch} or, when there is not room for all of it, none of it.
+	 */
+	public boolean offer(List<? extends E> batch) {
+		int n = batch.size();
+		if (n == 0) {
+			return true;
+		}
+		if (n > capacity) {
+			return false;
+		}
+		long position;
+		while (true) {
+			position = tail.get();
+			long last = position + n - 1;
+			// the consumer frees slots in order, so the last slot of the range being free means
+			// the whole range is
+			long sequence = sequences.get((int) last & mask);
+			if (sequence == last) {
+				if (tail.compareAndSet(position, position + n)) {
+					break;
+				}
+			} else if (sequence < last) {
+				return false;
+			}
+			// another producer claimed the range first; retry from the new tail
+		}
+		for (int i = 0; i < n; i++) {
+			int slot = (int) (position + i) & mask;
+			elements.lazySet(slot, batch.get(i));
+			sequences.set(slot, position + i + 1);
+		}
+		return true;
+	}
+
+	public boolean offer(E element) {
+		return offer(List.of(element));
+	}
+
+	/**
+	 * Moves up to {@code max} elements, oldest first, into {@code sink}. Must only ever be called
+	 * from one thread at a time.
+	 */
+	public int drainTo(List<? super E> sink, int max) {
+		long position = head.get();
+		int drained = 0;
+		while (drained < max) {
+			int slot = (int) position & mask;
+			if (sequences.get(slot) != position + 1) {
+				// empty, or the producer that claimed this slot has not written it yet
+				break;
+			}
+			sink.add(elements.get(slot));
+			elements.lazySet(slot, null);
+			sequences.set(slot, position + capacity);
+			position++;
+			drained++;
+		}
+		head.lazySet(position);
+		return drained;
+	}
+
+	/**
+	 * Claimed slots not yet drained; approximate while producers and the consumer are running.
+	 */
+	public int size() {
+		return (int) Math.max(0, Math.min(capacity, tail.get() - head.get()));
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,11 @@
+package qyang.com.recommendation_service.events;
+
+/**
+ * Kinds of interaction recorded by {@code POST /api/events}, stored by name.
+ */
+public enum EventType {
+	VIEW,
+	CLICK,
+	ADD_TO_CART,
+	PURCHASE
+}
@@ -0,0 +1,146 @@
+package qyang.com.recommendation_service.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind for interaction events. Request threads only put events into an
+ * {@link EventRingBuffer}, so their latency does not depend on the database; one dedicated
+ * writer thread drains the buffer and inserts each batch of up to {@code batch-size} events with
+ * one JDBC batch in one transaction. When the buffer is full, {@link #submit} refuses the events
+ * and the caller is expected to push back on its client.
+ * <p>
+ * Delivery is at most once: a batch whose insert fails is logged, counted in
+ * {@code events.failed} and dropped, and events still buffered when the process dies are lost.
+ * On a normal shutdown the buffer is drained before the writer stops.
+ */
+@Component
+@Slf4j
+public class EventWriter {
+	static final String INSERT_SQL = "INSERT INTO events (user_id, parent_asin, event_type, occurred_at) VALUES (?, ?, ?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate batchTransaction;
+	private final EventRingBuffer<InteractionEvent> buffer;
+	private final int batchSize;
+	private final long flushIntervalNanos;
+	private final Counter accepted;
+	private final Counter rejected;
+	private final Counter written;
+	private final Counter failed;
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	public EventWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+					   @Value("${recommendation.events.buffer-size:65536}") int bufferSize,
+					   @Value("${recommendation.events.batch-size:500}") int batchSize,
+					   @Value("${recommendation.events.flush-interval:10ms}") Duration flushInterval) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("recommendation.events.batch-size must be at least 1");
+		}
+		this.jdbcTemplate = jdbcTemplate;
+		this.batchTransaction = new TransactionTemplate(transactionManager);
+		this.buffer = new EventRingBuffer<>(bufferSize);
+		this.batchSize = batchSize;
+		this.flushIntervalNanos = flushInterval.toNanos();
+		this.accepted = Counter.builder("events.accepted").description("Events accepted into the buffer").register(meterRegistry);
+		this.rejected = Counter.builder("events.rejected").description("Events refused because the buffer was full").register(meterRegistry);
+		this.written = Counter.builder("events.written").description("Events inserted into the events table").register(meterRegistry);
+		this.failed = Counter.builder("events.failed").description("Events dropped because their batch insert failed").register(meterRegistry);
+		Gauge.builder("events.buffer.size", buffer, EventRingBuffer::size)
+				.description("Events waiting for the writer")
+				.register(meterRegistry);
+		this.writer = new Thread(this::run, "event-writer");
+		this.writer.setDaemon(true);
+	}
+
+	@PostConstruct
+	public void start() {
+		writer.start();
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		LockSupport.unpark(writer);
+		writer.join(TimeUnit.SECONDS.toMillis(10));
+	}
+
+	/**
+	 * Buffers all of {@code events}, or none of them when there is not room for all.
+	 */
+	public boolean submit(List<InteractionEvent> events) {
+		if (buffer.offer(events)) {
+			accepted.increment(events.size());
+			return true;
+		}
+		rejected.increment(events.size());
+		return false;
+	}
+
+	public long getWrittenCount() {
+		return (long) written.count();
+	}
+
+	private void run() {
+		List<InteractionEvent> batch = new ArrayList<>(batchSize);
+		while (running) {
+			int drained = buffer.drainTo(batch, batchSize);
+			if (drained > 0) {
+				write(batch);
+				batch.clear();
+			}
+			// a full batch means more are probably waiting
+			if (drained < batchSize) {
+				LockSupport.parkNanos(this, flushIntervalNanos);
+			}
+		}
+		while (buffer.drainTo(batch, batchSize) > 0) {
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	private void write(List<InteractionEvent> batch) {
+		try {
+			batchTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+				@Override
+				public void setValues(PreparedStatement statement, int i) throws SQLException {
+					InteractionEvent event = batch.get(i);
+					statement.setString(1, event.userId());
+					statement.setString(2, event.parentAsin());
+					statement.setString(3, event.type().name());
+					statement.setTimestamp(4, Timestamp.from(event.occurredAt()));
+				}
+
+				@Override
+				public int getBatchSize() {
+					return batch.size();
+				}
+			}));
+			written.increment(batch.size());
+		} catch (RuntimeException e) {
+			failed.increment(batch.size());
+			log.error("Dropped a batch of {} events that could not be written", batch.size(), e);
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package qyang.com.recommendation_service.events;
+
+import java.time.Instant;
+
+/**
+ * One accepted interaction, as it waits in the buffer and as it is written to {@code events}.
+ */
+public record InteractionEvent(String userId, String parentAsin, EventType type, Instant occurredAt) {
+}
@@ -0,0 +1,10 @@
+package qyang.com.recommendation_service.exceptions;
+
+/**
+ * The event buffer has no room for the submitted events; the client should retry later.
+ */
+public class EventBufferFullException extends RuntimeException {
+    public EventBufferFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package qyang.com.recommendation_service.exceptions;
+
+/**
+ * The user exists but has no stored recommendation, as opposed to an unknown user.
+ */
+public class RecommendationNotFoundException extends ResourceNotFoundException {
+    public RecommendationNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,112 @@
+package qyang.com.recommendation_service.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter over strings. Adds are lock-free (CAS on the bit words), so
+ * concurrent writers never lose a bit and readers never block.
+ */
+public class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final AtomicLong insertions = new AtomicLong();
+
+    private BloomFilter(long bitSize, int hashFunctions) {
+        this.words = new AtomicLongArray(Math.toIntExact((bitSize + 63) >>> 6));
+        this.bitSize = bitSize;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Sizes the filter so that it stays at {@code falsePositiveRate} until
+     * {@code expectedInsertions} values have been added.
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        long n = Math.max(1, expectedInsertions);
+        long bits = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        int k = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        return new BloomFilter(bits, k);
+    }
+
+    public void add(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitSize);
+            setBit(bit);
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    public long getMemoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    /**
+     * False positive rate for the number of values added so far: (1 - e^(-kn/m))^k.
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashFunctions * insertions.get() / bitSize), hashFunctions);
+    }
+
+    private void setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(index, word, word | mask));
+    }
+
+    // FNV-1a over the UTF-8 bytes, finished with the murmur3 fmix64 avalanche
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,264 @@
+package qyang.com.recommendation_service.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Item-to-item graph of products that the same users interacted with, in compressed sparse row
+ * form: product {@code p}'s neighbors are {@code neighbors[offsets[p]..offsets[p + 1])}, best
+ * first, with their similarities at the same positions of {@code weights}. The similarity of two
+ * products is the cosine of their per-user interaction weight vectors,
+ * {@code sum_u w_ua * w_ub / sqrt(sum_u w_ua^2 * sum_u w_ub^2)}, so that a product everybody
+ * touches is not everybody's neighbor. Only the best {@code maxNeighbors} of each product are kept.
+ * <p>
+ * Reading a product's neighbors is an id lookup and a walk over a slice of two primitive arrays;
+ * nothing is allocated per neighbor. Instances are immutable and safe to share between threads.
+ */
+public final class CoOccurrenceGraph {
+	private final String[] asins;
+	private final Map<String, Integer> idByAsin;
+	private final int[] offsets;
+	private final int[] neighbors;
+	private final float[] weights;
+
+	private CoOccurrenceGraph(String[] asins, Map<String, Integer> idByAsin, int[] offsets, int[] neighbors, float[] weights) {
+		this.asins = asins;
+		this.idByAsin = idByAsin;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.weights = weights;
+	}
+
+	public static CoOccurrenceGraph empty() {
+		return new CoOccurrenceGraph(new String[0], Map.of(), new int[1], new int[0], new float[0]);
+	}
+
+	/**
+	 * The id of {@code asin}, or -1 when no user interacted with it together with another product.
+	 */
+	public int indexOf(String asin) {
+		Integer id = idByAsin.get(asin);
+		return id != null ? id : -1;
+	}
+
+	public String asinOf(int id) {
+		return asins[id];
+	}
+
+	/**
+	 * Position of the first neighbor of {@code id} in {@link #neighbor} and {@link #weight}.
+	 */
+	public int start(int id) {
+		return offsets[id];
+	}
+
+	/**
+	 * Position just past the last neighbor of {@code id}.
+	 */
+	public int end(int id) {
+		return offsets[id + 1];
+	}
+
+	public int neighbor(int position) {
+		return neighbors[position];
+	}
+
+	public float weight(int position) {
+		return weights[position];
+	}
+
+	/**
+	 * The ASINs of the best {@code limit} neighbors of {@code asin}, best first, or null when the
+	 * product is not in the graph.
+	 */
+	public List<String> related(String asin, int limit) {
+		int id = indexOf(asin);
+		if (id < 0) {
+			return null;
+		}
+		int start = offsets[id];
+		String[] related = new String[Math.min(offsets[id + 1] - start, limit)];
+		for (int i = 0; i < related.length; i++) {
+			related[i] = asins[neighbors[start + i]];
+		}
+		return List.of(related);
+	}
+
+	public int size() {
+		return asins.length;
+	}
+
+	public int getEdgeCount() {
+		return neighbors.length;
+	}
+
+	/**
+	 * Accumulates users' interactions one user at a time. Pair weights are summed in an
+	 * open-addressing table keyed by the two product ids packed into one long, so building does
+	 * not box a value per pair either.
+	 */
+	public static final class Builder {
+		private final Map<String, Integer> idByAsin = new HashMap<>();
+		private final List<String> asins = new ArrayList<>();
+		private double[] norms = new double[1024];
+		private final PairWeights pairs = new PairWeights();
+
+		/**
+		 * The id of {@code asin}, assigned on first use.
+		 */
+		public int id(String asin) {
+			Integer id = idByAsin.get(asin);
+			if (id == null) {
+				id = asins.size();
+				idByAsin.put(asin, id);
+				asins.add(asin);
+			}
+			return id;
+		}
+
+		/**
+		 * Adds one user's interactions with {@code items[0..count)}, which must be distinct, each
+		 * weighted by the same position of {@code weights}.
+		 */
+		public void addUser(int[] items, float[] weights, int count) {
+			for (int i = 0; i < count; i++) {
+				if (items[i] >= norms.length) {
+					norms = Arrays.copyOf(norms, Math.max(items[i] + 1, norms.length * 2));
+				}
+				norms[items[i]] += (double) weights[i] * weights[i];
+				for (int j = i + 1; j < count; j++) {
+					pairs.add(items[i], items[j], (double) weights[i] * weights[j]);
+				}
+			}
+		}
+
+		public CoOccurrenceGraph build(int maxNeighbors) {
+			if (maxNeighbors < 1) {
+				throw new IllegalArgumentException("maxNeighbors must be at least 1");
+			}
+			// products no pair touches have no neighbors and get no id in the graph
+			int count = asins.size();
+			int[] degrees = new int[count];
+			for (int slot = 0; slot < pairs.keys.length; slot++) {
+				long key = pairs.keys[slot];
+				if (key != 0) {
+					degrees[(int) (key >>> 32)]++;
+					degrees[(int) key]++;
+				}
+			}
+			int[] ids = new int[count];
+			List<String> kept = new ArrayList<>();
+			for (int item = 0; item < count; item++) {
+				ids[item] = degrees[item] > 0 ? kept.size() : -1;
+				if (degrees[item] > 0) {
+					kept.add(asins.get(item));
+				}
+			}
+
+			// every pair in both directions; the similarity in the high half and the neighbor in the
+			// low half of one long, so that sorting a row orders it by similarity
+			int[] rowStart = new int[count + 1];
+			for (int item = 0; item < count; item++) {
+				rowStart[item + 1] = rowStart[item] + degrees[item];
+			}
+			long[] entries = new long[rowStart[count]];
+			int[] fill = Arrays.copyOf(rowStart, count);
+			for (int slot = 0; slot < pairs.keys.length; slot++) {
+				long key = pairs.keys[slot];
+				if (key != 0) {
+					int a = (int) (key >>> 32);
+					int b = (int) key;
+					float similarity = (float) (pairs.values[slot] / Math.sqrt(norms[a] * norms[b]));
+					entries[fill[a]++] = entry(similarity, ids[b]);
+					entries[fill[b]++] = entry(similarity, ids[a]);
+				}
+			}
+
+			int[] offsets = new int[kept.size() + 1];
+			int edges = 0;
+			for (int item = 0; item < count; item++) {
+				if (ids[item] >= 0) {
+					edges += Math.min(degrees[item], maxNeighbors);
+					offsets[ids[item] + 1] = edges;
+				}
+			}
+			int[] neighbors = new int[edges];
+			float[] weights = new float[edges];
+			for (int item = 0; item < count; item++) {
+				if (ids[item] < 0) {
+					continue;
+				}
+				Arrays.sort(entries, rowStart[item], rowStart[item + 1]);
+				int position = offsets[ids[item]];
+				int end = offsets[ids[item] + 1];
+				for (int i = rowStart[item + 1] - 1; position < end; i--, position++) {
+					weights[position] = Float.intBitsToFloat((int) (entries[i] >>> 32));
+					neighbors[position] = ~(int) entries[i];
+				}
+			}
+			Map<String, Integer> idByKeptAsin = new HashMap<>(kept.size() * 4 / 3 + 1);
+			for (int id = 0; id < kept.size(); id++) {
+				idByKeptAsin.put(kept.get(id), id);
+			}
+			return new CoOccurrenceGraph(kept.toArray(new String[0]), idByKeptAsin, offsets, neighbors, weights);
+		}
+
+		// similarities are positive, so their bits sort like their values; the neighbor is stored
+		// complemented so that equal similarities put the lower id first in descending order
+		private static long entry(float similarity, int neighbor) {
+			return ((long) Float.floatToIntBits(similarity) << 32) | (~neighbor & 0xFFFFFFFFL);
+		}
+	}
+
+	// sums of weights per unordered pair of ids, keyed (lower << 32 | higher); the higher id is at
+	// least 1, so key 0 marks an empty slot
+	private static final class PairWeights {
+		private long[] keys = new long[1 << 12];
+		private double[] values = new double[1 << 12];
+		private int size;
+
+		void add(int a, int b, double weight) {
+			long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+			int mask = keys.length - 1;
+			int slot = hash(key) & mask;
+			while (keys[slot] != 0 && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if (keys[slot] == 0) {
+				keys[slot] = key;
+				if (++size > keys.length >>> 1) {
+					values[slot] = weight;
+					grow();
+					return;
+				}
+			}
+			values[slot] += weight;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			double[] oldValues = values;
+			keys = new long[oldKeys.length * 2];
+			values = new double[oldKeys.length * 2];
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != 0) {
+					int slot = hash(oldKeys[i]) & mask;
+					while (keys[slot] != 0) {
+						slot = (slot + 1) & mask;
+					}
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+			}
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package qyang.com.recommendation_service.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.dtos.KnownUserFilterStatsResponse;
+import qyang.com.recommendation_service.repositories.UserRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bloom filter of every user id, consulted before any database access so that requests for
+ * ids that definitely do not exist are rejected in memory. Until the first build finishes,
+ * and when disabled, every id is reported as possibly known.
+ * <p>
+ * Users saved through JPA are added as they are persisted (see {@link KnownUserListener}), but
+ * only on the instance that saved them. Users registered on another replica or inserted behind
+ * the service's back, e.g. by the offline job, are picked up by a catch-up scan of
+ * {@code users.created_at} every {@code recommendation.known-users.catch-up-interval}; until
+ * then they are rejected with a 404. Rows committed more than a minute after their
+ * {@code created_at} wait for the next full rebuild.
+ */
+@Component
+@Slf4j
+public class KnownUserFilter {
+	private static final int PAGE_SIZE = 10_000;
+	// rescanned on every catch-up so that rows committed a little after their created_at are not missed
+	private static final Duration CATCH_UP_OVERLAP = Duration.ofMinutes(1);
+
+	private final UserRepository userRepository;
+	private final boolean enabled;
+	private final double falsePositiveRate;
+	private final Counter rejections;
+	private final ReentrantLock rebuildLock = new ReentrantLock();
+	private volatile BloomFilter filter;
+	// receives concurrent adds while a rebuild is reading the table
+	private volatile BloomFilter building;
+	// newest users.created_at the filter has covered; read from the database, not the local clock
+	private volatile Instant caughtUpTo;
+
+	public KnownUserFilter(UserRepository userRepository,
+						   @Value("${recommendation.known-users.enabled:true}") boolean enabled,
+						   @Value("${recommendation.known-users.false-positive-rate:0.01}") double falsePositiveRate,
+						   MeterRegistry meterRegistry) {
+		this.userRepository = userRepository;
+		this.enabled = enabled;
+		this.falsePositiveRate = falsePositiveRate;
+		this.rejections = meterRegistry.counter("recommendation.known.users.rejections");
+		Gauge.builder("recommendation.known.users.memory", this, f -> f.filter == null ? 0 : f.filter.getMemoryBytes())
+				.baseUnit("bytes")
+				.register(meterRegistry);
+		Gauge.builder("recommendation.known.users.insertions", this, f -> f.filter == null ? 0 : f.filter.getInsertions())
+				.register(meterRegistry);
+		Gauge.builder("recommendation.known.users.false.positive.rate", this, f -> f.filter == null ? 0 : f.filter.getExpectedFalsePositiveRate())
+				.register(meterRegistry);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		rebuild();
+	}
+
+	@Scheduled(fixedDelayString = "${recommendation.known-users.rebuild-interval:PT1H}",
+			initialDelayString = "${recommendation.known-users.rebuild-interval:PT1H}")
+	public void scheduledRebuild() {
+		rebuild();
+	}
+
+	@Scheduled(fixedDelayString = "${recommendation.known-users.catch-up-interval:PT10S}",
+			initialDelayString = "${recommendation.known-users.catch-up-interval:PT10S}")
+	public void catchUp() {
+		BloomFilter current = filter;
+		if (current == null || !rebuildLock.tryLock()) {
+			return;
+		}
+		try {
+			Instant since = caughtUpTo;
+			Instant latest = userRepository.findLatestCreatedAt();
+			if (latest == null) {
+				return;
+			}
+			int added = 0;
+			for (String userId : userRepository.findUserIdsCreatedAfter(since == null ? Instant.EPOCH : since.minus(CATCH_UP_OVERLAP))) {
+				// the overlap returns users already in the filter; adding them again would inflate the insertion count
+				if (!current.mightContain(userId)) {
+					current.add(userId);
+					added++;
+				}
+			}
+			caughtUpTo = latest;
+			if (added > 0) {
+				log.debug("Known user filter caught up with {} users", added);
+			}
+		} finally {
+			rebuildLock.unlock();
+		}
+	}
+
+	public boolean mightExist(String userId) {
+		BloomFilter current = filter;
+		if (current == null || current.mightContain(userId)) {
+			return true;
+		}
+		rejections.increment();
+		return false;
+	}
+
+	public void add(String userId) {
+		BloomFilter current = filter;
+		if (current != null) {
+			current.add(userId);
+		}
+		BloomFilter pending = building;
+		if (pending != null) {
+			pending.add(userId);
+		}
+	}
+
+	public void rebuild() {
+		if (!enabled || !rebuildLock.tryLock()) {
+			return;
+		}
+		try {
+			// headroom so that registrations until the next rebuild keep the rate near the target
+			long expected = Math.max(1024, userRepository.count() * 2);
+			BloomFilter next = BloomFilter.create(expected, falsePositiveRate);
+			building = next;
+			Instant latest = userRepository.findLatestCreatedAt();
+			String lastUserId = "";
+			List<String> userIds;
+			do {
+				userIds = userRepository.findUserIdsAfter(lastUserId, PageRequest.of(0, PAGE_SIZE));
+				for (String userId : userIds) {
+					next.add(userId);
+				}
+				if (!userIds.isEmpty()) {
+					lastUserId = userIds.get(userIds.size() - 1);
+				}
+			} while (userIds.size() == PAGE_SIZE);
+			filter = next;
+			caughtUpTo = latest;
+			log.info("Known user filter rebuilt with {} users in {} bytes", next.getInsertions(), next.getMemoryBytes());
+		} finally {
+			building = null;
+			rebuildLock.unlock();
+		}
+	}
+
+	public KnownUserFilterStatsResponse getStats() {
+		BloomFilter current = filter;
+		if (current == null) {
+			return new KnownUserFilterStatsResponse(false, 0, 0, 0, 0, 0);
+		}
+		return new KnownUserFilterStatsResponse(
+				true,
+				current.getInsertions(),
+				current.getBitSize(),
+				current.getHashFunctions(),
+				current.getMemoryBytes(),
+				current.getExpectedFalsePositiveRate()
+		);
+	}
+}
@@ -0,0 +1,26 @@
+package qyang.com.recommendation_service.index;
+
+import jakarta.persistence.PrePersist;
+import org.springframework.beans.factory.ObjectProvider;
+import qyang.com.recommendation_service.models.User;
+
+/**
+ * JPA entity listener that adds newly persisted users to the {@link KnownUserFilter}. It runs on
+ * persist rather than after commit: a rolled back insert only leaves a harmless false positive,
+ * while adding late could reject a user who already exists.
+ */
+public class KnownUserListener {
+	// resolved lazily: Hibernate creates listeners while the repositories the filter needs are still being built
+	private final ObjectProvider<KnownUserFilter> knownUserFilter;
+
+	public KnownUserListener(ObjectProvider<KnownUserFilter> knownUserFilter) {
+		this.knownUserFilter = knownUserFilter;
+	}
+
+	@PrePersist
+	public void onPersist(User user) {
+		if (user.getUserId() != null) {
+			knownUserFilter.getObject().add(user.getUserId());
+		}
+	}
+}
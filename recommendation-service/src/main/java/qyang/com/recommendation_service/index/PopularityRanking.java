@@ -0,0 +1,125 @@
+package qyang.com.recommendation_service.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.models.ProductRating;
+import qyang.com.recommendation_service.repositories.ProductRepository;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Most popular products overall and per category, the cold-start fallback for users the offline
+ * job has not written recommendations for. Products are ranked by their Bayesian average rating
+ * {@code (v * R + m * C) / (v + m)}, with {@code R} and {@code v} the product's average rating and
+ * number of ratings, {@code C} the mean rating over all products and {@code m} the prior weight,
+ * so a handful of five-star ratings does not outrank thousands of good ones.
+ * <p>
+ * The rankings are rebuilt off the request path and published as one immutable object; reads
+ * are a volatile read and a map lookup, never a query.
+ */
+@Component
+@Slf4j
+public class PopularityRanking {
+	private static final Comparator<ScoredProduct> BY_SCORE = Comparator.comparingDouble(ScoredProduct::score)
+			.thenComparingInt(ScoredProduct::ratingNumber)
+			.thenComparing(ScoredProduct::parentAsin, Comparator.reverseOrder());
+
+	private final ProductRepository productRepository;
+	private final int listSize;
+	private final double priorWeight;
+	private volatile Rankings rankings = new Rankings(List.of(), Map.of());
+
+	public PopularityRanking(ProductRepository productRepository,
+							 @Value("${recommendation.popularity.list-size:10}") int listSize,
+							 @Value("${recommendation.popularity.prior-weight:50}") double priorWeight) {
+		this.productRepository = productRepository;
+		this.listSize = listSize;
+		this.priorWeight = priorWeight;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		refresh();
+	}
+
+	@Scheduled(fixedDelayString = "${recommendation.popularity.refresh-interval:PT15M}",
+			initialDelayString = "${recommendation.popularity.refresh-interval:PT15M}")
+	public void scheduledRefresh() {
+		refresh();
+	}
+
+	public void refresh() {
+		List<ProductRating> products = productRepository.findRated();
+		double ratingSum = 0;
+		for (ProductRating product : products) {
+			ratingSum += product.getAverageRating();
+		}
+		double meanRating = products.isEmpty() ? 0 : ratingSum / products.size();
+
+		PriorityQueue<ScoredProduct> overall = new PriorityQueue<>(BY_SCORE);
+		Map<String, PriorityQueue<ScoredProduct>> byCategory = new HashMap<>();
+		for (ProductRating product : products) {
+			int votes = product.getRatingNumber();
+			double score = (votes * product.getAverageRating() + priorWeight * meanRating) / (votes + priorWeight);
+			ScoredProduct scored = new ScoredProduct(product.getParentAsin(), score, votes);
+			offer(overall, scored);
+			if (product.getCategory() != null) {
+				offer(byCategory.computeIfAbsent(product.getCategory(), category -> new PriorityQueue<>(BY_SCORE)), scored);
+			}
+		}
+
+		Map<String, List<String>> categoryLists = new HashMap<>();
+		byCategory.forEach((category, top) -> categoryLists.put(category, toList(top)));
+		rankings = new Rankings(toList(overall), categoryLists);
+		log.info("Popularity ranking rebuilt from {} rated products in {} categories", products.size(), categoryLists.size());
+	}
+
+	/**
+	 * The overall most popular ASINs, best first; empty when no product has ratings.
+	 */
+	public List<String> getOverall() {
+		return rankings.overall();
+	}
+
+	/**
+	 * The most popular ASINs in {@code category}, best first; empty for an unknown category.
+	 */
+	public List<String> getCategory(String category) {
+		return rankings.byCategory().getOrDefault(category, List.of());
+	}
+
+	// keeps the listSize best products; the heap's head is the worst of them
+	private void offer(PriorityQueue<ScoredProduct> top, ScoredProduct product) {
+		if (top.size() < listSize) {
+			top.add(product);
+		} else if (BY_SCORE.compare(product, top.peek()) > 0) {
+			top.poll();
+			top.add(product);
+		}
+	}
+
+	private static List<String> toList(PriorityQueue<ScoredProduct> top) {
+		ScoredProduct[] products = top.toArray(new ScoredProduct[0]);
+		Arrays.sort(products, BY_SCORE.reversed());
+		String[] asins = new String[products.length];
+		for (int i = 0; i < products.length; i++) {
+			asins[i] = products[i].parentAsin();
+		}
+		return List.of(asins);
+	}
+
+	private record ScoredProduct(String parentAsin, double score, int ratingNumber) {
+	}
+
+	private record Rankings(List<String> overall, Map<String, List<String>> byCategory) {
+	}
+}
@@ -0,0 +1,156 @@
+package qyang.com.recommendation_service.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.models.ProductAttributes;
+import qyang.com.recommendation_service.repositories.ProductRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Price, rating and category of every product in parallel primitive arrays indexed by a dense
+ * product id, so that recommendation lists can be filtered and re-ranked per request without a
+ * query and without an object per candidate. The arrays are rebuilt off the request path and
+ * published together as one immutable snapshot.
+ */
+@Component
+@Slf4j
+public class ProductAttributeIndex {
+	private final ProductRepository productRepository;
+	private volatile Attributes attributes = new Attributes(Map.of(), new float[0], new float[0], new int[0], Map.of());
+
+	public ProductAttributeIndex(ProductRepository productRepository) {
+		this.productRepository = productRepository;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		refresh();
+	}
+
+	@Scheduled(fixedDelayString = "${recommendation.rerank.refresh-interval:PT15M}",
+			initialDelayString = "${recommendation.rerank.refresh-interval:PT15M}")
+	public void scheduledRefresh() {
+		refresh();
+	}
+
+	public void refresh() {
+		load(productRepository.findAllAttributes());
+		log.info("Product attribute index rebuilt with {} products", size());
+	}
+
+	public void load(List<? extends ProductAttributes> products) {
+		int count = products.size();
+		Map<String, Integer> idByAsin = new HashMap<>(count * 4 / 3 + 1);
+		float[] prices = new float[count];
+		float[] ratings = new float[count];
+		int[] categories = new int[count];
+		Map<String, Integer> categoryIds = new HashMap<>();
+		for (int id = 0; id < count; id++) {
+			ProductAttributes product = products.get(id);
+			idByAsin.put(product.getParentAsin(), id);
+			// NaN marks an unknown value and fails every comparison
+			prices[id] = product.getPrice() != null ? product.getPrice() : Float.NaN;
+			ratings[id] = product.getAverageRating() != null ? product.getAverageRating() : Float.NaN;
+			categories[id] = product.getCategory() != null
+					? categoryIds.computeIfAbsent(product.getCategory(), category -> categoryIds.size())
+					: -1;
+		}
+		attributes = new Attributes(idByAsin, prices, ratings, categories, categoryIds);
+	}
+
+	public int size() {
+		return attributes.prices().length;
+	}
+
+	/**
+	 * Dense ids of the categories of {@code asins}, position by position; -1 for a product that
+	 * is missing from the index or has no category. Equal ids mean equal categories.
+	 */
+	public int[] categoryIds(List<String> asins) {
+		Attributes current = attributes;
+		int[] categories = new int[asins.size()];
+		for (int i = 0; i < categories.length; i++) {
+			Integer id = current.idByAsin().get(asins.get(i));
+			categories[i] = id != null ? current.categories()[id] : -1;
+		}
+		return categories;
+	}
+
+	/**
+	 * Drops the candidates that fail {@code filter} and orders the rest by
+	 * {@code positionWeight * (n - i) / n + ratingWeight * rating / 5}, where {@code i} is the
+	 * candidate's position in the stored list, so that with a zero rating weight the stored
+	 * order is kept. Products missing from the index fail any filter and otherwise score as
+	 * unrated. Both weights must be non-negative.
+	 */
+	public List<String> rerank(List<String> candidates, ProductFilter filter, float positionWeight, float ratingWeight) {
+		Attributes current = attributes;
+		int categoryId = -1;
+		if (filter.category() != null) {
+			Integer id = current.categoryIds().get(filter.category());
+			if (id == null) {
+				return List.of();
+			}
+			categoryId = id;
+		}
+		boolean filtering = !filter.isEmpty();
+		boolean priceBounded = filter.minPrice() != null || filter.maxPrice() != null;
+		float minPrice = filter.minPrice() != null ? filter.minPrice() : Float.NEGATIVE_INFINITY;
+		float maxPrice = filter.maxPrice() != null ? filter.maxPrice() : Float.POSITIVE_INFINITY;
+		float minRating = filter.minRating() != null ? filter.minRating() : Float.NaN;
+		float[] prices = current.prices();
+		float[] ratings = current.ratings();
+		int[] categories = current.categories();
+
+		int n = candidates.size();
+		// score bits in the high half and the inverted position in the low half: sorting the
+		// keys orders by score, ties by stored position, with no object per candidate
+		long[] keys = new long[n];
+		int kept = 0;
+		for (int i = 0; i < n; i++) {
+			Integer id = current.idByAsin().get(candidates.get(i));
+			float rating = 0;
+			if (id == null) {
+				if (filtering) {
+					continue;
+				}
+			} else {
+				int product = id;
+				if (priceBounded && !(prices[product] >= minPrice && prices[product] <= maxPrice)) {
+					continue;
+				}
+				if (filter.minRating() != null && !(ratings[product] >= minRating)) {
+					continue;
+				}
+				if (categoryId >= 0 && categories[product] != categoryId) {
+					continue;
+				}
+				if (!Float.isNaN(ratings[product])) {
+					rating = ratings[product];
+				}
+			}
+			float score = positionWeight * (n - i) / n + ratingWeight * rating / 5f;
+			// non-negative floats order the same as their bit patterns
+			keys[kept++] = ((long) Float.floatToIntBits(score) << 32) | (~i & 0xFFFFFFFFL);
+		}
+
+		Arrays.sort(keys, 0, kept);
+		List<String> ranked = new ArrayList<>(kept);
+		for (int k = kept - 1; k >= 0; k--) {
+			ranked.add(candidates.get(~(int) keys[k]));
+		}
+		return ranked;
+	}
+
+	private record Attributes(Map<String, Integer> idByAsin, float[] prices, float[] ratings, int[] categories,
+							  Map<String, Integer> categoryIds) {
+	}
+}
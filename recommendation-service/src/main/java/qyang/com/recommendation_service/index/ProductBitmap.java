@@ -0,0 +1,281 @@
+package qyang.com.recommendation_service.index;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed set of non-negative product ids, laid out like a Roaring bitmap: ids are
+ * grouped by their high 16 bits, and each group holds its low 16 bits either as a sorted
+ * {@code char[]} while it has at most 4096 of them or as a 65536-bit {@code long[]} once the
+ * array would be larger. A set whose ids are too few or too scattered for the grouping to pay
+ * for its per-group arrays, which is most users' purchases over a catalog of a million products,
+ * is instead one sorted {@code int[]}: four bytes per id plus a few dozen bytes of overhead, where
+ * a {@code Set<Integer>} spends upwards of 40 bytes per id.
+ * <p>
+ * Updates return a new set and leave this one unchanged, so a set can be read without locking
+ * while another thread replaces it.
+ */
+public final class ProductBitmap {
+	// past this many ids an array container takes more memory than a bitmap container
+	private static final int ARRAY_MAX_SIZE = 4096;
+	private static final int BITMAP_WORDS = 1 << 16 >>> 6;
+	private static final ProductBitmap EMPTY = new ProductBitmap(new int[0], null, null);
+
+	// the sorted ids of a small set, null when the set is grouped
+	private final int[] ids;
+	// sorted high halves, each with its container: a sorted char[] or a long[] of BITMAP_WORDS
+	private final char[] keys;
+	private final Object[] containers;
+
+	private ProductBitmap(int[] ids, char[] keys, Object[] containers) {
+		this.ids = ids;
+		this.keys = keys;
+		this.containers = containers;
+	}
+
+	public static ProductBitmap empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * The set of {@code ids[0..count)}, which may repeat and come in any order.
+	 */
+	public static ProductBitmap of(int[] ids, int count) {
+		int[] sorted = Arrays.copyOf(ids, count);
+		Arrays.sort(sorted);
+		if (count > 0 && sorted[0] < 0) {
+			throw new IllegalArgumentException("Product ids must not be negative: " + sorted[0]);
+		}
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[size++] = sorted[i];
+			}
+		}
+		return fromSorted(size == count ? sorted : Arrays.copyOf(sorted, size));
+	}
+
+	public static ProductBitmap of(int... ids) {
+		return of(ids, ids.length);
+	}
+
+	public boolean contains(int id) {
+		if (id < 0) {
+			return false;
+		}
+		if (ids != null) {
+			return Arrays.binarySearch(ids, id) >= 0;
+		}
+		int group = Arrays.binarySearch(keys, (char) (id >>> 16));
+		if (group < 0) {
+			return false;
+		}
+		char low = (char) id;
+		if (containers[group] instanceof char[] array) {
+			return Arrays.binarySearch(array, low) >= 0;
+		}
+		return (((long[]) containers[group])[low >>> 6] & (1L << low)) != 0;
+	}
+
+	public boolean isEmpty() {
+		return ids != null ? ids.length == 0 : keys.length == 0;
+	}
+
+	public int cardinality() {
+		if (ids != null) {
+			return ids.length;
+		}
+		int cardinality = 0;
+		for (Object container : containers) {
+			cardinality += cardinality(container);
+		}
+		return cardinality;
+	}
+
+	/**
+	 * This set with {@code id} added, or this set itself when it already holds {@code id}.
+	 */
+	public ProductBitmap with(int id) {
+		return contains(id) ? this : or(of(id));
+	}
+
+	/**
+	 * The union of this set and {@code other}.
+	 */
+	public ProductBitmap or(ProductBitmap other) {
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (isEmpty()) {
+			return other;
+		}
+		if (ids != null && other.ids != null) {
+			return fromSorted(union(ids, other.ids));
+		}
+		ProductBitmap left = ids != null ? grouped(ids) : this;
+		ProductBitmap right = other.ids != null ? grouped(other.ids) : other;
+		char[] mergedKeys = new char[left.keys.length + right.keys.length];
+		Object[] merged = new Object[mergedKeys.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < left.keys.length || j < right.keys.length) {
+			if (j == right.keys.length || (i < left.keys.length && left.keys[i] < right.keys[j])) {
+				mergedKeys[size] = left.keys[i];
+				merged[size++] = left.containers[i++];
+			} else if (i == left.keys.length || right.keys[j] < left.keys[i]) {
+				mergedKeys[size] = right.keys[j];
+				merged[size++] = right.containers[j++];
+			} else {
+				mergedKeys[size] = left.keys[i];
+				merged[size++] = or(left.containers[i++], right.containers[j++]);
+			}
+		}
+		// containers are never modified, so both sets can share the ones they do not have in common
+		return new ProductBitmap(null, Arrays.copyOf(mergedKeys, size), Arrays.copyOf(merged, size));
+	}
+
+	/**
+	 * Approximate heap footprint of this set in bytes, object headers included.
+	 */
+	public long getSizeInBytes() {
+		if (ids != null) {
+			return 24 + arrayBytes(4L * ids.length);
+		}
+		long bytes = 24 + arrayBytes(2L * keys.length) + arrayBytes(4L * containers.length);
+		for (Object container : containers) {
+			bytes += container instanceof char[] array ? arrayBytes(2L * array.length) : arrayBytes(8L * BITMAP_WORDS);
+		}
+		return bytes;
+	}
+
+	// the cheaper of the two layouts for distinct sorted ids
+	private static ProductBitmap fromSorted(int[] sorted) {
+		long groupedBytes = arrayBytes(2L * groups(sorted)) + arrayBytes(4L * groups(sorted));
+		for (int start = 0; start < sorted.length; ) {
+			int end = groupEnd(sorted, start);
+			groupedBytes += end - start > ARRAY_MAX_SIZE ? arrayBytes(8L * BITMAP_WORDS) : arrayBytes(2L * (end - start));
+			start = end;
+		}
+		return arrayBytes(4L * sorted.length) <= groupedBytes ? new ProductBitmap(sorted, null, null) : grouped(sorted);
+	}
+
+	private static ProductBitmap grouped(int[] sorted) {
+		char[] keys = new char[groups(sorted)];
+		Object[] containers = new Object[keys.length];
+		int group = 0;
+		for (int start = 0; start < sorted.length; group++) {
+			int end = groupEnd(sorted, start);
+			keys[group] = (char) (sorted[start] >>> 16);
+			char[] lows = new char[end - start];
+			for (int i = start; i < end; i++) {
+				lows[i - start] = (char) sorted[i];
+			}
+			containers[group] = lows.length > ARRAY_MAX_SIZE ? toBitmap(lows, lows.length) : lows;
+			start = end;
+		}
+		return new ProductBitmap(null, keys, containers);
+	}
+
+	private static int groups(int[] sorted) {
+		int groups = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] >>> 16 != sorted[i - 1] >>> 16) {
+				groups++;
+			}
+		}
+		return groups;
+	}
+
+	private static int groupEnd(int[] sorted, int start) {
+		int end = start;
+		while (end < sorted.length && sorted[end] >>> 16 == sorted[start] >>> 16) {
+			end++;
+		}
+		return end;
+	}
+
+	private static int[] union(int[] left, int[] right) {
+		int[] union = new int[left.length + right.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < left.length && j < right.length) {
+			if (left[i] < right[j]) {
+				union[size++] = left[i++];
+			} else if (right[j] < left[i]) {
+				union[size++] = right[j++];
+			} else {
+				union[size++] = left[i++];
+				j++;
+			}
+		}
+		while (i < left.length) {
+			union[size++] = left[i++];
+		}
+		while (j < right.length) {
+			union[size++] = right[j++];
+		}
+		return size == union.length ? union : Arrays.copyOf(union, size);
+	}
+
+	private static Object or(Object a, Object b) {
+		if (a instanceof char[] left && b instanceof char[] right) {
+			char[] union = new char[left.length + right.length];
+			int size = 0;
+			int i = 0;
+			int j = 0;
+			while (i < left.length && j < right.length) {
+				if (left[i] < right[j]) {
+					union[size++] = left[i++];
+				} else if (right[j] < left[i]) {
+					union[size++] = right[j++];
+				} else {
+					union[size++] = left[i++];
+					j++;
+				}
+			}
+			while (i < left.length) {
+				union[size++] = left[i++];
+			}
+			while (j < right.length) {
+				union[size++] = right[j++];
+			}
+			return size > ARRAY_MAX_SIZE ? toBitmap(union, size) : Arrays.copyOf(union, size);
+		}
+		long[] words = a instanceof long[] bitmap ? bitmap.clone() : toBitmap((char[]) a, ((char[]) a).length);
+		if (b instanceof long[] bitmap) {
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				words[w] |= bitmap[w];
+			}
+		} else {
+			for (char low : (char[]) b) {
+				words[low >>> 6] |= 1L << low;
+			}
+		}
+		return words;
+	}
+
+	private static long[] toBitmap(char[] lows, int size) {
+		long[] words = new long[BITMAP_WORDS];
+		for (int i = 0; i < size; i++) {
+			words[lows[i] >>> 6] |= 1L << lows[i];
+		}
+		return words;
+	}
+
+	private static int cardinality(Object container) {
+		if (container instanceof char[] array) {
+			return array.length;
+		}
+		int cardinality = 0;
+		for (long word : (long[]) container) {
+			cardinality += Long.bitCount(word);
+		}
+		return cardinality;
+	}
+
+	// with compressed references: a 16-byte header, then the elements padded to 8 bytes
+	private static long arrayBytes(long elementBytes) {
+		return 16 + (elementBytes + 7 & ~7L);
+	}
+}
@@ -0,0 +1,150 @@
+package qyang.com.recommendation_service.index;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import qyang.com.recommendation_service.models.ProductDictionaryEntry;
+import qyang.com.recommendation_service.repositories.ProductDictionaryRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory view of the {@code product_dictionary} table, mapping each ASIN to a dense,
+ * stable int index. Lookups are lock-free; assigning a new index writes through to the table.
+ */
+@Component
+public class ProductDictionary {
+	private static final int MAX_ASSIGN_ATTEMPTS = 5;
+
+	private final ProductDictionaryRepository productDictionaryRepository;
+	private final TransactionTemplate assignTransaction;
+	private final Map<String, Integer> indexByAsin = new ConcurrentHashMap<>();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile String[] asinByIndex = new String[0];
+	private volatile int size;
+
+	public ProductDictionary(ProductDictionaryRepository productDictionaryRepository, PlatformTransactionManager transactionManager) {
+		this.productDictionaryRepository = productDictionaryRepository;
+		// assignments commit on their own so a rolled back caller cannot leave this view ahead of the table
+		this.assignTransaction = new TransactionTemplate(transactionManager);
+		this.assignTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		refresh();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int indexOf(String asin) {
+		Integer index = indexByAsin.get(asin);
+		return index != null ? index : -1;
+	}
+
+	public String asinOf(int index) {
+		String[] asins = asinByIndex;
+		if (index >= 0 && index < asins.length && asins[index] != null) {
+			return asins[index];
+		}
+		// another instance may have assigned it since we last loaded
+		refresh();
+		asins = asinByIndex;
+		if (index >= 0 && index < asins.length && asins[index] != null) {
+			return asins[index];
+		}
+		throw new IllegalStateException("Unknown product index: " + index);
+	}
+
+	public int getOrAssign(String asin) {
+		int index = indexOf(asin);
+		if (index >= 0) {
+			return index;
+		}
+		assignAll(List.of(asin));
+		return indexOf(asin);
+	}
+
+	/**
+	 * Assigns an index to every ASIN in {@code asins} that has none yet, all in one transaction.
+	 * Indexes are taken from the table's maximum, so another instance assigning at the same moment
+	 * makes the insert fail on a key conflict; the other instance's rows are then loaded and the
+	 * ASINs still missing are assigned again.
+	 */
+	public void assignAll(Collection<String> asins) {
+		writeLock.lock();
+		try {
+			for (int attempt = 1; ; attempt++) {
+				List<String> missing = new ArrayList<>();
+				for (String asin : new LinkedHashSet<>(asins)) {
+					if (indexOf(asin) < 0) {
+						missing.add(asin);
+					}
+				}
+				if (missing.isEmpty()) {
+					return;
+				}
+				try {
+					List<ProductDictionaryEntry> entries = assignTransaction.execute(status -> {
+						Integer max = productDictionaryRepository.findMaxProductIndex();
+						int next = max == null ? 0 : max + 1;
+						List<ProductDictionaryEntry> assigned = new ArrayList<>(missing.size());
+						for (String asin : missing) {
+							productDictionaryRepository.insert(next, asin);
+							assigned.add(new ProductDictionaryEntry(next++, asin));
+						}
+						return assigned;
+					});
+					entries.forEach(this::register);
+					return;
+				} catch (DataIntegrityViolationException e) {
+					if (attempt == MAX_ASSIGN_ATTEMPTS) {
+						throw e;
+					}
+					refresh();
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	public void refresh() {
+		writeLock.lock();
+		try {
+			List<ProductDictionaryEntry> entries = productDictionaryRepository
+					.findByProductIndexGreaterThanEqualOrderByProductIndex(size);
+			for (ProductDictionaryEntry entry : entries) {
+				register(entry);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	// callers hold writeLock
+	private void register(ProductDictionaryEntry entry) {
+		int index = entry.getProductIndex();
+		String[] asins = asinByIndex;
+		if (index >= asins.length) {
+			asins = Arrays.copyOf(asins, Math.max(index + 1, asins.length * 2));
+		}
+		asins[index] = entry.getParentAsin();
+		indexByAsin.put(entry.getParentAsin(), index);
+		asinByIndex = asins;
+		size = Math.max(size, index + 1);
+	}
+}
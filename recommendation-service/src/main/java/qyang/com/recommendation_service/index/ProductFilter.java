@@ -0,0 +1,22 @@
+package qyang.com.recommendation_service.index;
+
+/**
+ * Request-time constraints on recommended products; a null bound is not applied. A product
+ * whose price or rating is unknown fails any bound on that attribute.
+ */
+public record ProductFilter(Float minPrice, Float maxPrice, Float minRating, String category) {
+	public static final ProductFilter NONE = new ProductFilter(null, null, null, null);
+
+	public ProductFilter {
+		if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+			throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+		}
+		if (minRating != null && (minRating < 0 || minRating > 5)) {
+			throw new IllegalArgumentException("minRating must be between 0 and 5");
+		}
+	}
+
+	public boolean isEmpty() {
+		return minPrice == null && maxPrice == null && minRating == null && category == null;
+	}
+}
@@ -0,0 +1,159 @@
+package qyang.com.recommendation_service.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * "Frequently bought together": for each product, the products most often interacted with by
+ * the same users, as a {@link CoOccurrenceGraph} built from the {@code events} table and the
+ * review tables the data pipeline loads (one per category, listed in
+ * {@code recommendation.related.review-tables}). An event weighs by its type, from a view up to a
+ * purchase; a review counts as a purchase. Each user contributes their {@code max-items-per-user}
+ * heaviest products, so a handful of users with huge histories cannot add most of the pairs.
+ * <p>
+ * The graph is rebuilt off the request path and swapped in with one volatile write; a rebuild
+ * that fails leaves the current graph in place.
+ */
+@Component
+@Slf4j
+public class RelatedProductIndex {
+	private final JdbcTemplate jdbcTemplate;
+	private final List<String> reviewTables;
+	private final int maxNeighbors;
+	private final int maxItemsPerUser;
+	// serializes rebuilds without pinning a virtual thread for the length of the query, as synchronized would
+	private final ReentrantLock refreshLock = new ReentrantLock();
+	private volatile CoOccurrenceGraph graph = CoOccurrenceGraph.empty();
+
+	public RelatedProductIndex(JdbcTemplate jdbcTemplate,
+							   @Value("${recommendation.related.review-tables:}") List<String> reviewTables,
+							   @Value("${recommendation.related.max-neighbors:20}") int maxNeighbors,
+							   @Value("${recommendation.related.max-items-per-user:100}") int maxItemsPerUser) {
+		if (maxNeighbors < 1 || maxItemsPerUser < 2) {
+			throw new IllegalArgumentException("recommendation.related.max-neighbors must be at least 1 and max-items-per-user at least 2");
+		}
+		this.jdbcTemplate = jdbcTemplate;
+		this.reviewTables = ReviewTables.check("recommendation.related.review-tables", reviewTables);
+		this.maxNeighbors = maxNeighbors;
+		this.maxItemsPerUser = maxItemsPerUser;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		refresh();
+	}
+
+	@Scheduled(fixedDelayString = "${recommendation.related.refresh-interval:PT1H}",
+			initialDelayString = "${recommendation.related.refresh-interval:PT1H}")
+	public void scheduledRefresh() {
+		refresh();
+	}
+
+	public void refresh() {
+		refreshLock.lock();
+		try {
+			CoOccurrenceGraph.Builder builder = new CoOccurrenceGraph.Builder();
+			UserInteractions user = new UserInteractions(builder);
+			// rows arrive grouped by user, so only one user's products are held at a time
+			jdbcTemplate.query(interactionsQuery(), resultSet -> {
+				user.add(resultSet.getString(1), resultSet.getString(2), weightOf(resultSet.getString(3)));
+			});
+			user.flush();
+			CoOccurrenceGraph built = builder.build(maxNeighbors);
+			graph = built;
+			log.info("Related product index rebuilt with {} products and {} edges", built.size(), built.getEdgeCount());
+		} catch (DataAccessException e) {
+			log.error("Failed to rebuild the related product index", e);
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * The ASINs most often interacted with together with {@code asin}, best first and at most
+	 * {@code limit} of them, or null when no user interacted with it and another product.
+	 */
+	public List<String> getRelated(String asin, int limit) {
+		return graph.related(asin, limit);
+	}
+
+	public CoOccurrenceGraph getGraph() {
+		return graph;
+	}
+
+	public int getMaxNeighbors() {
+		return maxNeighbors;
+	}
+
+	private String interactionsQuery() {
+		String query = ReviewTables.unionAll("SELECT user_id, parent_asin, event_type FROM events", reviewTables, "user_id, parent_asin, 'REVIEW'");
+		return "SELECT user_id, parent_asin, event_type FROM (" + query + ") interactions ORDER BY user_id";
+	}
+
+	// a stronger signal of intent weighs more; unknown types are ignored
+	private static float weightOf(String eventType) {
+		return switch (eventType) {
+			case "VIEW" -> 1;
+			case "CLICK" -> 2;
+			case "ADD_TO_CART" -> 4;
+			case "PURCHASE", "REVIEW" -> 8;
+			default -> 0;
+		};
+	}
+
+	// one user's products with the heaviest weight seen for each, handed to the builder when the
+	// next user's rows begin
+	private final class UserInteractions {
+		private final CoOccurrenceGraph.Builder builder;
+		private final Map<String, Float> weights = new HashMap<>();
+		private int[] items = new int[16];
+		private float[] itemWeights = new float[16];
+		private String userId;
+
+		UserInteractions(CoOccurrenceGraph.Builder builder) {
+			this.builder = builder;
+		}
+
+		void add(String userId, String asin, float weight) {
+			if (!userId.equals(this.userId)) {
+				flush();
+				this.userId = userId;
+			}
+			if (weight > 0) {
+				weights.merge(asin, weight, Math::max);
+			}
+		}
+
+		void flush() {
+			if (weights.size() > 1) {
+				List<Map.Entry<String, Float>> heaviest = new ArrayList<>(weights.entrySet());
+				if (heaviest.size() > maxItemsPerUser) {
+					heaviest.sort(Map.Entry.<String, Float>comparingByValue().reversed());
+					heaviest = heaviest.subList(0, maxItemsPerUser);
+				}
+				if (items.length < heaviest.size()) {
+					items = new int[heaviest.size()];
+					itemWeights = new float[heaviest.size()];
+				}
+				for (int i = 0; i < heaviest.size(); i++) {
+					items[i] = builder.id(heaviest.get(i).getKey());
+					itemWeights[i] = heaviest.get(i).getValue();
+				}
+				builder.addUser(items, itemWeights, heaviest.size());
+			}
+			weights.clear();
+		}
+	}
+}
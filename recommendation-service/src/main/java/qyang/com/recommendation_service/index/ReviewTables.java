@@ -0,0 +1,38 @@
+package qyang.com.recommendation_service.index;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The per-category review tables the data pipeline loads ({@code All_Beauty}, {@code Automotive},
+ * ...), each with a {@code user_id} and {@code parent_asin} per review. Their names come from
+ * configuration and are spliced into queries, so only plain identifiers are accepted.
+ */
+final class ReviewTables {
+	private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z0-9_]+");
+
+	private ReviewTables() {
+	}
+
+	static List<String> check(String property, List<String> tables) {
+		for (String table : tables) {
+			if (!TABLE_NAME.matcher(table).matches()) {
+				throw new IllegalArgumentException(property + " has an invalid table name: " + table);
+			}
+		}
+		return List.copyOf(tables);
+	}
+
+	/**
+	 * {@code query} followed by {@code UNION ALL SELECT columns} from every table in
+	 * {@code tables}, skipping reviews without a user or product.
+	 */
+	static String unionAll(String query, List<String> tables, String columns) {
+		StringBuilder union = new StringBuilder(query);
+		for (String table : tables) {
+			union.append(" UNION ALL SELECT ").append(columns).append(" FROM ").append(table)
+					.append(" WHERE user_id IS NOT NULL AND parent_asin IS NOT NULL");
+		}
+		return union.toString();
+	}
+}
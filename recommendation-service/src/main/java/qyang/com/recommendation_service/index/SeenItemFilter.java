@@ -0,0 +1,246 @@
+package qyang.com.recommendation_service.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.repositories.ProductRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The products each user has already bought or reviewed, kept as one {@link ProductBitmap} per
+ * user over the {@link ProductDictionary} indexes, so that recommendation lists can drop them
+ * without a query. Sets are loaded from the purchase events in the {@code events} table and the
+ * review tables listed in {@code recommendation.seen-items.review-tables}, and grow as purchases
+ * and ratings arrive through the API.
+ * <p>
+ * Adding a product never touches the database on the request thread. A product the dictionary
+ * already knows is added at once; any other is queued, and every {@code assign-interval} the
+ * queued products that are in the {@code products} table get indexes in one transaction and are
+ * added. Products missing from the catalog never get an index, so made-up ASINs cannot grow the
+ * dictionary. When the queue is full an addition is dropped until the next reload, which reads
+ * the purchase from the events table.
+ * <p>
+ * What a user has bought never becomes unbought, so a reload only adds to the sets in memory and
+ * cannot lose an update that arrived while it ran. Each set is replaced as a whole, so readers
+ * need no lock. Disabled, nothing is loaded and no product is ever seen.
+ */
+@Component
+@Slf4j
+public class SeenItemFilter {
+	// new products assigned per transaction during a reload
+	private static final int ASSIGN_BATCH_SIZE = 1000;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final ProductDictionary productDictionary;
+	private final ProductRepository productRepository;
+	private final boolean enabled;
+	private final List<String> reviewTables;
+	private final Map<String, ProductBitmap> seenByUser = new ConcurrentHashMap<>();
+	private final BlockingQueue<PendingItem> pending;
+	// one reload at a time; reloads run queries and dictionary transactions, which must not pin a virtual thread
+	private final ReentrantLock refreshLock = new ReentrantLock();
+	private final Counter pendingDropped;
+
+	public SeenItemFilter(JdbcTemplate jdbcTemplate, ProductDictionary productDictionary, ProductRepository productRepository, MeterRegistry meterRegistry,
+						  @Value("${recommendation.seen-items.enabled:true}") boolean enabled,
+						  @Value("${recommendation.seen-items.review-tables:${recommendation.related.review-tables:}}") List<String> reviewTables,
+						  @Value("${recommendation.seen-items.pending-max-size:10000}") int pendingMaxSize) {
+		if (pendingMaxSize < 1) {
+			throw new IllegalArgumentException("recommendation.seen-items.pending-max-size must be at least 1");
+		}
+		this.jdbcTemplate = jdbcTemplate;
+		this.productDictionary = productDictionary;
+		this.productRepository = productRepository;
+		this.enabled = enabled;
+		this.reviewTables = ReviewTables.check("recommendation.seen-items.review-tables", reviewTables);
+		this.pending = new ArrayBlockingQueue<>(pendingMaxSize);
+		Gauge.builder("recommendation.seen.items.users", seenByUser, Map::size)
+				.description("Users with at least one product bought or reviewed")
+				.register(meterRegistry);
+		this.pendingDropped = Counter.builder("recommendation.seen.items.pending.dropped")
+				.description("Products without a dictionary index left for the next reload because the queue was full")
+				.register(meterRegistry);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		refresh();
+	}
+
+	@Scheduled(fixedDelayString = "${recommendation.seen-items.refresh-interval:PT1H}",
+			initialDelayString = "${recommendation.seen-items.refresh-interval:PT1H}")
+	public void scheduledRefresh() {
+		refresh();
+	}
+
+	public void refresh() {
+		if (!enabled) {
+			return;
+		}
+		String seen = ReviewTables.unionAll("SELECT user_id, parent_asin FROM events WHERE event_type = 'PURCHASE'", reviewTables, "user_id, parent_asin");
+		String unassigned = "SELECT DISTINCT seen.parent_asin FROM (" + seen + ") seen"
+				+ " JOIN products p ON p.parent_asin = seen.parent_asin"
+				+ " LEFT JOIN product_dictionary d ON d.parent_asin = seen.parent_asin WHERE d.parent_asin IS NULL";
+		refreshLock.lock();
+		try {
+			// indexes are assigned in bulk up front, so the rows below are only looked up
+			List<String> asins = jdbcTemplate.queryForList(unassigned, String.class);
+			for (int start = 0; start < asins.size(); start += ASSIGN_BATCH_SIZE) {
+				productDictionary.assignAll(asins.subList(start, Math.min(start + ASSIGN_BATCH_SIZE, asins.size())));
+			}
+			// picks up indexes other instances assigned since the last load
+			productDictionary.refresh();
+			UserProducts user = new UserProducts();
+			// rows arrive grouped by user, so each user's set is built once and merged once
+			jdbcTemplate.query("SELECT user_id, parent_asin FROM (" + seen + ") seen ORDER BY user_id", resultSet -> {
+				user.add(resultSet.getString(1), resultSet.getString(2));
+			});
+			user.flush();
+			log.info("Seen item filter loaded for {} users", seenByUser.size());
+		} catch (DataAccessException e) {
+			log.error("Failed to load seen items", e);
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * Assigns indexes to the queued products that are in the catalog and adds them to their
+	 * users' sets.
+	 */
+	@Scheduled(fixedDelayString = "${recommendation.seen-items.assign-interval:PT1S}",
+			initialDelayString = "${recommendation.seen-items.assign-interval:PT1S}")
+	public void assignPending() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		List<PendingItem> items = new ArrayList<>();
+		pending.drainTo(items);
+		Set<String> asins = new LinkedHashSet<>();
+		for (PendingItem item : items) {
+			asins.add(item.asin());
+		}
+		try {
+			productDictionary.assignAll(productRepository.findExistingParentAsins(asins));
+		} catch (DataAccessException e) {
+			// the next reload reads these purchases from the events table
+			log.error("Failed to assign product indexes to {} seen products", asins.size(), e);
+			return;
+		}
+		for (PendingItem item : items) {
+			int index = productDictionary.indexOf(item.asin());
+			if (index >= 0) {
+				seenByUser.merge(item.userId(), ProductBitmap.of(index), ProductBitmap::or);
+			}
+		}
+	}
+
+	public void add(String userId, String asin) {
+		addAll(userId, List.of(asin));
+	}
+
+	public void addAll(String userId, Collection<String> asins) {
+		if (!enabled || asins.isEmpty()) {
+			return;
+		}
+		int[] ids = new int[asins.size()];
+		int count = 0;
+		for (String asin : asins) {
+			int index = productDictionary.indexOf(asin);
+			if (index >= 0) {
+				ids[count++] = index;
+			} else if (!pending.offer(new PendingItem(userId, asin))) {
+				pendingDropped.increment();
+			}
+		}
+		if (count > 0) {
+			seenByUser.merge(userId, ProductBitmap.of(ids, count), ProductBitmap::or);
+		}
+	}
+
+	public boolean hasSeenAny(String userId) {
+		return seenByUser.containsKey(userId);
+	}
+
+	public boolean hasSeen(String userId, String asin) {
+		ProductBitmap seen = seenByUser.get(userId);
+		return seen != null && seen.contains(productDictionary.indexOf(asin));
+	}
+
+	/**
+	 * {@code asins} without the products {@code userId} has bought or reviewed, in the same
+	 * order; {@code asins} itself when none of them has been.
+	 */
+	public List<String> filter(String userId, List<String> asins) {
+		ProductBitmap seen = seenByUser.get(userId);
+		if (seen == null) {
+			return asins;
+		}
+		List<String> unseen = null;
+		for (int i = 0; i < asins.size(); i++) {
+			boolean drop = seen.contains(productDictionary.indexOf(asins.get(i)));
+			if (drop && unseen == null) {
+				unseen = new ArrayList<>(asins.subList(0, i));
+			} else if (!drop && unseen != null) {
+				unseen.add(asins.get(i));
+			}
+		}
+		return unseen != null ? List.copyOf(unseen) : asins;
+	}
+
+	public int getUserCount() {
+		return seenByUser.size();
+	}
+
+	private record PendingItem(String userId, String asin) {
+	}
+
+	// one user's dictionary indexes, merged into their set when the next user's rows begin
+	private final class UserProducts {
+		private int[] ids = new int[16];
+		private int count;
+		private String userId;
+
+		void add(String userId, String asin) {
+			if (!userId.equals(this.userId)) {
+				flush();
+				this.userId = userId;
+			}
+			int index = productDictionary.indexOf(asin);
+			// not in the catalog
+			if (index < 0) {
+				return;
+			}
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, count * 2);
+			}
+			ids[count++] = index;
+		}
+
+		void flush() {
+			if (count > 0) {
+				seenByUser.merge(userId, ProductBitmap.of(ids, count), ProductBitmap::or);
+			}
+			count = 0;
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package qyang.com.recommendation_service.models;
+
+/**
+ * {@link ProductListLookup} row of a query across all of a user's categories: one row per
+ * stored category, or a single row with a null category for a user who has none.
+ */
+public interface CategoryProductListLookup extends ProductListLookup {
+    String getCategory();
+}
@@ -0,0 +1,14 @@
+package qyang.com.recommendation_service.models;
+
+/**
+ * The columns of a product that request-time filtering and re-ranking need.
+ */
+public interface ProductAttributes {
+    String getParentAsin();
+
+    Float getPrice();
+
+    Float getAverageRating();
+
+    String getCategory();
+}
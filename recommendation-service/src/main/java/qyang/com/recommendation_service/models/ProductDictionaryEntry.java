@@ -0,0 +1,64 @@
+package qyang.com.recommendation_service.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.util.Objects;
+
+@Entity
+@Table(name="product_dictionary")
+public class ProductDictionaryEntry {
+    @Id
+    @Column(name = "product_index")
+    private Integer productIndex;
+
+    @Column(name = "parent_asin", length = 50, nullable = false, unique = true)
+    private String parentAsin;
+
+    public ProductDictionaryEntry() {
+    }
+
+    public ProductDictionaryEntry(Integer productIndex, String parentAsin) {
+        this.productIndex = productIndex;
+        this.parentAsin = parentAsin;
+    }
+
+    public Integer getProductIndex() {
+        return productIndex;
+    }
+
+    public void setProductIndex(Integer productIndex) {
+        this.productIndex = productIndex;
+    }
+
+    public String getParentAsin() {
+        return parentAsin;
+    }
+
+    public void setParentAsin(String parentAsin) {
+        this.parentAsin = parentAsin;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductDictionaryEntry that = (ProductDictionaryEntry) o;
+        return Objects.equals(productIndex, that.productIndex);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(productIndex);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductDictionaryEntry{" +
+                "productIndex=" + productIndex +
+                ", parentAsin='" + parentAsin + '\'' +
+                '}';
+    }
+}
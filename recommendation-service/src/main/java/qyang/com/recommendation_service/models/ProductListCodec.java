@@ -0,0 +1,154 @@
+package qyang.com.recommendation_service.models;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Reads and writes stored product lists.
+ * <p>
+ * JSON: the {@code product_list} column, a JSON array of ASIN strings, read with the streaming
+ * parser directly so no databind tree or type resolution is involved.
+ * <p>
+ * Binary: the {@code product_list_bin} column, a format version byte followed by the element
+ * count and each product dictionary index as unsigned LEB128 varints. A ten item list of
+ * 10 character ASINs takes about 20 bytes instead of about 130.
+ */
+public final class ProductListCodec {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte BINARY_VERSION = 1;
+
+    private ProductListCodec() {
+    }
+
+    public static List<String> decodeJson(String json) {
+        List<String> productList = new ArrayList<>();
+        try {
+            readJson(json, productList);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Stored product list is unreadable", e);
+        }
+        return productList;
+    }
+
+    /**
+     * Decodes only elements {@code offset} to {@code offset + limit - 1} and stops reading after
+     * the last of them, so the cost follows the slice rather than the stored list. The rest of
+     * the value is not checked; stored lists are validated when they are written.
+     */
+    public static List<String> decodeJson(String json, int offset, int limit) {
+        List<String> productList = new ArrayList<>(Math.min(limit, 16));
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Stored product list is unreadable: expected a JSON array");
+            }
+            int index = 0;
+            JsonToken token;
+            while (productList.size() < limit && (token = parser.nextToken()) == JsonToken.VALUE_STRING) {
+                if (index++ >= offset) {
+                    productList.add(parser.getText());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Stored product list is unreadable", e);
+        }
+        return productList;
+    }
+
+    /**
+     * Rejects anything that is not a flat JSON array of strings, so the stored value can be
+     * written to a response verbatim.
+     */
+    public static void validateJson(String json) {
+        if (json != null) {
+            readJson(json, null);
+        }
+    }
+
+    private static void readJson(String json, List<String> sink) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Malformed product list: expected a JSON array");
+            }
+            JsonToken token = parser.nextToken();
+            while (token == JsonToken.VALUE_STRING) {
+                if (sink != null) {
+                    sink.add(parser.getText());
+                }
+                token = parser.nextToken();
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IllegalArgumentException("Malformed product list: expected only string elements");
+            }
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("Malformed product list: trailing content after array");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed product list: " + e.getMessage(), e);
+        }
+    }
+
+    public static byte[] encodeBinary(int[] productIndexes) {
+        byte[] buffer = new byte[1 + 5 * (productIndexes.length + 1)];
+        buffer[0] = BINARY_VERSION;
+        int position = writeVarint(buffer, 1, productIndexes.length);
+        for (int productIndex : productIndexes) {
+            if (productIndex < 0) {
+                throw new IllegalArgumentException("Product index must not be negative: " + productIndex);
+            }
+            position = writeVarint(buffer, position, productIndex);
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    public static int[] decodeBinaryIndexes(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != BINARY_VERSION) {
+            throw new IllegalStateException("Unsupported binary product list format");
+        }
+        int[] cursor = {1};
+        int[] productIndexes = new int[readVarint(bytes, cursor)];
+        for (int i = 0; i < productIndexes.length; i++) {
+            productIndexes[i] = readVarint(bytes, cursor);
+        }
+        return productIndexes;
+    }
+
+    public static List<String> decodeBinary(byte[] bytes, IntFunction<String> asinOf) {
+        int[] productIndexes = decodeBinaryIndexes(bytes);
+        List<String> productList = new ArrayList<>(productIndexes.length);
+        for (int productIndex : productIndexes) {
+            productList.add(asinOf.apply(productIndex));
+        }
+        return productList;
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarint(byte[] bytes, int[] cursor) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (cursor[0] >= bytes.length) {
+                throw new IllegalStateException("Truncated binary product list");
+            }
+            byte b = bytes[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in binary product list");
+    }
+}
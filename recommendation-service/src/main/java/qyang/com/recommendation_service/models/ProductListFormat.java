@@ -0,0 +1,11 @@
+package qyang.com.recommendation_service.models;
+
+/**
+ * Column the recommendation services read a product list from.
+ */
+public enum ProductListFormat {
+    /** {@code product_list}: JSON array of ASIN strings, as written by the offline job. */
+    JSON,
+    /** {@code product_list_bin}: varint-packed product dictionary indexes, see {@link ProductListCodec}. */
+    BINARY
+}
@@ -0,0 +1,16 @@
+package qyang.com.recommendation_service.models;
+
+/**
+ * One-query answer to "does the user exist, do they have a stored list, and what is it":
+ * a row comes back only for existing users, and {@link #getHasRecommendation()} tells an
+ * absent recommendation row apart from a row with an empty column.
+ */
+public interface ProductListLookup {
+    String getUserId();
+
+    Boolean getHasRecommendation();
+
+    String getProductList();
+
+    byte[] getProductListBin();
+}
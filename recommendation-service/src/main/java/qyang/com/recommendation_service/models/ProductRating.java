@@ -0,0 +1,14 @@
+package qyang.com.recommendation_service.models;
+
+/**
+ * The columns of a product that popularity ranking needs.
+ */
+public interface ProductRating {
+    String getParentAsin();
+
+    String getCategory();
+
+    Float getAverageRating();
+
+    Integer getRatingNumber();
+}
@@ -3,7 +3,13 @@ package qyang.com.recommendation_service.models;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 import java.util.Objects;
 
@@ -17,6 +23,16 @@ public class Recommendation {
     @Column(name = "product_list", columnDefinition = "json")
     private String productList; // JSON string
 
+    @Column(name = "product_list_bin", length = 4096)
+    private byte[] productListBin; // see ProductListCodec
+
+    // the columns as last read or written, to tell whether product_list changed without product_list_bin
+    @Transient
+    private String storedProductList;
+
+    @Transient
+    private byte[] storedProductListBin;
+
     public Recommendation() {
     }
 
@@ -41,6 +57,32 @@ public class Recommendation {
         this.productList = productList;
     }
 
+    public byte[] getProductListBin() {
+        return productListBin;
+    }
+
+    public void setProductListBin(byte[] productListBin) {
+        this.productListBin = productListBin;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void validateProductList() {
+        ProductListCodec.validateJson(productList);
+        // a binary copy encoded from the previous JSON would keep serving the old list
+        if (!Objects.equals(productList, storedProductList) && productListBin == storedProductListBin) {
+            productListBin = null;
+        }
+    }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    protected void rememberStoredProductList() {
+        storedProductList = productList;
+        storedProductListBin = productListBin;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -2,14 +2,18 @@ package qyang.com.recommendation_service.models;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import qyang.com.recommendation_service.index.KnownUserListener;
 
+import java.time.Instant;
 import java.util.Objects;
 import java.util.UUID;
 
 @Entity
 @Table(name="users")
+@EntityListeners(KnownUserListener.class)
 public class User {
     @Id
     @Column(name = "user_id", length = 100)
@@ -24,6 +28,10 @@ public class User {
     @Column(length = 20)
     private String role = "ROLE_USER";
 
+    // set by the column default, also for rows the offline job inserts
+    @Column(name = "created_at", insertable = false, updatable = false)
+    private Instant createdAt;
+
     public User() {
     }
 
@@ -54,6 +62,10 @@ public class User {
         this.role = role;
     }
 
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
     public String getUserId() {
         return userId;
     }
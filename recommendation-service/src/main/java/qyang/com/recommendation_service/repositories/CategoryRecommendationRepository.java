@@ -1,12 +1,50 @@
 package qyang.com.recommendation_service.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import qyang.com.recommendation_service.models.CategoryProductListLookup;
 import qyang.com.recommendation_service.models.CategoryRecommendation;
 import qyang.com.recommendation_service.models.CategoryRecommendationId;
+import qyang.com.recommendation_service.models.ProductListLookup;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CategoryRecommendationRepository extends JpaRepository<CategoryRecommendation, CategoryRecommendationId> {
+    List<CategoryRecommendation> findByIdUserIdIn(Collection<String> userIds);
+
+    // see RecommendationRepository for the per-format lookups
+    @Query("select u.userId as userId, case when c.id.userId is null then false else true end as hasRecommendation, " +
+            "c.productList as productList, case when c.productList is null then c.productListBin end as productListBin " +
+            "from User u left join CategoryRecommendation c on c.id.userId = u.userId and c.id.category = :category " +
+            "where u.userId = :userId")
+    Optional<ProductListLookup> lookupJsonByUserIdAndCategory(@Param("userId") String userId, @Param("category") String category);
+
+    @Query("select u.userId as userId, case when c.id.userId is null then false else true end as hasRecommendation, " +
+            "case when c.productListBin is null then c.productList end as productList, c.productListBin as productListBin " +
+            "from User u left join CategoryRecommendation c on c.id.userId = u.userId and c.id.category = :category " +
+            "where u.userId = :userId")
+    Optional<ProductListLookup> lookupBinaryByUserIdAndCategory(@Param("userId") String userId, @Param("category") String category);
+
+    // range scan on idx_category_recommendations_user_id; the primary key leads with category
+    @Query("select u.userId as userId, case when c.id.userId is null then false else true end as hasRecommendation, " +
+            "c.id.category as category, c.productList as productList, case when c.productList is null then c.productListBin end as productListBin " +
+            "from User u left join CategoryRecommendation c on c.id.userId = u.userId " +
+            "where u.userId = :userId order by c.id.category")
+    List<CategoryProductListLookup> lookupAllJsonByUserId(@Param("userId") String userId);
+
+    @Query("select u.userId as userId, case when c.id.userId is null then false else true end as hasRecommendation, " +
+            "c.id.category as category, case when c.productListBin is null then c.productList end as productList, c.productListBin as productListBin " +
+            "from User u left join CategoryRecommendation c on c.id.userId = u.userId " +
+            "where u.userId = :userId order by c.id.category")
+    List<CategoryProductListLookup> lookupAllBinaryByUserId(@Param("userId") String userId);
+
+    @Modifying
+    @Query("update CategoryRecommendation c set c.productList = null where c.productListBin is not null")
+    int clearMigratedProductLists();
 }
@@ -0,0 +1,26 @@
+package qyang.com.recommendation_service.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import qyang.com.recommendation_service.models.ProductDictionaryEntry;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProductDictionaryRepository extends JpaRepository<ProductDictionaryEntry, Integer> {
+    List<ProductDictionaryEntry> findByProductIndexGreaterThanEqualOrderByProductIndex(Integer productIndex);
+
+    Optional<ProductDictionaryEntry> findByParentAsin(String parentAsin);
+
+    @Query("select max(e.productIndex) from ProductDictionaryEntry e")
+    Integer findMaxProductIndex();
+
+    // a plain insert, so that an index another instance took fails instead of being merged over
+    @Modifying
+    @Query(value = "insert into product_dictionary (product_index, parent_asin) values (:productIndex, :parentAsin)", nativeQuery = true)
+    int insert(@Param("productIndex") int productIndex, @Param("parentAsin") String parentAsin);
+}
@@ -1,12 +1,27 @@
 package qyang.com.recommendation_service.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import qyang.com.recommendation_service.models.Product;
+import qyang.com.recommendation_service.models.ProductAttributes;
+import qyang.com.recommendation_service.models.ProductRating;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, String> {
     List<Product> findByCategory(String Category);
+
+    @Query("select p.parentAsin as parentAsin, p.category as category, p.averageRating as averageRating, p.ratingNumber as ratingNumber " +
+            "from Product p where p.averageRating is not null and p.ratingNumber > 0")
+    List<ProductRating> findRated();
+
+    @Query("select p.parentAsin as parentAsin, p.price as price, p.averageRating as averageRating, p.category as category from Product p")
+    List<ProductAttributes> findAllAttributes();
+
+    @Query("select p.parentAsin from Product p where p.parentAsin in :parentAsins")
+    List<String> findExistingParentAsins(@Param("parentAsins") Collection<String> parentAsins);
 }
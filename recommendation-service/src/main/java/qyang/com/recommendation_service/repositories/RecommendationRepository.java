@@ -1,11 +1,42 @@
 package qyang.com.recommendation_service.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import qyang.com.recommendation_service.models.ProductListLookup;
 import qyang.com.recommendation_service.models.Recommendation;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RecommendationRepository extends JpaRepository<Recommendation, String> {
+    // one pair of lookups per storage format: each reads its own column and the other one only for
+    // rows that lack it, i.e. rows written after the last migration or migrated with the JSON cleared
+    @Query("select u.userId as userId, case when r.userId is null then false else true end as hasRecommendation, " +
+            "r.productList as productList, case when r.productList is null then r.productListBin end as productListBin " +
+            "from User u left join Recommendation r on r.userId = u.userId where u.userId = :userId")
+    Optional<ProductListLookup> lookupJsonByUserId(@Param("userId") String userId);
+
+    @Query("select u.userId as userId, case when r.userId is null then false else true end as hasRecommendation, " +
+            "r.productList as productList, case when r.productList is null then r.productListBin end as productListBin " +
+            "from User u left join Recommendation r on r.userId = u.userId where u.userId in :userIds")
+    List<ProductListLookup> lookupJsonByUserIds(@Param("userIds") Collection<String> userIds);
+
+    @Query("select u.userId as userId, case when r.userId is null then false else true end as hasRecommendation, " +
+            "case when r.productListBin is null then r.productList end as productList, r.productListBin as productListBin " +
+            "from User u left join Recommendation r on r.userId = u.userId where u.userId = :userId")
+    Optional<ProductListLookup> lookupBinaryByUserId(@Param("userId") String userId);
+
+    @Query("select u.userId as userId, case when r.userId is null then false else true end as hasRecommendation, " +
+            "case when r.productListBin is null then r.productList end as productList, r.productListBin as productListBin " +
+            "from User u left join Recommendation r on r.userId = u.userId where u.userId in :userIds")
+    List<ProductListLookup> lookupBinaryByUserIds(@Param("userIds") Collection<String> userIds);
+
+    @Modifying
+    @Query("update Recommendation r set r.productList = null where r.productListBin is not null")
+    int clearMigratedProductLists();
 }
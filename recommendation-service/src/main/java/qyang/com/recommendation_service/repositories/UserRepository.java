@@ -1,13 +1,31 @@
 package qyang.com.recommendation_service.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import qyang.com.recommendation_service.models.User;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByUsername(String username);
     Optional<User> findByUsernameAndPassword(String username, String password);
+
+    @Query("select u.userId from User u where u.userId > :afterUserId order by u.userId")
+    List<String> findUserIdsAfter(@Param("afterUserId") String afterUserId, Pageable pageable);
+
+    @Query("select max(u.createdAt) from User u")
+    Instant findLatestCreatedAt();
+
+    @Query("select u.userId from User u where u.createdAt > :since")
+    List<String> findUserIdsCreatedAfter(@Param("since") Instant since);
+
+    @Query("select u.userId from User u where u.userId in :userIds")
+    List<String> findExistingUserIds(@Param("userIds") Collection<String> userIds);
 }
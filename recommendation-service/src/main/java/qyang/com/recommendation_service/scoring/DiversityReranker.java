@@ -0,0 +1,127 @@
+package qyang.com.recommendation_service.scoring;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.index.ProductAttributeIndex;
+
+import java.util.List;
+
+/**
+ * Reorders a recommendation list by maximal marginal relevance so that it is not all one kind
+ * of product. Position {@code p} is filled with the candidate maximizing
+ * {@code lambda * relevance - (1 - lambda) * max similarity to the candidates already placed},
+ * where relevance is {@code (n - i) / n} for the candidate's stored position {@code i}. Two
+ * products are similar by category, read from the {@link ProductAttributeIndex}, and, when the
+ * loaded {@link FactorModel} knows both, by the cosine of their item factors:
+ * {@code (same category + max(0, cosine)) / 2}. With a model loaded, a pair the model does not
+ * know both of takes a cosine of 0, so every pair is on the same scale and products missing from
+ * the model are not pushed down harder than those it knows. Without a model only the category
+ * counts.
+ * <p>
+ * Only the first {@code depth} positions are chosen this way; the rest keep their stored order.
+ * Each placement compares every remaining candidate with the one just placed, and a request may
+ * make at most {@code max-comparisons} of those comparisons. Once the next placement would
+ * exceed that budget, the remaining positions keep their stored order too, so the cost of a
+ * request is bounded whatever the list length.
+ */
+@Component
+public class DiversityReranker {
+	private final ScoringEngine scoringEngine;
+	private final ProductAttributeIndex productAttributeIndex;
+	private final float lambda;
+	private final int depth;
+	private final int maxComparisons;
+
+	public DiversityReranker(ScoringEngine scoringEngine, ProductAttributeIndex productAttributeIndex,
+							 @Value("${recommendation.diversity.lambda:0.7}") float lambda,
+							 @Value("${recommendation.diversity.depth:20}") int depth,
+							 @Value("${recommendation.diversity.max-comparisons:5000}") int maxComparisons) {
+		if (!(lambda >= 0 && lambda <= 1)) {
+			throw new IllegalArgumentException("recommendation.diversity.lambda must be between 0 and 1");
+		}
+		if (depth < 1 || maxComparisons < 0) {
+			throw new IllegalArgumentException("recommendation.diversity.depth must be at least 1 and max-comparisons not negative");
+		}
+		this.scoringEngine = scoringEngine;
+		this.productAttributeIndex = productAttributeIndex;
+		this.lambda = lambda;
+		this.depth = depth;
+		this.maxComparisons = maxComparisons;
+	}
+
+	public List<String> diversify(List<String> candidates) {
+		if (candidates.size() < 3) {
+			return candidates;
+		}
+		FactorModel model = scoringEngine.getModel();
+		int[] items = new int[candidates.size()];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = model != null ? model.itemIndex(candidates.get(i)) : -1;
+		}
+		int[] order = order(model, items, productAttributeIndex.categoryIds(candidates), lambda, depth, maxComparisons);
+		String[] diversified = new String[order.length];
+		for (int i = 0; i < order.length; i++) {
+			diversified[i] = candidates.get(order[i]);
+		}
+		return List.of(diversified);
+	}
+
+	/**
+	 * The maximal marginal relevance order of candidates {@code 0..n-1}, given in relevance
+	 * order, as candidate positions. {@code items} holds each candidate's index in {@code model},
+	 * or -1, and {@code categories} its category id, or -1; {@code model} may be null.
+	 */
+	public static int[] order(FactorModel model, int[] items, int[] categories, float lambda, int depth, int maxComparisons) {
+		int n = items.length;
+		int[] order = new int[n];
+		// candidates not placed yet, in relevance order
+		int[] remaining = new int[n];
+		for (int i = 0; i < n; i++) {
+			remaining[i] = i;
+		}
+		int remainingCount = n;
+		float[] maxSimilarity = new float[n];
+		int placed = 0;
+		int comparisons = 0;
+		int picks = Math.min(depth, n);
+		while (placed < picks) {
+			int best = 0;
+			float bestScore = Float.NEGATIVE_INFINITY;
+			for (int r = 0; r < remainingCount; r++) {
+				int candidate = remaining[r];
+				float score = lambda * (n - candidate) / n - (1 - lambda) * maxSimilarity[candidate];
+				// strictly greater, so equal scores keep the more relevant candidate
+				if (score > bestScore) {
+					bestScore = score;
+					best = r;
+				}
+			}
+			int pick = remaining[best];
+			order[placed++] = pick;
+			System.arraycopy(remaining, best + 1, remaining, best, remainingCount - best - 1);
+			remainingCount--;
+			if (placed == picks || comparisons + remainingCount > maxComparisons) {
+				break;
+			}
+			comparisons += remainingCount;
+			for (int r = 0; r < remainingCount; r++) {
+				int candidate = remaining[r];
+				float similarity = similarity(model, items, categories, candidate, pick);
+				if (similarity > maxSimilarity[candidate]) {
+					maxSimilarity[candidate] = similarity;
+				}
+			}
+		}
+		System.arraycopy(remaining, 0, order, placed, remainingCount);
+		return order;
+	}
+
+	private static float similarity(FactorModel model, int[] items, int[] categories, int a, int b) {
+		float sameCategory = categories[a] >= 0 && categories[a] == categories[b] ? 1 : 0;
+		if (model == null) {
+			return sameCategory;
+		}
+		float cosine = items[a] >= 0 && items[b] >= 0 ? Math.max(0, model.similarity(items[a], items[b])) : 0;
+		return 0.5f * (sameCategory + cosine);
+	}
+}
@@ -0,0 +1,319 @@
+package qyang.com.recommendation_service.scoring;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Read-only view of the user and item factors of the matrix-factorization model trained offline
+ * by {@code data_processing/memory_efficient_training.py}. The model predicts
+ * {@code mean + b_u + b_i + p_u . q_i}; ranking one user's items only needs {@code b_i + p_u . q_i}.
+ * <p>
+ * Layout, all numbers big-endian:
+ * <pre>
+ * header   magic, format version, factor count, user count, item count, f32 global mean
+ * ids      per user, then per item: u16 id length, id UTF-8
+ * users    user count f32 biases, user count * factor count f32 factors, row-major
+ * items    item count f32 biases, item count * factor count f32 factors, row-major
+ * </pre>
+ * The file is memory-mapped. The item factors, which every top-k scan reads in full, are copied
+ * into one contiguous array; the user factors, by far the larger matrix, stay in the mapping
+ * outside the Java heap and a request reads only its own row. One instance is safe to share
+ * between any number of threads.
+ */
+public final class FactorModel {
+	static final int MAGIC = 0x524D4643; // "RMFC"
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER_SIZE = 24;
+
+	private final Path path;
+	private final int factorCount;
+	private final float globalMean;
+	private final Map<String, Integer> userRows;
+	private final FloatBuffer userFactors;
+	private final String[] itemIds;
+	private final Map<String, Integer> itemRows;
+	private final float[] itemBiases;
+	private final float[] itemFactors;
+	private final float[] itemNorms;
+
+	private FactorModel(Path path, MappedByteBuffer buffer) {
+		this.path = path;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IllegalStateException("Not a factor model: " + path);
+		}
+		if (buffer.getInt(4) != FORMAT_VERSION) {
+			throw new IllegalStateException("Unsupported factor model format version " + buffer.getInt(4) + ": " + path);
+		}
+		this.factorCount = buffer.getInt(8);
+		int userCount = buffer.getInt(12);
+		int itemCount = buffer.getInt(16);
+		this.globalMean = buffer.getFloat(20);
+		if (factorCount < 1 || userCount < 0 || itemCount < 0 || (long) itemCount * factorCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Invalid factor model dimensions: " + path);
+		}
+
+		int position = HEADER_SIZE;
+		this.userRows = new HashMap<>(userCount * 4 / 3 + 1);
+		for (int row = 0; row < userCount; row++) {
+			int length = Short.toUnsignedInt(buffer.getShort(position));
+			userRows.put(readString(buffer, position + 2, length), row);
+			position += 2 + length;
+		}
+		this.itemIds = new String[itemCount];
+		this.itemRows = new HashMap<>(itemCount * 4 / 3 + 1);
+		for (int item = 0; item < itemCount; item++) {
+			int length = Short.toUnsignedInt(buffer.getShort(position));
+			itemIds[item] = readString(buffer, position + 2, length);
+			itemRows.put(itemIds[item], item);
+			position += 2 + length;
+		}
+
+		long expectedLength = position + 4L * (userCount + (long) userCount * factorCount + itemCount + (long) itemCount * factorCount);
+		if (expectedLength != buffer.capacity()) {
+			throw new IllegalStateException("Truncated factor model, expected " + expectedLength + " bytes: " + path);
+		}
+		// a user's bias shifts all of their scores equally, so ranking never reads it
+		position += 4 * userCount;
+		this.userFactors = buffer.slice(position, 4 * userCount * factorCount).asFloatBuffer();
+		position += 4 * userCount * factorCount;
+		this.itemBiases = new float[itemCount];
+		buffer.slice(position, 4 * itemCount).asFloatBuffer().get(itemBiases);
+		position += 4 * itemCount;
+		this.itemFactors = new float[itemCount * factorCount];
+		buffer.slice(position, 4 * itemFactors.length).asFloatBuffer().get(itemFactors);
+		this.itemNorms = new float[itemCount];
+		for (int item = 0; item < itemCount; item++) {
+			itemNorms[item] = (float) Math.sqrt(dot(itemFactors, item * factorCount, itemFactors, item * factorCount, factorCount));
+		}
+	}
+
+	public static FactorModel open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Factor model exceeds the 2 GB that a single mapping can address: " + path);
+			}
+			return new FactorModel(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * A copy of the user's factor row, or null when the model was not trained on the user.
+	 */
+	public float[] userVector(String userId) {
+		Integer row = userRows.get(userId);
+		if (row == null) {
+			return null;
+		}
+		float[] vector = new float[factorCount];
+		userFactors.get(row * factorCount, vector);
+		return vector;
+	}
+
+	/**
+	 * Indexes of the {@code k} items that score highest against {@code user}, best first.
+	 */
+	public int[] topK(float[] user, int k) {
+		return scan(user, k, null, 0, itemIds.length).drain();
+	}
+
+	/**
+	 * The best {@code k} of {@code items[from..to)}, or of item indexes {@code from..to} when
+	 * {@code items} is null, best first. Ranges longer than {@code splitSize} are scanned by
+	 * fork-join tasks on {@code pool}; shorter ones on the calling thread.
+	 */
+	public int[] topK(float[] user, int k, int[] items, int from, int to, ForkJoinPool pool, int splitSize) {
+		if (to - from <= splitSize) {
+			return scan(user, k, items, from, to).drain();
+		}
+		return pool.invoke(new ParallelTopK(this, user, k, items, from, to, splitSize)).drain();
+	}
+
+	/**
+	 * Scores {@code items[from..to)}, or item indexes {@code from..to} when {@code items} is null,
+	 * into a heap of the best {@code k}.
+	 */
+	TopK scan(float[] user, int k, int[] items, int from, int to) {
+		if (user.length != factorCount) {
+			throw new IllegalArgumentException("Expected " + factorCount + " factors, got " + user.length);
+		}
+		TopK top = new TopK(Math.max(1, Math.min(k, to - from)));
+		if (items == null) {
+			for (int item = from; item < to; item++) {
+				top.offer(item, score(user, item));
+			}
+		} else {
+			for (int i = from; i < to; i++) {
+				top.offer(items[i], score(user, items[i]));
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * A user vector fitted to {@code ratings} of {@code items} with the item factors held fixed.
+	 * The user's bias is estimated first as the mean residual {@code r - mean - b_i}, shrunk by
+	 * {@code regularization}; the vector is then the ridge least-squares solution of
+	 * {@code (Q'Q + regularization * I) p = Q'(r - mean - b_u - b_i)}. That is one exact
+	 * alternating-least-squares step for the user, so a few ratings place a user the model has
+	 * never seen, or move one whose tastes changed, without retraining.
+	 */
+	public float[] foldIn(int[] items, float[] ratings, float regularization) {
+		if (items.length != ratings.length) {
+			throw new IllegalArgumentException("Expected one rating per item");
+		}
+		if (!(regularization > 0)) {
+			throw new IllegalArgumentException("regularization must be positive");
+		}
+		double[] residuals = new double[items.length];
+		double residualSum = 0;
+		for (int j = 0; j < items.length; j++) {
+			residuals[j] = ratings[j] - globalMean - itemBiases[items[j]];
+			residualSum += residuals[j];
+		}
+		double userBias = residualSum / (items.length + regularization);
+
+		int k = factorCount;
+		double[] gram = new double[k * k];
+		double[] rhs = new double[k];
+		for (int j = 0; j < items.length; j++) {
+			int offset = items[j] * k;
+			double residual = residuals[j] - userBias;
+			for (int a = 0; a < k; a++) {
+				double qa = itemFactors[offset + a];
+				rhs[a] += qa * residual;
+				// the lower triangle is all the Cholesky factorization reads
+				for (int b = 0; b <= a; b++) {
+					gram[a * k + b] += qa * itemFactors[offset + b];
+				}
+			}
+		}
+		for (int a = 0; a < k; a++) {
+			gram[a * k + a] += regularization;
+		}
+		return toFloats(solveCholesky(gram, rhs, k));
+	}
+
+	/**
+	 * Cosine similarity of the factor vectors of two items, 0 when either vector is all zeros.
+	 */
+	public float similarity(int a, int b) {
+		float norms = itemNorms[a] * itemNorms[b];
+		return norms > 0 ? dot(itemFactors, a * factorCount, itemFactors, b * factorCount, factorCount) / norms : 0;
+	}
+
+	public String itemId(int item) {
+		return itemIds[item];
+	}
+
+	/**
+	 * The index of the item with the given id, or -1 when the model was not trained on it.
+	 */
+	public int itemIndex(String itemId) {
+		Integer item = itemRows.get(itemId);
+		return item != null ? item : -1;
+	}
+
+	public List<String> itemIds(int[] items) {
+		String[] ids = new String[items.length];
+		for (int i = 0; i < items.length; i++) {
+			ids[i] = itemIds[items[i]];
+		}
+		return List.of(ids);
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public float getGlobalMean() {
+		return globalMean;
+	}
+
+	public int getFactorCount() {
+		return factorCount;
+	}
+
+	public int getUserCount() {
+		return userRows.size();
+	}
+
+	public int getItemCount() {
+		return itemIds.length;
+	}
+
+	private float score(float[] user, int item) {
+		return itemBiases[item] + dot(user, 0, itemFactors, item * factorCount, factorCount);
+	}
+
+	// four independent accumulators let the JIT keep several multiply-adds in flight instead of
+	// waiting on one running sum; the Vector API is still an incubator module on Java 17
+	static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+		float s0 = 0;
+		float s1 = 0;
+		float s2 = 0;
+		float s3 = 0;
+		int i = 0;
+		for (int bound = length & ~3; i < bound; i += 4) {
+			s0 += a[aOffset + i] * b[bOffset + i];
+			s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+			s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+			s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+		}
+		for (; i < length; i++) {
+			s0 += a[aOffset + i] * b[bOffset + i];
+		}
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	// solves a x = b for symmetric positive-definite a, of which only the lower triangle is read;
+	// a is overwritten with its Cholesky factor and b with x
+	private static double[] solveCholesky(double[] a, double[] b, int n) {
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				double sum = a[i * n + j];
+				for (int m = 0; m < j; m++) {
+					sum -= a[i * n + m] * a[j * n + m];
+				}
+				a[i * n + j] = i == j ? Math.sqrt(sum) : sum / a[j * n + j];
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			double sum = b[i];
+			for (int m = 0; m < i; m++) {
+				sum -= a[i * n + m] * b[m];
+			}
+			b[i] = sum / a[i * n + i];
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			double sum = b[i];
+			for (int m = i + 1; m < n; m++) {
+				sum -= a[m * n + i] * b[m];
+			}
+			b[i] = sum / a[i * n + i];
+		}
+		return b;
+	}
+
+	private static float[] toFloats(double[] values) {
+		float[] floats = new float[values.length];
+		for (int i = 0; i < values.length; i++) {
+			floats[i] = (float) values[i];
+		}
+		return floats;
+	}
+
+	private static String readString(MappedByteBuffer buffer, int position, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(position, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
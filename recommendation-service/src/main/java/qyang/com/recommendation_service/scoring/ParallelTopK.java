@@ -0,0 +1,43 @@
+package qyang.com.recommendation_service.scoring;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Top-k over a range of a {@link FactorModel}'s items, split in halves until a range is at most
+ * {@code splitSize} items. Each leaf keeps its own heap, so leaves share nothing while they
+ * scan, and the heaps are merged on the way back up.
+ */
+final class ParallelTopK extends RecursiveTask<TopK> {
+	private final FactorModel model;
+	private final float[] user;
+	private final int k;
+	private final int[] items;
+	private final int from;
+	private final int to;
+	private final int splitSize;
+
+	ParallelTopK(FactorModel model, float[] user, int k, int[] items, int from, int to, int splitSize) {
+		this.model = model;
+		this.user = user;
+		this.k = k;
+		this.items = items;
+		this.from = from;
+		this.to = to;
+		this.splitSize = splitSize;
+	}
+
+	@Override
+	protected TopK compute() {
+		if (to - from <= splitSize) {
+			return model.scan(user, k, items, from, to);
+		}
+		int middle = (from + to) >>> 1;
+		ParallelTopK left = new ParallelTopK(model, user, k, items, from, middle, splitSize);
+		left.fork();
+		TopK right = new ParallelTopK(model, user, k, items, middle, to, splitSize).compute();
+		TopK top = new TopK(Math.min(k, to - from));
+		top.addAll(left.join());
+		top.addAll(right);
+		return top;
+	}
+}
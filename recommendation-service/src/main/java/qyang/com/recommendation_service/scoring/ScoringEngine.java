@@ -0,0 +1,269 @@
+package qyang.com.recommendation_service.scoring;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.models.ProductAttributes;
+import qyang.com.recommendation_service.repositories.ProductRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scores users the offline job has not written a list for against the exported
+ * {@link FactorModel}: a full scan of the item factors through a bounded top-k heap, computed on
+ * demand instead of precomputed. Only users the model was trained on can be scored.
+ * <p>
+ * Scans longer than {@code split-size} items are split into fork-join tasks over item ranges on
+ * a dedicated pool of {@code parallelism} workers, which every request shares, so scoring never
+ * takes more than that many cores however many requests arrive. For category scans the model's
+ * items are grouped by the product table's categories, so a category is one contiguous range.
+ * <p>
+ * {@link #foldIn} fits a fresh vector to a user's recent ratings against the fixed item factors
+ * and keeps it in a bounded store, where it takes precedence over the user's trained vector until
+ * it expires or is evicted. Folded vectors belong to the model they were fitted against and are
+ * dropped when another model is loaded.
+ * <p>
+ * The model file is reopened when it changes and swapped in with one volatile write; a file that
+ * fails to open leaves the current model in place. The category grouping is rebuilt on every
+ * refresh.
+ */
+@Component
+@Slf4j
+public class ScoringEngine {
+	private final ProductRepository productRepository;
+	private final boolean enabled;
+	private final Path modelPath;
+	private final int listSize;
+	private final int splitSize;
+	private final ForkJoinPool pool;
+	private final Cache<String, FoldedVector> foldedVectors;
+	private final float foldInRegularization;
+	// reloads open the model file and query the products table; a monitor would pin a virtual thread meanwhile
+	private final ReentrantLock refreshLock = new ReentrantLock();
+	private volatile LoadedModel loaded;
+
+	public ScoringEngine(ProductRepository productRepository,
+						 @Value("${recommendation.scoring.enabled:false}") boolean enabled,
+						 @Value("${recommendation.scoring.model-path:data/models/factors.bin}") String modelPath,
+						 @Value("${recommendation.scoring.list-size:10}") int listSize,
+						 @Value("${recommendation.scoring.parallelism:4}") int parallelism,
+						 @Value("${recommendation.scoring.split-size:16384}") int splitSize,
+						 @Value("${recommendation.scoring.fold-in.maximum-size:100000}") long foldInMaximumSize,
+						 @Value("${recommendation.scoring.fold-in.ttl:24h}") Duration foldInTtl,
+						 @Value("${recommendation.scoring.fold-in.regularization:0.1}") float foldInRegularization) {
+		if (listSize < 1) {
+			throw new IllegalArgumentException("recommendation.scoring.list-size must be at least 1");
+		}
+		if (parallelism < 1 || splitSize < 1) {
+			throw new IllegalArgumentException("recommendation.scoring.parallelism and split-size must be at least 1");
+		}
+		if (!(foldInRegularization > 0)) {
+			throw new IllegalArgumentException("recommendation.scoring.fold-in.regularization must be positive");
+		}
+		this.productRepository = productRepository;
+		this.enabled = enabled;
+		this.modelPath = Path.of(modelPath);
+		this.listSize = listSize;
+		this.splitSize = splitSize;
+		this.pool = new ForkJoinPool(Math.min(parallelism, Runtime.getRuntime().availableProcessors()));
+		this.foldedVectors = Caffeine.newBuilder()
+				.maximumSize(foldInMaximumSize)
+				.expireAfterWrite(foldInTtl)
+				.build();
+		this.foldInRegularization = foldInRegularization;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		refresh();
+	}
+
+	@Scheduled(fixedDelayString = "${recommendation.scoring.refresh-interval:PT15M}",
+			initialDelayString = "${recommendation.scoring.refresh-interval:PT15M}")
+	public void scheduledRefresh() {
+		refresh();
+	}
+
+	public void refresh() {
+		if (!enabled) {
+			return;
+		}
+		refreshLock.lock();
+		try {
+			FileTime modified = Files.getLastModifiedTime(modelPath);
+			LoadedModel current = loaded;
+			FactorModel model;
+			if (current != null && current.modified().equals(modified)) {
+				model = current.model();
+			} else {
+				model = FactorModel.open(modelPath);
+				foldedVectors.invalidateAll();
+				log.info("Factor model loaded from {}: {} users, {} items, {} factors", modelPath, model.getUserCount(), model.getItemCount(), model.getFactorCount());
+			}
+			loaded = new LoadedModel(model, modified, groupByCategory(model));
+		} catch (NoSuchFileException e) {
+			log.warn("No factor model at {}, online scoring stays unavailable", modelPath);
+		} catch (IOException | IllegalStateException e) {
+			log.error("Failed to load factor model {}", modelPath, e);
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * The best items for {@code userId}, best first, or null when no model is loaded or the
+	 * model neither was trained on the user nor has a vector folded in for them.
+	 */
+	public List<String> recommend(String userId) {
+		LoadedModel current = loaded;
+		float[] user = current != null ? userVector(current.model(), userId) : null;
+		if (user == null) {
+			return null;
+		}
+		return current.model().itemIds(current.model().topK(user, listSize, null, 0, current.model().getItemCount(), pool, splitSize));
+	}
+
+	/**
+	 * The best items of {@code category} for {@code userId}, best first, or null when no model is
+	 * loaded, the model has no vector for the user or has no item in the category.
+	 */
+	public List<String> recommend(String userId, String category) {
+		LoadedModel current = loaded;
+		float[] user = current != null ? userVector(current.model(), userId) : null;
+		int[] range = current != null ? current.categories().ranges().get(category) : null;
+		if (user == null || range == null) {
+			return null;
+		}
+		return current.model().itemIds(current.model().topK(user, listSize, current.categories().items(), range[0], range[1], pool, splitSize));
+	}
+
+	/**
+	 * Fits a vector for {@code userId} to {@code ratings}, keyed by item id, stores it in place of
+	 * any earlier one and returns the user's best items under it. Items the model was not trained
+	 * on are ignored.
+	 *
+	 * @throws IllegalStateException when no model is loaded
+	 * @throws IllegalArgumentException when none of the items is in the model
+	 */
+	public List<String> foldIn(String userId, Map<String, Float> ratings) {
+		LoadedModel current = loaded;
+		if (current == null) {
+			throw new IllegalStateException("No factor model is loaded");
+		}
+		FactorModel model = current.model();
+		int[] items = new int[ratings.size()];
+		float[] values = new float[ratings.size()];
+		int known = 0;
+		for (Map.Entry<String, Float> rating : ratings.entrySet()) {
+			int item = model.itemIndex(rating.getKey());
+			if (item >= 0) {
+				items[known] = item;
+				values[known++] = rating.getValue();
+			}
+		}
+		if (known == 0) {
+			throw new IllegalArgumentException("None of the rated products is known to the model");
+		}
+		float[] user = model.foldIn(Arrays.copyOf(items, known), Arrays.copyOf(values, known), foldInRegularization);
+		foldedVectors.put(userId, new FoldedVector(model, user));
+		return model.itemIds(model.topK(user, listSize, null, 0, model.getItemCount(), pool, splitSize));
+	}
+
+	/**
+	 * Whether a vector folded in from recent ratings is stored for {@code userId}.
+	 */
+	public boolean hasFoldedVector(String userId) {
+		LoadedModel current = loaded;
+		FoldedVector folded = foldedVectors.getIfPresent(userId);
+		return current != null && folded != null && folded.model() == current.model();
+	}
+
+	public boolean isReady() {
+		return loaded != null;
+	}
+
+	/**
+	 * The loaded model, or null when none is.
+	 */
+	public FactorModel getModel() {
+		LoadedModel current = loaded;
+		return current != null ? current.model() : null;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	private float[] userVector(FactorModel model, String userId) {
+		FoldedVector folded = foldedVectors.getIfPresent(userId);
+		if (folded != null && folded.model() == model) {
+			return folded.vector();
+		}
+		return model.userVector(userId);
+	}
+
+	// item indexes ordered by category, ascending within each so a range scan walks the factor
+	// array forwards; items without a product row or category are left out
+	private CategoryItems groupByCategory(FactorModel model) {
+		Map<String, String> categoryByAsin = new HashMap<>();
+		for (ProductAttributes product : productRepository.findAllAttributes()) {
+			if (product.getCategory() != null) {
+				categoryByAsin.put(product.getParentAsin(), product.getCategory());
+			}
+		}
+		Map<String, int[]> counts = new HashMap<>();
+		String[] categories = new String[model.getItemCount()];
+		int grouped = 0;
+		for (int item = 0; item < categories.length; item++) {
+			categories[item] = categoryByAsin.get(model.itemId(item));
+			if (categories[item] != null) {
+				counts.computeIfAbsent(categories[item], category -> new int[1])[0]++;
+				grouped++;
+			}
+		}
+
+		Map<String, int[]> ranges = new HashMap<>();
+		Map<String, int[]> next = new HashMap<>();
+		int start = 0;
+		for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+			int end = start + entry.getValue()[0];
+			ranges.put(entry.getKey(), new int[]{start, end});
+			next.put(entry.getKey(), new int[]{start});
+			start = end;
+		}
+		int[] items = new int[grouped];
+		for (int item = 0; item < categories.length; item++) {
+			if (categories[item] != null) {
+				items[next.get(categories[item])[0]++] = item;
+			}
+		}
+		return new CategoryItems(items, ranges);
+	}
+
+	private record FoldedVector(FactorModel model, float[] vector) {
+	}
+
+	private record CategoryItems(int[] items, Map<String, int[]> ranges) {
+	}
+
+	private record LoadedModel(FactorModel model, FileTime modified, CategoryItems categories) {
+	}
+}
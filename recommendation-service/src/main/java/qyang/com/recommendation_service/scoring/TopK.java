@@ -0,0 +1,101 @@
+package qyang.com.recommendation_service.scoring;
+
+/**
+ * Bounded min-heap of (item, score) pairs held in two primitive arrays that keeps the best
+ * {@code capacity} items offered to it. The root is the worst item kept, so once the heap is
+ * full most candidates are rejected by a single comparison, and nothing is boxed or allocated
+ * per candidate. Equal scores prefer the lower item index so results do not depend on order.
+ */
+final class TopK {
+	private final int[] items;
+	private final float[] scores;
+	private int size;
+
+	TopK(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.items = new int[capacity];
+		this.scores = new float[capacity];
+	}
+
+	void offer(int item, float score) {
+		if (size < items.length) {
+			items[size] = item;
+			scores[size] = score;
+			siftUp(size++);
+		} else if (better(score, item, scores[0], items[0])) {
+			items[0] = item;
+			scores[0] = score;
+			siftDown(0);
+		}
+	}
+
+	void addAll(TopK other) {
+		for (int i = 0; i < other.size; i++) {
+			offer(other.items[i], other.scores[i]);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * The kept item indexes, best first. Empties the heap.
+	 */
+	int[] drain() {
+		int[] sorted = new int[size];
+		for (int i = sorted.length - 1; i >= 0; i--) {
+			sorted[i] = items[0];
+			size--;
+			items[0] = items[size];
+			scores[0] = scores[size];
+			siftDown(0);
+		}
+		return sorted;
+	}
+
+	private static boolean better(float score, int item, float otherScore, int otherItem) {
+		return score > otherScore || (score == otherScore && item < otherItem);
+	}
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!better(scores[parent], items[parent], scores[index], items[index])) {
+				return;
+			}
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		while (true) {
+			int worst = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if (left < size && better(scores[worst], items[worst], scores[left], items[left])) {
+				worst = left;
+			}
+			if (right < size && better(scores[worst], items[worst], scores[right], items[right])) {
+				worst = right;
+			}
+			if (worst == index) {
+				return;
+			}
+			swap(index, worst);
+			index = worst;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int item = items[a];
+		items[a] = items[b];
+		items[b] = item;
+		float score = scores[a];
+		scores[a] = scores[b];
+		scores[b] = score;
+	}
+}
@@ -2,12 +2,17 @@ package qyang.com.recommendation_service.services;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.cache.RecommendationCache;
+import qyang.com.recommendation_service.dtos.KnownUserFilterStatsResponse;
 import qyang.com.recommendation_service.dtos.ProductRequest;
 import qyang.com.recommendation_service.dtos.ProductResponse;
 import qyang.com.recommendation_service.dtos.ProductUpdateRequest;
+import qyang.com.recommendation_service.dtos.RecommendationCacheStatsResponse;
 import qyang.com.recommendation_service.exceptions.ResourceAlreadyExistsException;
 import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.KnownUserFilter;
 import qyang.com.recommendation_service.models.Product;
 import qyang.com.recommendation_service.repositories.ProductRepository;
 
@@ -15,9 +20,13 @@ import qyang.com.recommendation_service.repositories.ProductRepository;
 @Transactional
 public class AdminService {
 	private final ProductRepository productRepository;
+	private final RecommendationCache recommendationCache;
+	private final KnownUserFilter knownUserFilter;
 
-	public AdminService(ProductRepository productRepository) {
+	public AdminService(ProductRepository productRepository, RecommendationCache recommendationCache, KnownUserFilter knownUserFilter) {
 		this.productRepository = productRepository;
+		this.recommendationCache = recommendationCache;
+		this.knownUserFilter = knownUserFilter;
 	}
 
 	public ProductResponse createProduct(ProductRequest request) {
@@ -75,4 +84,30 @@ public class AdminService {
 				updatedProduct.getRatingNumber()
 		);
 	}
+
+	public RecommendationCacheStatsResponse getRecommendationCacheStats() {
+		return new RecommendationCacheStatsResponse(
+				recommendationCache.getUserRecommendationStats(),
+				recommendationCache.getCategoryRecommendationStats()
+		);
+	}
+
+	public void invalidateRecommendationCache() {
+		recommendationCache.invalidateAll();
+	}
+
+	public void invalidateRecommendationCache(String userId) {
+		recommendationCache.invalidateUser(userId);
+	}
+
+	public KnownUserFilterStatsResponse getKnownUserFilterStats() {
+		return knownUserFilter.getStats();
+	}
+
+	// runs outside the admin request's transaction so the rebuild reads committed users only
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public KnownUserFilterStatsResponse rebuildKnownUserFilter() {
+		knownUserFilter.rebuild();
+		return knownUserFilter.getStats();
+	}
 }
@@ -0,0 +1,94 @@
+package qyang.com.recommendation_service.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import qyang.com.recommendation_service.dtos.EventRequest;
+import qyang.com.recommendation_service.events.EventType;
+import qyang.com.recommendation_service.events.EventWriter;
+import qyang.com.recommendation_service.events.InteractionEvent;
+import qyang.com.recommendation_service.exceptions.EventBufferFullException;
+import qyang.com.recommendation_service.index.SeenItemFilter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Validates interaction events and hands them to the {@link EventWriter}. Nothing here touches
+ * the database, so accepting events costs the same however slow the inserts are; purchases are
+ * added to the user's {@link SeenItemFilter} set in memory.
+ */
+@Service
+public class EventService {
+	// widths of events.user_id and events.parent_asin; a longer value would fail the writer's whole batch
+	private static final int USER_ID_MAX_LENGTH = 100;
+	private static final int PARENT_ASIN_MAX_LENGTH = 50;
+
+	private final EventWriter eventWriter;
+	private final SeenItemFilter seenItemFilter;
+	private final int batchMaxSize;
+
+	public EventService(EventWriter eventWriter, SeenItemFilter seenItemFilter,
+						@Value("${recommendation.events.batch.max-size:1000}") int batchMaxSize) {
+		this.eventWriter = eventWriter;
+		this.seenItemFilter = seenItemFilter;
+		this.batchMaxSize = batchMaxSize;
+	}
+
+	/**
+	 * Accepts all of {@code requests} or none of them.
+	 *
+	 * @return the number of events accepted
+	 * @throws EventBufferFullException when the buffer has no room for them
+	 */
+	public int record(List<EventRequest> requests) {
+		if (requests == null || requests.isEmpty()) {
+			throw new IllegalArgumentException("events must not be empty");
+		}
+		if (requests.size() > batchMaxSize) {
+			throw new IllegalArgumentException("At most " + batchMaxSize + " events are allowed per batch");
+		}
+		Instant now = Instant.now();
+		List<InteractionEvent> events = new ArrayList<>(requests.size());
+		for (EventRequest request : requests) {
+			events.add(toEvent(request, now));
+		}
+		if (!eventWriter.submit(events)) {
+			throw new EventBufferFullException("Event buffer is full, retry later");
+		}
+		// recommendations stop offering a product as soon as it is bought, not when the event is written
+		for (InteractionEvent event : events) {
+			if (event.type() == EventType.PURCHASE) {
+				seenItemFilter.add(event.userId(), event.parentAsin());
+			}
+		}
+		return events.size();
+	}
+
+	private static InteractionEvent toEvent(EventRequest request, Instant now) {
+		if (request == null || request.getUserId() == null || request.getUserId().isBlank()) {
+			throw new IllegalArgumentException("userId is required");
+		}
+		if (request.getParentAsin() == null || request.getParentAsin().isBlank()) {
+			throw new IllegalArgumentException("parentAsin is required");
+		}
+		if (request.getUserId().length() > USER_ID_MAX_LENGTH) {
+			throw new IllegalArgumentException("userId must be at most " + USER_ID_MAX_LENGTH + " characters");
+		}
+		if (request.getParentAsin().length() > PARENT_ASIN_MAX_LENGTH) {
+			throw new IllegalArgumentException("parentAsin must be at most " + PARENT_ASIN_MAX_LENGTH + " characters");
+		}
+		if (request.getType() == null) {
+			throw new IllegalArgumentException("type is required");
+		}
+		EventType type;
+		try {
+			type = EventType.valueOf(request.getType().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unsupported event type: " + request.getType());
+		}
+		return new InteractionEvent(request.getUserId(), request.getParentAsin(), type,
+				request.getOccurredAt() != null ? request.getOccurredAt() : now);
+	}
+}
@@ -0,0 +1,112 @@
+package qyang.com.recommendation_service.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import qyang.com.recommendation_service.dtos.ProductListMigrationResponse;
+import qyang.com.recommendation_service.index.ProductDictionary;
+import qyang.com.recommendation_service.models.CategoryRecommendation;
+import qyang.com.recommendation_service.models.ProductListCodec;
+import qyang.com.recommendation_service.models.Recommendation;
+import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
+import qyang.com.recommendation_service.repositories.RecommendationRepository;
+
+import java.util.List;
+
+/**
+ * Fills {@code product_list_bin} from {@code product_list} for every stored recommendation,
+ * assigning product dictionary indexes for ASINs seen for the first time. By default the JSON
+ * column is left in place; with {@code clearJson} it is set to null on every row that has a
+ * binary copy, so that rows are only as large as the binary list. Either way the service can be
+ * switched back to the JSON format, which decodes the binary list for rows without JSON.
+ */
+@Service
+@Slf4j
+public class ProductListMigrationService {
+	private final RecommendationRepository recommendationRepository;
+	private final CategoryRecommendationRepository categoryRecommendationRepository;
+	private final ProductDictionary productDictionary;
+	private final TransactionTemplate pageTransaction;
+	private final int batchSize;
+
+	public ProductListMigrationService(RecommendationRepository recommendationRepository,
+									   CategoryRecommendationRepository categoryRecommendationRepository,
+									   ProductDictionary productDictionary,
+									   PlatformTransactionManager transactionManager,
+									   @Value("${recommendation.migration.batch-size:500}") int batchSize) {
+		this.recommendationRepository = recommendationRepository;
+		this.categoryRecommendationRepository = categoryRecommendationRepository;
+		this.productDictionary = productDictionary;
+		this.pageTransaction = new TransactionTemplate(transactionManager);
+		this.batchSize = batchSize;
+	}
+
+	public ProductListMigrationResponse migrateToBinary(boolean clearJson) {
+		long recommendations = 0;
+		Page<Recommendation> page;
+		int pageNumber = 0;
+		do {
+			PageRequest request = PageRequest.of(pageNumber++, batchSize, Sort.by("userId"));
+			page = pageTransaction.execute(status -> {
+				Page<Recommendation> rows = recommendationRepository.findAll(request);
+				// rows cleared by an earlier run only have the binary copy left
+				rows.forEach(rec -> {
+					if (rec.getProductList() != null) {
+						rec.setProductListBin(encode(rec.getProductList()));
+					}
+				});
+				recommendationRepository.saveAll(rows.getContent());
+				return rows;
+			});
+			recommendations += page.getNumberOfElements();
+		} while (page.hasNext());
+
+		long categoryRecommendations = 0;
+		Page<CategoryRecommendation> categoryPage;
+		pageNumber = 0;
+		do {
+			PageRequest request = PageRequest.of(pageNumber++, batchSize, Sort.by("id.userId", "id.category"));
+			categoryPage = pageTransaction.execute(status -> {
+				Page<CategoryRecommendation> rows = categoryRecommendationRepository.findAll(request);
+				// rows cleared by an earlier run only have the binary copy left
+				rows.forEach(rec -> {
+					if (rec.getProductList() != null) {
+						rec.setProductListBin(encode(rec.getProductList()));
+					}
+				});
+				categoryRecommendationRepository.saveAll(rows.getContent());
+				return rows;
+			});
+			categoryRecommendations += categoryPage.getNumberOfElements();
+		} while (categoryPage.hasNext());
+
+		long productListsCleared = 0;
+		if (clearJson) {
+			productListsCleared = pageTransaction.execute(status ->
+					(long) recommendationRepository.clearMigratedProductLists() + categoryRecommendationRepository.clearMigratedProductLists());
+		}
+
+		log.info("Migrated {} recommendations and {} category recommendations to binary product lists, cleared {} JSON lists",
+				recommendations, categoryRecommendations, productListsCleared);
+		return new ProductListMigrationResponse(recommendations, categoryRecommendations, productDictionary.size(), productListsCleared);
+	}
+
+	private byte[] encode(String productListJson) {
+		if (productListJson == null) {
+			return null;
+		}
+		List<String> productList = ProductListCodec.decodeJson(productListJson);
+		// one assignment transaction per list rather than per new product
+		productDictionary.assignAll(productList);
+		int[] productIndexes = new int[productList.size()];
+		for (int i = 0; i < productIndexes.length; i++) {
+			productIndexes[i] = productDictionary.indexOf(productList.get(i));
+		}
+		return ProductListCodec.encodeBinary(productIndexes);
+	}
+}
@@ -2,32 +2,100 @@ package qyang.com.recommendation_service.services;
 
 import io.jsonwebtoken.Jwts;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.stereotype.Service;
+import qyang.com.recommendation_service.batch.BatchLoader;
+import qyang.com.recommendation_service.batch.BatchLoaderFactory;
 import qyang.com.recommendation_service.dtos.ProductResponse;
+import qyang.com.recommendation_service.dtos.RelatedProductsResponse;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.RelatedProductIndex;
+import qyang.com.recommendation_service.models.Product;
 import qyang.com.recommendation_service.repositories.ProductRepository;
 import qyang.com.recommendation_service.security.JwtUtil;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
     private final ProductRepository productRepository;
+    // null unless micro-batching is enabled
+    private final BatchLoader<String, Product> productLoader;
+    private final Executor asyncExecutor;
+    private final RelatedProductIndex relatedProductIndex;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, BatchLoaderFactory batchLoaderFactory,
+                          @Qualifier("applicationTaskExecutor") Executor asyncExecutor, RelatedProductIndex relatedProductIndex) {
         this.productRepository = productRepository;
+        this.relatedProductIndex = relatedProductIndex;
+        this.asyncExecutor = asyncExecutor;
+        this.productLoader = batchLoaderFactory.create("products", asins -> productRepository.findAllById(asins).stream()
+                .collect(Collectors.toMap(Product::getParentAsin, Function.identity())));
     }
 
     public ProductResponse findByParentAsin(String asin) {
-        return productRepository.findById(asin)
+        Optional<Product> found = productLoader != null ? Optional.ofNullable(productLoader.get(asin)) : productRepository.findById(asin);
+        return found
                 .map(product->new ProductResponse(product.getParentAsin(), product.getTitle(), product.getPrice(), product.getCategory(), product.getAverageRating(), product.getRatingNumber()))
                 .orElse(null);
     }
 
+    /**
+     * Non-blocking form of {@link #findByParentAsin}: joins the next batch query when
+     * micro-batching is enabled, otherwise runs the lookup on the application task executor.
+     */
+    public CompletableFuture<ProductResponse> findByParentAsinAsync(String asin) {
+        if (productLoader == null) {
+            return CompletableFuture.supplyAsync(() -> findByParentAsin(asin), asyncExecutor);
+        }
+        return productLoader.load(asin)
+                .thenApply(product -> product == null ? null : new ProductResponse(product.getParentAsin(), product.getTitle(), product.getPrice(), product.getCategory(), product.getAverageRating(), product.getRatingNumber()));
+    }
+
     public List<ProductResponse> findByCategory(String category) {
         return productRepository.findByCategory(category).stream()
                 .map(product->new ProductResponse(product.getParentAsin(), product.getTitle(), product.getPrice(), product.getCategory(), product.getAverageRating(), product.getRatingNumber()))
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Loads all given products with one {@code IN} query and returns them in the order of
+     * {@code asins}; ASINs without a product row are skipped.
+     */
+    public List<ProductResponse> findByParentAsins(List<String> asins) {
+        Map<String, ProductResponse> byAsin = productRepository.findAllById(asins).stream()
+                .map(product->new ProductResponse(product.getParentAsin(), product.getTitle(), product.getPrice(), product.getCategory(), product.getAverageRating(), product.getRatingNumber()))
+                .collect(Collectors.toMap(ProductResponse::getParentAsin, Function.identity()));
+        List<ProductResponse> products = new ArrayList<>(asins.size());
+        for (String asin : asins) {
+            ProductResponse product = byAsin.get(asin);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * The products most often interacted with by the users who interacted with {@code asin}, best
+     * first, from the in-memory co-occurrence index; no query runs.
+     */
+    public RelatedProductsResponse findRelated(String asin, int limit) {
+        if (limit < 1 || limit > relatedProductIndex.getMaxNeighbors()) {
+            throw new IllegalArgumentException("limit must be between 1 and " + relatedProductIndex.getMaxNeighbors());
+        }
+        List<String> related = relatedProductIndex.getRelated(asin, limit);
+        if (related == null) {
+            throw new ResourceNotFoundException("No related products found for product: " + asin);
+        }
+        return new RelatedProductsResponse(asin, related);
+    }
 }
@@ -1,67 +1,474 @@
 package qyang.com.recommendation_service.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.cache.RecommendationCache;
+import qyang.com.recommendation_service.dtos.BatchRecommendationResponse;
 import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.InteractionRequest;
+import qyang.com.recommendation_service.dtos.ProductResponse;
 import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
+import qyang.com.recommendation_service.exceptions.RecommendationNotFoundException;
 import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.KnownUserFilter;
+import qyang.com.recommendation_service.index.PopularityRanking;
+import qyang.com.recommendation_service.index.ProductAttributeIndex;
+import qyang.com.recommendation_service.index.ProductFilter;
+import qyang.com.recommendation_service.index.SeenItemFilter;
 import qyang.com.recommendation_service.models.CategoryRecommendationId;
-import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
-import qyang.com.recommendation_service.repositories.RecommendationRepository;
+import qyang.com.recommendation_service.scoring.DiversityReranker;
+import qyang.com.recommendation_service.scoring.ScoringEngine;
+import qyang.com.recommendation_service.sources.RecommendationExperiment;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 @Service
 @Transactional
 public class RecommendationService {
-	private final RecommendationRepository recommendationRepository;
-	private final CategoryRecommendationRepository categoryRecommendationRepository;
-	private final UserService userService;
-	private ObjectMapper objectMapper;
+	private final ProductService productService;
+	private final RecommendationCache recommendationCache;
+	private final KnownUserFilter knownUserFilter;
+	private final PopularityRanking popularityRanking;
+	private final ScoringEngine scoringEngine;
+	private final ProductAttributeIndex productAttributeIndex;
+	private final SeenItemFilter seenItemFilter;
+	private final DiversityReranker diversityReranker;
+	private final RecommendationExperiment recommendationExperiment;
+	private final int batchMaxSize;
+	private final int maxInteractions;
+	private final Executor asyncExecutor;
+	private final float rerankPositionWeight;
+	private final float rerankRatingWeight;
 
-	public RecommendationService(RecommendationRepository recommendationRepository, CategoryRecommendationRepository categoryRecommendationRepository, UserService userService, ObjectMapper objectMapper) {
-		this.recommendationRepository = recommendationRepository;
-		this.categoryRecommendationRepository = categoryRecommendationRepository;
-		this.userService = userService;
-		this.objectMapper = objectMapper;
+	public RecommendationService(ProductService productService, RecommendationCache recommendationCache, KnownUserFilter knownUserFilter, PopularityRanking popularityRanking,
+								 ScoringEngine scoringEngine,
+								 ProductAttributeIndex productAttributeIndex, SeenItemFilter seenItemFilter, DiversityReranker diversityReranker,
+								 RecommendationExperiment recommendationExperiment,
+								 @Qualifier("applicationTaskExecutor") Executor asyncExecutor,
+								 @Value("${recommendation.batch.max-size:500}") int batchMaxSize,
+								 @Value("${recommendation.scoring.fold-in.max-interactions:200}") int maxInteractions,
+								 @Value("${recommendation.rerank.position-weight:1.0}") float rerankPositionWeight,
+								 @Value("${recommendation.rerank.rating-weight:0.5}") float rerankRatingWeight) {
+		if (rerankPositionWeight < 0 || rerankRatingWeight < 0) {
+			throw new IllegalArgumentException("recommendation.rerank weights must not be negative");
+		}
+		this.productService = productService;
+		this.recommendationCache = recommendationCache;
+		this.knownUserFilter = knownUserFilter;
+		this.popularityRanking = popularityRanking;
+		this.scoringEngine = scoringEngine;
+		this.productAttributeIndex = productAttributeIndex;
+		this.seenItemFilter = seenItemFilter;
+		this.diversityReranker = diversityReranker;
+		this.recommendationExperiment = recommendationExperiment;
+		this.batchMaxSize = batchMaxSize;
+		this.maxInteractions = maxInteractions;
+		this.asyncExecutor = asyncExecutor;
+		this.rerankPositionWeight = rerankPositionWeight;
+		this.rerankRatingWeight = rerankRatingWeight;
+	}
+
+	/**
+	 * The user's list without the products they have already bought or reviewed, narrowed to the
+	 * products that pass {@code filter} and re-ranked by a blend of stored position and rating
+	 * when a filter is given or {@code rerank} is set, then reordered to spread categories when
+	 * {@code diversify} is set. Every stage reads in-memory indexes ({@link SeenItemFilter},
+	 * {@link ProductAttributeIndex}, {@link DiversityReranker}), so none adds a query. Only the
+	 * {@code offset}/{@code limit} slice of the result is returned and expanded.
+	 */
+	public RecommendationResponse getUserRecommendation(String userId, boolean expandProducts, ProductFilter filter, boolean rerank, boolean diversify, int offset, int limit) {
+		checkSlice(offset, limit);
+		RecommendationResponse response = withoutSeen(getUserRecommendation(userId));
+		if (rerank || !filter.isEmpty()) {
+			response = response.withProductList(productAttributeIndex.rerank(response.getProductList(), filter, rerankPositionWeight, rerankRatingWeight));
+		}
+		if (diversify) {
+			response = response.withProductList(diversityReranker.diversify(response.getProductList()));
+		}
+		if (offset > 0 || limit < Integer.MAX_VALUE) {
+			response = response.slice(offset, limit);
+		}
+		// cached responses are shared, so product details go on a copy
+		return expandProducts ? response.withProducts(productService.findByParentAsins(response.getProductList())) : response;
 	}
 
+	/**
+	 * The user's list from the source of their {@link RecommendationExperiment} variant, timed and
+	 * counted against that variant.
+	 */
+	// SUPPORTS so that a cache hit does not open a transaction and borrow a pooled connection
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
 	public RecommendationResponse getUserRecommendation(String userId) {
-		if (userService.findByUserId(userId) == null) {
-			throw new ResourceNotFoundException("User not found: " + userId);
+		RecommendationExperiment.Variant variant = recommendationExperiment.variantOf(userId);
+		long start = System.nanoTime();
+		try {
+			RecommendationResponse cached = recommendationCache.getUserRecommendation(userId);
+			if (cached != null) {
+				variant.recordCacheHit();
+				return cached;
+			}
+			variant.recordCacheMiss();
+			if (!knownUserFilter.mightExist(userId)) {
+				throw new ResourceNotFoundException("User not found: " + userId);
+			}
+			return recommendationCache.getUserRecommendation(userId, () -> loadUserRecommendation(userId, variant));
+		} catch (RuntimeException e) {
+			variant.recordError(e);
+			throw e;
+		} finally {
+			variant.recordLatency(System.nanoTime() - start);
+		}
+	}
+
+	private RecommendationResponse loadUserRecommendation(String userId, RecommendationExperiment.Variant variant) {
+		RecommendationResponse folded = foldedRecommendation(userId);
+		if (folded != null) {
+			return folded;
 		}
+		try {
+			return variant.getSource().getUserRecommendation(userId);
+		} catch (RecommendationNotFoundException e) {
+			RecommendationResponse response = fallbackRecommendation(userId);
+			if (response == null) {
+				throw e;
+			}
+			return response;
+		}
+	}
+
+	/**
+	 * Non-blocking form of {@link #getUserRecommendation(String)} for the async endpoints: cache
+	 * hits and filtered unknown users complete immediately, misses complete when the source
+	 * answers, which with micro-batching enabled takes no thread while the query runs.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public CompletableFuture<RecommendationResponse> getUserRecommendationAsync(String userId) {
+		RecommendationExperiment.Variant variant = recommendationExperiment.variantOf(userId);
+		long start = System.nanoTime();
+		RecommendationResponse cached = recommendationCache.getUserRecommendation(userId);
+		if (cached != null) {
+			variant.recordCacheHit();
+			variant.recordLatency(System.nanoTime() - start);
+			return CompletableFuture.completedFuture(withoutSeen(cached));
+		}
+		variant.recordCacheMiss();
+		// the latency covers the wait for the source, not just the time a thread was busy
+		return loadUserRecommendationAsync(userId, variant).whenComplete((response, e) -> {
+			if (e != null) {
+				variant.recordError(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+			}
+			variant.recordLatency(System.nanoTime() - start);
+		});
+	}
 
-		return recommendationRepository.findById(userId)
-				.map(rec -> {
-					try {
-						List<String> productList = objectMapper.readValue(rec.getProductList(), new TypeReference<List<String>>() {
-						});
-						return new RecommendationResponse(rec.getUserId(), productList);
-					} catch (JsonProcessingException e) {
-						throw new RuntimeException("Error parsing product list", e);
+	private CompletableFuture<RecommendationResponse> loadUserRecommendationAsync(String userId, RecommendationExperiment.Variant variant) {
+		if (!knownUserFilter.mightExist(userId)) {
+			return CompletableFuture.failedFuture(new ResourceNotFoundException("User not found: " + userId));
+		}
+		RecommendationResponse folded = foldedRecommendation(userId);
+		if (folded != null) {
+			recommendationCache.putUserRecommendation(folded);
+			return CompletableFuture.completedFuture(withoutSeen(folded));
+		}
+
+		// concurrent misses for the user, async or blocking, share one source load
+		return recommendationCache.getUserRecommendationAsync(userId, () ->
+				variant.getSource().getUserRecommendationAsync(userId, asyncExecutor).handle((response, e) -> {
+					if (e != null) {
+						Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+						response = cause instanceof RecommendationNotFoundException ? fallbackRecommendation(userId) : null;
+						if (response == null) {
+							throw e instanceof CompletionException completion ? completion : new CompletionException(cause);
+						}
 					}
-				})
-				.orElseThrow(() -> new ResourceNotFoundException("No recommendation found for user: " + userId));
+					return response;
+				})).thenApply(this::withoutSeen);
 	}
 
-	public CategoryRecommendationResponse getCategoryRecommendation(String userId, String category) {
-		if (userService.findByUserId(userId) == null) {
+	/**
+	 * Runs {@link #getCategoryRecommendation(String, String)} off the request thread; concurrent
+	 * misses share one load with each other and with the blocking endpoint.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public CompletableFuture<CategoryRecommendationResponse> getCategoryRecommendationAsync(String userId, String category) {
+		CategoryRecommendationId categoryRecommendationId = new CategoryRecommendationId(userId, category);
+		CategoryRecommendationResponse cached = recommendationCache.getCategoryRecommendation(categoryRecommendationId);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(withoutSeen(cached));
+		}
+		if (!knownUserFilter.mightExist(userId)) {
+			return CompletableFuture.failedFuture(new ResourceNotFoundException("User not found: " + userId));
+		}
+		return recommendationCache.getCategoryRecommendationAsync(categoryRecommendationId, () ->
+				CompletableFuture.supplyAsync(() -> loadCategoryRecommendation(userId, category), asyncExecutor))
+				.thenApply(this::withoutSeen);
+	}
+
+	/**
+	 * Resolves many users at once: cache hits are answered in memory and the remaining
+	 * users go to the source in one call per experiment variant, a single {@code IN} query for
+	 * the database. Cache lookups are counted against each user's variant; batch calls are not
+	 * timed per variant, since their latency depends on how the batch splits.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public BatchRecommendationResponse getUserRecommendations(List<String> userIds) {
+		if (userIds == null || userIds.isEmpty()) {
+			throw new IllegalArgumentException("userIds must not be empty");
+		}
+		Set<String> requested = new LinkedHashSet<>(userIds);
+		if (requested.size() > batchMaxSize) {
+			throw new IllegalArgumentException("At most " + batchMaxSize + " userIds are allowed per batch");
+		}
+
+		Map<String, RecommendationResponse> recommendations = new LinkedHashMap<>();
+		Map<RecommendationExperiment.Variant, List<String>> misses = new LinkedHashMap<>();
+		List<String> unknown = new ArrayList<>();
+		for (String userId : requested) {
+			RecommendationExperiment.Variant variant = recommendationExperiment.variantOf(userId);
+			RecommendationResponse cached = recommendationCache.getUserRecommendation(userId);
+			if (cached != null) {
+				variant.recordCacheHit();
+				recommendations.put(userId, cached);
+				continue;
+			}
+			variant.recordCacheMiss();
+			if (!knownUserFilter.mightExist(userId)) {
+				unknown.add(userId);
+			} else if ((cached = foldedRecommendation(userId)) != null) {
+				recommendationCache.putUserRecommendation(cached);
+				recommendations.put(userId, cached);
+			} else {
+				misses.computeIfAbsent(variant, key -> new ArrayList<>()).add(userId);
+			}
+		}
+
+		Map<String, String> notFound = new LinkedHashMap<>();
+		for (String userId : unknown) {
+			notFound.put(userId, "User not found: " + userId);
+		}
+		for (Map.Entry<RecommendationExperiment.Variant, List<String>> variantMisses : misses.entrySet()) {
+			Map<String, RecommendationResponse> loaded = variantMisses.getKey().getSource().getUserRecommendations(variantMisses.getValue());
+			for (String userId : variantMisses.getValue()) {
+				if (!loaded.containsKey(userId)) {
+					notFound.put(userId, "User not found: " + userId);
+					continue;
+				}
+				RecommendationResponse response = loaded.get(userId);
+				if (response == null) {
+					response = fallbackRecommendation(userId);
+				}
+				if (response == null) {
+					notFound.put(userId, "No recommendation found for user: " + userId);
+				} else {
+					recommendationCache.putUserRecommendation(response);
+					recommendations.put(userId, response);
+				}
+			}
+		}
+		recommendations.replaceAll((userId, response) -> withoutSeen(response));
+		return new BatchRecommendationResponse(recommendations, notFound);
+	}
+
+	/**
+	 * Folds the user's recent ratings into a fresh vector for the factor model and answers with
+	 * the list scored from it. The vector keeps serving the user's recommendations, ahead of the
+	 * stored list, until it expires, is evicted or another model is loaded; the recommendation
+	 * tables are not touched.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public RecommendationResponse foldInInteractions(String userId, List<InteractionRequest> interactions) {
+		if (interactions == null || interactions.isEmpty()) {
+			throw new IllegalArgumentException("interactions must not be empty");
+		}
+		if (interactions.size() > maxInteractions) {
+			throw new IllegalArgumentException("At most " + maxInteractions + " interactions are allowed per request");
+		}
+		Map<String, Float> ratings = new LinkedHashMap<>();
+		for (InteractionRequest interaction : interactions) {
+			if (interaction.getParentAsin() == null || interaction.getParentAsin().isBlank()) {
+				throw new IllegalArgumentException("parentAsin is required");
+			}
+			if (interaction.getRating() == null || !(interaction.getRating() >= 1 && interaction.getRating() <= 5)) {
+				throw new IllegalArgumentException("rating must be between 1 and 5");
+			}
+			ratings.put(interaction.getParentAsin(), interaction.getRating());
+		}
+		if (!knownUserFilter.mightExist(userId)) {
 			throw new ResourceNotFoundException("User not found: " + userId);
 		}
+
+		RecommendationResponse response = new RecommendationResponse(userId, scoringEngine.foldIn(userId, ratings));
+		response.setSource(RecommendationResponse.SOURCE_MODEL);
+		recommendationCache.putUserRecommendation(response);
+		// a rated product has been reviewed, so it is not recommended back
+		seenItemFilter.addAll(userId, ratings.keySet());
+		return withoutSeen(response);
+	}
+
+	public CategoryRecommendationResponse getCategoryRecommendation(String userId, String category, boolean expandProducts, int offset, int limit) {
+		checkSlice(offset, limit);
+		CategoryRecommendationResponse response = withoutSeen(getCategoryRecommendation(userId, category));
+		if (offset > 0 || limit < Integer.MAX_VALUE) {
+			response = response.slice(offset, limit);
+		}
+		return expandProducts ? response.withProducts(productService.findByParentAsins(response.getProductList())) : response;
+	}
+
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public CategoryRecommendationResponse getCategoryRecommendation(String userId, String category) {
 		CategoryRecommendationId categoryRecommendationId = new CategoryRecommendationId(userId, category);
-		return categoryRecommendationRepository.findById(categoryRecommendationId)
-				.map(rec -> {
-					try {
-						List<String> productList = objectMapper.readValue(rec.getProductList(), new TypeReference<List<String>>() {});
-						return new CategoryRecommendationResponse(rec.getId().getUserId(), rec.getId().getCategory(), productList);
-					} catch (JsonProcessingException e) {
-						throw new RuntimeException("Error parsing product list", e);
-					}
-				})
-				.orElseThrow(() -> new ResourceNotFoundException("No recommendations found for user " + userId + " in category " + category));
+		CategoryRecommendationResponse cached = recommendationCache.getCategoryRecommendation(categoryRecommendationId);
+		if (cached != null) {
+			return cached;
+		}
+		if (!knownUserFilter.mightExist(userId)) {
+			throw new ResourceNotFoundException("User not found: " + userId);
+		}
+		return recommendationCache.getCategoryRecommendation(categoryRecommendationId, () -> loadCategoryRecommendation(userId, category));
+	}
+
+	private CategoryRecommendationResponse loadCategoryRecommendation(String userId, String category) {
+		try {
+			return recommendationExperiment.getDefaultSource().getCategoryRecommendation(userId, category);
+		} catch (RecommendationNotFoundException e) {
+			List<String> scored = scoringEngine.recommend(userId, category);
+			if (scored != null && !scored.isEmpty()) {
+				CategoryRecommendationResponse response = new CategoryRecommendationResponse(userId, category, scored);
+				response.setSource(RecommendationResponse.SOURCE_MODEL);
+				return response;
+			}
+			List<String> popular = popularityRanking.getCategory(category);
+			if (popular.isEmpty()) {
+				throw e;
+			}
+			CategoryRecommendationResponse response = new CategoryRecommendationResponse(userId, category, popular);
+			response.setSource(RecommendationResponse.SOURCE_POPULARITY);
+			return response;
+		}
+	}
+
+	public UserCategoryRecommendationsResponse getAllCategoryRecommendations(String userId, boolean expandProducts) {
+		UserCategoryRecommendationsResponse response = getAllCategoryRecommendations(userId);
+		if (seenItemFilter.hasSeenAny(userId)) {
+			List<CategoryRecommendationResponse> categories = new ArrayList<>(response.getCategories().size());
+			for (CategoryRecommendationResponse category : response.getCategories()) {
+				categories.add(withoutSeen(category));
+			}
+			response = new UserCategoryRecommendationsResponse(userId, categories);
+		}
+		if (!expandProducts) {
+			return response;
+		}
+		// one product query for the union of every category's list
+		Set<String> asins = new LinkedHashSet<>();
+		for (CategoryRecommendationResponse category : response.getCategories()) {
+			asins.addAll(category.getProductList());
+		}
+		Map<String, ProductResponse> productsByAsin = new HashMap<>();
+		for (ProductResponse product : productService.findByParentAsins(new ArrayList<>(asins))) {
+			productsByAsin.put(product.getParentAsin(), product);
+		}
+		List<CategoryRecommendationResponse> categories = new ArrayList<>(response.getCategories().size());
+		for (CategoryRecommendationResponse category : response.getCategories()) {
+			List<ProductResponse> products = new ArrayList<>();
+			for (String asin : category.getProductList()) {
+				ProductResponse product = productsByAsin.get(asin);
+				if (product != null) {
+					products.add(product);
+				}
+			}
+			categories.add(category.withProducts(products));
+		}
+		return new UserCategoryRecommendationsResponse(userId, categories);
+	}
+
+	/**
+	 * Every category list of a user in one source call; each list is also put in the
+	 * per-category cache so that follow-up single-category requests are served in memory.
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public UserCategoryRecommendationsResponse getAllCategoryRecommendations(String userId) {
+		if (!knownUserFilter.mightExist(userId)) {
+			throw new ResourceNotFoundException("User not found: " + userId);
+		}
+
+		UserCategoryRecommendationsResponse response = recommendationExperiment.getDefaultSource().getAllCategoryRecommendations(userId);
+		response.getCategories().forEach(recommendationCache::putCategoryRecommendation);
+		return response;
+	}
+
+	private static void checkSlice(int offset, int limit) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("offset must not be negative");
+		}
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+	}
+
+	// cached lists are kept whole and filtered on the way out, so a purchase takes effect on the
+	// user's next request without invalidating anything
+	private RecommendationResponse withoutSeen(RecommendationResponse response) {
+		if (!seenItemFilter.hasSeenAny(response.getUserId())) {
+			return response;
+		}
+		List<String> productList = response.getProductList();
+		List<String> unseen = seenItemFilter.filter(response.getUserId(), productList);
+		return unseen == productList ? response : response.withProductList(unseen);
+	}
+
+	private CategoryRecommendationResponse withoutSeen(CategoryRecommendationResponse response) {
+		if (!seenItemFilter.hasSeenAny(response.getUserId())) {
+			return response;
+		}
+		List<String> productList = response.getProductList();
+		List<String> unseen = seenItemFilter.filter(response.getUserId(), productList);
+		return unseen == productList ? response : response.withProductList(unseen);
+	}
+
+	// a vector folded in from recent ratings is newer than any stored list
+	private RecommendationResponse foldedRecommendation(String userId) {
+		if (!scoringEngine.hasFoldedVector(userId)) {
+			return null;
+		}
+		List<String> scored = scoringEngine.recommend(userId);
+		if (scored == null || scored.isEmpty()) {
+			return null;
+		}
+		RecommendationResponse response = new RecommendationResponse(userId, scored);
+		response.setSource(RecommendationResponse.SOURCE_MODEL);
+		return response;
+	}
+
+	// existing users the offline job has not covered are scored against the factor model when it
+	// knows them, or else get the overall best sellers, instead of a 404
+	private RecommendationResponse fallbackRecommendation(String userId) {
+		List<String> scored = scoringEngine.recommend(userId);
+		if (scored != null && !scored.isEmpty()) {
+			RecommendationResponse response = new RecommendationResponse(userId, scored);
+			response.setSource(RecommendationResponse.SOURCE_MODEL);
+			return response;
+		}
+		List<String> popular = popularityRanking.getOverall();
+		if (popular.isEmpty()) {
+			return null;
+		}
+		RecommendationResponse response = new RecommendationResponse(userId, popular);
+		response.setSource(RecommendationResponse.SOURCE_POPULARITY);
+		return response;
 	}
 }
@@ -0,0 +1,397 @@
+package qyang.com.recommendation_service.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import qyang.com.recommendation_service.cache.RecommendationCache;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationSnapshotResponse;
+import qyang.com.recommendation_service.dtos.RecommendationSnapshotStatusResponse;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.ProductDictionary;
+import qyang.com.recommendation_service.models.CategoryRecommendation;
+import qyang.com.recommendation_service.models.ProductListCodec;
+import qyang.com.recommendation_service.models.Recommendation;
+import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
+import qyang.com.recommendation_service.repositories.RecommendationRepository;
+import qyang.com.recommendation_service.repositories.UserRepository;
+import qyang.com.recommendation_service.snapshot.RecommendationSnapshot;
+import qyang.com.recommendation_service.snapshot.RecommendationSnapshotWriter;
+import qyang.com.recommendation_service.sources.RecommendationExperiment;
+import qyang.com.recommendation_service.sources.RecommendationSourceType;
+import qyang.com.recommendation_service.sources.SnapshotRecommendationSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Manages versioned recommendation snapshots for {@link SnapshotRecommendationSource}.
+ * <p>
+ * Every export writes a new, immutable version file. Exported once a training run has finished,
+ * its results replace the previous run's in one step instead of row by row. Activating a version
+ * opens, verifies and pre-faults it off the request path, then swaps it in with a single volatile
+ * write; readers never block and see either the old or the new version in full. The version it
+ * replaced is kept open for an instant {@link #rollback()}. After each swap the cached responses
+ * that were read from the snapshot are refreshed in place from the new version rather than
+ * emptied, so a swap does not cause a miss storm. The refresh runs on the loader thread after the
+ * swap, outside the switch lock; until it reaches an entry, that entry serves the previous
+ * version. Fold-in and fallback responses are left as they are.
+ */
+@Service
+@Slf4j
+public class RecommendationSnapshotService {
+	private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+	private static final Pattern VERSION_PATTERN = Pattern.compile("recommendations-\\d{17}");
+
+	private final UserRepository userRepository;
+	private final RecommendationRepository recommendationRepository;
+	private final CategoryRecommendationRepository categoryRecommendationRepository;
+	private final SnapshotRecommendationSource snapshotRecommendationSource;
+	private final RecommendationCache recommendationCache;
+	private final TransactionTemplate pageTransaction;
+	private final RecommendationExperiment recommendationExperiment;
+	private final ProductDictionary productDictionary;
+	private final Path snapshotDirectory;
+	private final int retainedVersions;
+	private final int batchSize;
+	// serializes activations and rollbacks; readers never take it
+	private final ReentrantLock switchLock = new ReentrantLock();
+	private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "snapshot-loader");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicReference<String> loadingVersion = new AtomicReference<>();
+	private volatile RecommendationSnapshot previous;
+	private volatile String lastError;
+
+	public RecommendationSnapshotService(UserRepository userRepository,
+										 RecommendationRepository recommendationRepository,
+										 CategoryRecommendationRepository categoryRecommendationRepository,
+										 SnapshotRecommendationSource snapshotRecommendationSource,
+										 RecommendationCache recommendationCache,
+										 PlatformTransactionManager transactionManager,
+										 RecommendationExperiment recommendationExperiment,
+										 ProductDictionary productDictionary,
+										 @Value("${recommendation.snapshot.directory:data/snapshots}") String snapshotDirectory,
+										 @Value("${recommendation.snapshot.retained-versions:3}") int retainedVersions,
+										 @Value("${recommendation.migration.batch-size:500}") int batchSize) {
+		this.userRepository = userRepository;
+		this.recommendationRepository = recommendationRepository;
+		this.categoryRecommendationRepository = categoryRecommendationRepository;
+		this.snapshotRecommendationSource = snapshotRecommendationSource;
+		this.recommendationCache = recommendationCache;
+		this.pageTransaction = new TransactionTemplate(transactionManager);
+		this.pageTransaction.setReadOnly(true);
+		this.recommendationExperiment = recommendationExperiment;
+		this.productDictionary = productDictionary;
+		this.snapshotDirectory = Path.of(snapshotDirectory);
+		this.retainedVersions = Math.max(2, retainedVersions);
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Starts serving the newest version that passes verification.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		if (!recommendationExperiment.usesSource(RecommendationSourceType.SNAPSHOT)) {
+			return;
+		}
+		for (String version : listVersions()) {
+			try {
+				RecommendationSnapshot snapshot = openVerified(version);
+				snapshotRecommendationSource.setSnapshot(snapshot);
+				return;
+			} catch (IOException | IllegalStateException e) {
+				log.error("Skipping recommendation snapshot version {}", version, e);
+			}
+		}
+		log.warn("No usable recommendation snapshot in {}, serving from the database until one is activated", snapshotDirectory);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		loader.shutdownNow();
+	}
+
+	/**
+	 * Writes the current tables to a new version file. The new version is not served until it
+	 * is activated.
+	 */
+	public RecommendationSnapshotResponse export() {
+		Path target = nextVersionPath();
+		RecommendationSnapshotResponse response;
+		try (RecommendationSnapshotWriter writer = new RecommendationSnapshotWriter(target)) {
+			String lastUserId = "";
+			List<String> userIds;
+			do {
+				String afterUserId = lastUserId;
+				userIds = pageTransaction.execute(status -> writePage(writer, afterUserId));
+				if (!userIds.isEmpty()) {
+					lastUserId = userIds.get(userIds.size() - 1);
+				}
+			} while (userIds.size() == batchSize);
+			response = writer.finish();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error writing recommendation snapshot " + target, e);
+		}
+		log.info("Exported {} users and {} category recommendations to snapshot version {}",
+				response.getUsers(), response.getCategoryRecommendations(), response.getVersion());
+		pruneVersions();
+		return response;
+	}
+
+	/**
+	 * Loads, verifies and activates {@code version} on a background thread.
+	 */
+	public RecommendationSnapshotStatusResponse activateAsync(String version) {
+		requireSnapshotSource();
+		requireVersionExists(version);
+		if (!loadingVersion.compareAndSet(null, version)) {
+			throw new IllegalStateException("Snapshot version " + loadingVersion.get() + " is already being loaded");
+		}
+		loader.execute(() -> {
+			try {
+				activate(version);
+			} catch (RuntimeException e) {
+				log.error("Could not activate recommendation snapshot version {}", version, e);
+			} finally {
+				loadingVersion.set(null);
+			}
+		});
+		return getStatus();
+	}
+
+	public RecommendationSnapshotStatusResponse activate(String version) {
+		requireSnapshotSource();
+		requireVersionExists(version);
+		RecommendationSnapshot next;
+		try {
+			// everything expensive happens before the swap, while the current version keeps serving
+			next = openVerified(version);
+			next.load();
+		} catch (IOException | IllegalStateException e) {
+			lastError = "Version " + version + ": " + e.getMessage();
+			throw new IllegalStateException("Snapshot version " + version + " failed to load: " + e.getMessage(), e);
+		}
+		switchLock.lock();
+		try {
+			previous = snapshotRecommendationSource.getSnapshot();
+			swapTo(next);
+			lastError = null;
+		} finally {
+			switchLock.unlock();
+		}
+		return getStatus();
+	}
+
+	public RecommendationSnapshotStatusResponse rollback() {
+		requireSnapshotSource();
+		switchLock.lock();
+		try {
+			RecommendationSnapshot target = previous;
+			if (target == null) {
+				throw new IllegalStateException("No previous snapshot version to roll back to");
+			}
+			previous = snapshotRecommendationSource.getSnapshot();
+			swapTo(target);
+		} finally {
+			switchLock.unlock();
+		}
+		return getStatus();
+	}
+
+	public RecommendationSnapshotStatusResponse getStatus() {
+		return new RecommendationSnapshotStatusResponse(
+				toResponse(snapshotRecommendationSource.getSnapshot()),
+				toResponse(previous),
+				loadingVersion.get(),
+				lastError,
+				listVersions()
+		);
+	}
+
+	private void swapTo(RecommendationSnapshot snapshot) {
+		snapshotRecommendationSource.setSnapshot(snapshot);
+		// queued behind any activation still running, so refreshes run one at a time
+		loader.execute(() -> {
+			try {
+				refreshCache();
+			} catch (RuntimeException e) {
+				log.error("Could not refresh cached responses after a snapshot swap", e);
+			}
+		});
+	}
+
+	private void refreshCache() {
+		// entries read from other sources, by users in other experiment variants or from a
+		// fallback or fold-in, are kept as they are
+		recommendationCache.refreshAll(
+				(userId, cached) -> {
+					if (!RecommendationResponse.SOURCE_PERSONALIZED.equals(cached.getSource())
+							|| recommendationExperiment.variantOf(userId).getSourceType() != RecommendationSourceType.SNAPSHOT) {
+						return cached;
+					}
+					try {
+						return snapshotRecommendationSource.getUserRecommendation(userId);
+					} catch (ResourceNotFoundException e) {
+						return null;
+					}
+				},
+				(id, cached) -> {
+					if (!RecommendationResponse.SOURCE_PERSONALIZED.equals(cached.getSource())
+							|| recommendationExperiment.getDefaultSourceType() != RecommendationSourceType.SNAPSHOT) {
+						return cached;
+					}
+					try {
+						return snapshotRecommendationSource.getCategoryRecommendation(id.getUserId(), id.getCategory());
+					} catch (ResourceNotFoundException e) {
+						return null;
+					}
+				}
+		);
+	}
+
+	private Path nextVersionPath() {
+		LocalDateTime now = LocalDateTime.now();
+		Path target;
+		do {
+			target = snapshotDirectory.resolve("recommendations-" + now.format(VERSION_FORMAT) + RecommendationSnapshot.FILE_EXTENSION);
+			now = now.plusNanos(1_000_000);
+		} while (Files.exists(target));
+		return target;
+	}
+
+	private RecommendationSnapshot openVerified(String version) throws IOException {
+		RecommendationSnapshot snapshot = RecommendationSnapshot.open(pathOf(version));
+		if (!snapshot.verify()) {
+			throw new IllegalStateException("Checksum mismatch in " + snapshot.getPath());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Available versions, newest first.
+	 */
+	private List<String> listVersions() {
+		if (!Files.isDirectory(snapshotDirectory)) {
+			return List.of();
+		}
+		try (Stream<Path> files = Files.list(snapshotDirectory)) {
+			return files.map(RecommendationSnapshot::versionOf)
+					.filter(version -> VERSION_PATTERN.matcher(version).matches())
+					.sorted(Comparator.reverseOrder())
+					.toList();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error listing recommendation snapshots in " + snapshotDirectory, e);
+		}
+	}
+
+	private void pruneVersions() {
+		List<String> versions = listVersions();
+		for (String version : versions.subList(Math.min(retainedVersions, versions.size()), versions.size())) {
+			if (isOpen(version)) {
+				continue;
+			}
+			try {
+				// an unlinked file stays readable through mappings that still exist
+				Files.deleteIfExists(pathOf(version));
+			} catch (IOException e) {
+				log.warn("Could not delete old recommendation snapshot version {}", version, e);
+			}
+		}
+	}
+
+	private boolean isOpen(String version) {
+		RecommendationSnapshot active = snapshotRecommendationSource.getSnapshot();
+		RecommendationSnapshot before = previous;
+		return (active != null && active.getVersion().equals(version)) || (before != null && before.getVersion().equals(version));
+	}
+
+	private Path pathOf(String version) {
+		// versions arrive in request paths, so only generated names are accepted
+		if (!VERSION_PATTERN.matcher(version).matches()) {
+			throw new ResourceNotFoundException("Snapshot version not found: " + version);
+		}
+		return snapshotDirectory.resolve(version + RecommendationSnapshot.FILE_EXTENSION);
+	}
+
+	private void requireVersionExists(String version) {
+		if (!Files.exists(pathOf(version))) {
+			throw new ResourceNotFoundException("Snapshot version not found: " + version);
+		}
+	}
+
+	private void requireSnapshotSource() {
+		if (!recommendationExperiment.usesSource(RecommendationSourceType.SNAPSHOT)) {
+			throw new IllegalStateException("Snapshot versions are only served with recommendation.source=snapshot or a snapshot experiment variant");
+		}
+	}
+
+	private static RecommendationSnapshotResponse toResponse(RecommendationSnapshot snapshot) {
+		if (snapshot == null) {
+			return null;
+		}
+		return new RecommendationSnapshotResponse(
+				snapshot.getVersion(),
+				snapshot.getPath().toString(),
+				snapshot.getCreatedAt().toEpochMilli(),
+				snapshot.getUserCount(),
+				snapshot.getCategoryCount(),
+				snapshot.getProductCount(),
+				snapshot.getSizeBytes()
+		);
+	}
+
+	private List<String> writePage(RecommendationSnapshotWriter writer, String afterUserId) {
+		List<String> userIds = userRepository.findUserIdsAfter(afterUserId, PageRequest.of(0, batchSize));
+		Map<String, List<String>> productLists = new HashMap<>();
+		for (Recommendation recommendation : recommendationRepository.findAllById(userIds)) {
+			productLists.put(recommendation.getUserId(), decode(recommendation.getProductList(), recommendation.getProductListBin()));
+		}
+		Map<String, SortedMap<String, List<String>>> categories = new HashMap<>();
+		for (CategoryRecommendation recommendation : categoryRecommendationRepository.findByIdUserIdIn(userIds)) {
+			categories.computeIfAbsent(recommendation.getId().getUserId(), id -> new TreeMap<>())
+					.put(recommendation.getId().getCategory(), decode(recommendation.getProductList(), recommendation.getProductListBin()));
+		}
+		try {
+			for (String userId : userIds) {
+				writer.addUser(userId, productLists.get(userId), categories.getOrDefault(userId, new TreeMap<>()));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return userIds;
+	}
+
+	// rows migrated with the JSON cleared only have the binary copy
+	private List<String> decode(String productListJson, byte[] productListBin) {
+		if (productListJson != null) {
+			return ProductListCodec.decodeJson(productListJson);
+		}
+		return productListBin != null ? ProductListCodec.decodeBinary(productListBin, productDictionary::asinOf) : null;
+	}
+}
@@ -11,6 +11,8 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.batch.BatchLoader;
+import qyang.com.recommendation_service.batch.BatchLoaderFactory;
 import qyang.com.recommendation_service.dtos.LoginRequest;
 import qyang.com.recommendation_service.dtos.LoginResponse;
 import qyang.com.recommendation_service.dtos.ProfileResponse;
@@ -25,7 +27,10 @@ import qyang.com.recommendation_service.repositories.UserRepository;
 import qyang.com.recommendation_service.security.JwtUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -36,17 +41,24 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
     private final AuthenticationManager authenticationManager;
+    // null unless micro-batching is enabled
+    private final BatchLoader<String, User> userLoader;
 
-    public UserService(UserRepository userRepository, ProfileRepository profileRepository, PasswordEncoder passwordEncoder, JwtUtil jwtUtil, AuthenticationManager authenticationManager) {
+    public UserService(UserRepository userRepository, ProfileRepository profileRepository, PasswordEncoder passwordEncoder, JwtUtil jwtUtil, AuthenticationManager authenticationManager,
+                       BatchLoaderFactory batchLoaderFactory) {
         this.userRepository = userRepository;
         this.profileRepository = profileRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtil = jwtUtil;
         this.authenticationManager = authenticationManager;
+        this.userLoader = batchLoaderFactory.create("users", userIds -> userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getUserId, Function.identity())));
     }
 
     public UserResponse findByUserId(String userId) {
-        return userRepository.findById(userId)
+        // a batched lookup runs outside this transaction, so it only sees committed users
+        Optional<User> found = userLoader != null ? Optional.ofNullable(userLoader.get(userId)) : userRepository.findById(userId);
+        return found
                 .map(user -> new UserResponse(user.getUserId(), user.getUsername()))
                 .orElse(null);
     }
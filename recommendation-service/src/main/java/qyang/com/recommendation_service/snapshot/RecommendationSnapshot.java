@@ -0,0 +1,272 @@
+package qyang.com.recommendation_service.snapshot;
+
+import qyang.com.recommendation_service.models.ProductListCodec;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only, memory-mapped view of a recommendation snapshot file. The mapping lives outside the
+ * Java heap and is shared through the OS page cache, so a lookup is a hash probe plus decoding
+ * one small slice of the file. Only absolute reads are used, so one instance is safe to share
+ * between any number of threads.
+ * <p>
+ * Layout, all integers big-endian:
+ * <pre>
+ * header    magic, format version, created-at millis, user count, category list count,
+ *           product count, slot count, product table offset, slot table offset,
+ *           file length, CRC32 of everything after the header; padded to 64 bytes
+ * records   per user: u16 id length, id UTF-8, u8 flags, [product list],
+ *           u16 category count, per category: u16 name length, name UTF-8, product list
+ *           (a product list is an i32 byte length and a {@link ProductListCodec} binary list)
+ * products  i32 count, count + 1 i32 end offsets, ASIN UTF-8 bytes
+ * slots     slot count pairs of (i32 id hash, i32 record offset), 0 marking an empty slot
+ * </pre>
+ * Users without any stored list are recorded too. An id with no record is either a user who
+ * signed up after the export or not a user at all; the snapshot cannot tell these apart, and the
+ * service leaves that to its in-memory known-user filter rather than asking the database.
+ */
+public final class RecommendationSnapshot {
+    static final int MAGIC = 0x52534E50; // "RSNP"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int FLAG_HAS_RECOMMENDATION = 1;
+    public static final String FILE_EXTENSION = ".snapshot";
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final Instant createdAt;
+    private final int userCount;
+    private final int categoryCount;
+    private final int productCount;
+    private final int slotMask;
+    private final int productTable;
+    private final int productData;
+    private final int slotTable;
+    private final int length;
+    private final int checksum;
+
+    private RecommendationSnapshot(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a recommendation snapshot: " + path);
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported snapshot format version " + buffer.getInt(4) + ": " + path);
+        }
+        this.createdAt = Instant.ofEpochMilli(buffer.getLong(8));
+        this.userCount = buffer.getInt(16);
+        this.categoryCount = buffer.getInt(20);
+        this.productCount = buffer.getInt(24);
+        this.slotMask = buffer.getInt(28) - 1;
+        this.productTable = buffer.getInt(32);
+        this.productData = productTable + 4 * (productCount + 2);
+        this.slotTable = buffer.getInt(36);
+        this.length = buffer.getInt(40);
+        this.checksum = buffer.getInt(44);
+        if (length != buffer.capacity()) {
+            throw new IllegalStateException("Truncated snapshot, expected " + length + " bytes: " + path);
+        }
+    }
+
+    public static RecommendationSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Snapshot exceeds the 2 GB that a single mapping can address: " + path);
+            }
+            // the mapping stays valid after the channel is closed
+            return new RecommendationSnapshot(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Recomputes the checksum over the whole file.
+     */
+    public boolean verify() {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(HEADER_SIZE).limit(length));
+        return (int) crc.getValue() == checksum;
+    }
+
+    public Optional<UserRecord> findUser(String userId) {
+        byte[] key = userId.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        int slot = hash & slotMask;
+        while (true) {
+            int position = slotTable + slot * 8;
+            int offset = buffer.getInt(position + 4);
+            if (offset == 0) {
+                return Optional.empty();
+            }
+            if (buffer.getInt(position) == hash && keyEquals(offset, key)) {
+                return Optional.of(new UserRecord(offset));
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    /**
+     * Pages the whole mapping into memory so the first requests after a swap do not fault.
+     */
+    public void load() {
+        buffer.load();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getVersion() {
+        return versionOf(path);
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public int getCategoryCount() {
+        return categoryCount;
+    }
+
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public long getSizeBytes() {
+        return length;
+    }
+
+    public static String versionOf(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.endsWith(FILE_EXTENSION) ? fileName.substring(0, fileName.length() - FILE_EXTENSION.length()) : fileName;
+    }
+
+    // FNV-1a; the writer and the reader must agree on it
+    static int hash(byte[] key) {
+        int hash = 0x811C9DC5;
+        for (byte b : key) {
+            hash ^= b & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+        if (buffer.getShort(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(offset + 2 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String productAt(int index) {
+        if (index < 0 || index >= productCount) {
+            throw new IllegalStateException("Product index " + index + " is outside the snapshot's product table");
+        }
+        int start = buffer.getInt(productTable + 4 + 4 * index);
+        int end = buffer.getInt(productTable + 8 + 4 * index);
+        byte[] asin = new byte[end - start];
+        buffer.get(productData + start, asin);
+        return new String(asin, StandardCharsets.UTF_8);
+    }
+
+    private List<String> productListAt(int position) {
+        byte[] encoded = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, encoded);
+        return ProductListCodec.decodeBinary(encoded, this::productAt);
+    }
+
+    private int skipProductList(int position) {
+        return position + 4 + buffer.getInt(position);
+    }
+
+    /**
+     * One user's entry. Lists are decoded from the mapping on every call.
+     */
+    public final class UserRecord {
+        private final int offset;
+
+        private UserRecord(int offset) {
+            this.offset = offset;
+        }
+
+        private int flagsPosition() {
+            return offset + 2 + buffer.getShort(offset);
+        }
+
+        public boolean hasRecommendation() {
+            return (buffer.get(flagsPosition()) & FLAG_HAS_RECOMMENDATION) != 0;
+        }
+
+        /**
+         * The overall product list, or null when the user has none.
+         */
+        public List<String> getProductList() {
+            return hasRecommendation() ? productListAt(flagsPosition() + 1) : null;
+        }
+
+        /**
+         * The product list for {@code category}, or null when the user has none for it.
+         */
+        public List<String> getCategoryProductList(String category) {
+            byte[] name = category.getBytes(StandardCharsets.UTF_8);
+            int position = categoriesPosition();
+            int count = buffer.getShort(position);
+            position += 2;
+            for (int i = 0; i < count; i++) {
+                int nameLength = buffer.getShort(position);
+                byte[] candidate = new byte[nameLength];
+                buffer.get(position + 2, candidate);
+                position += 2 + nameLength;
+                if (Arrays.equals(candidate, name)) {
+                    return productListAt(position);
+                }
+                position = skipProductList(position);
+            }
+            return null;
+        }
+
+        /**
+         * Every category product list of the user, ordered by category name.
+         */
+        public Map<String, List<String>> getCategoryProductLists() {
+            int position = categoriesPosition();
+            int count = buffer.getShort(position);
+            position += 2;
+            Map<String, List<String>> categories = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buffer.getShort(position)];
+                buffer.get(position + 2, name);
+                position += 2 + name.length;
+                categories.put(new String(name, StandardCharsets.UTF_8), productListAt(position));
+                position = skipProductList(position);
+            }
+            return categories;
+        }
+
+        private int categoriesPosition() {
+            int position = flagsPosition();
+            return hasRecommendation() ? skipProductList(position + 1) : position + 1;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package qyang.com.recommendation_service.snapshot;
+
+import qyang.com.recommendation_service.dtos.RecommendationSnapshotResponse;
+import qyang.com.recommendation_service.models.ProductListCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.zip.CRC32;
+
+/**
+ * Streams users into a new snapshot file in the layout described on {@link RecommendationSnapshot}.
+ * Records are written as they are added; only the ASIN table and one slot per user are held in
+ * memory until {@link #finish()}. The file is built next to the target and moved into place
+ * atomically, so a reader never sees a partly written snapshot.
+ */
+public class RecommendationSnapshotWriter implements Closeable {
+    private final Path target;
+    private final Path temporary;
+    private final FileChannel channel;
+    private final BufferedOutputStream out;
+    private final CRC32 checksum = new CRC32();
+    private final byte[] scratch = new byte[4];
+    private final Map<String, Integer> productIndexes = new HashMap<>();
+    private final List<String> products = new ArrayList<>();
+    private int[] keyHashes = new int[1024];
+    private int[] recordOffsets = new int[1024];
+    private int userCount;
+    private int categoryCount;
+    private long position = RecommendationSnapshot.HEADER_SIZE;
+    private boolean finished;
+
+    public RecommendationSnapshotWriter(Path target) throws IOException {
+        this.target = target.toAbsolutePath();
+        this.temporary = this.target.resolveSibling(this.target.getFileName() + ".tmp");
+        Files.createDirectories(this.target.getParent());
+        this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(RecommendationSnapshot.HEADER_SIZE);
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+    }
+
+    /**
+     * Adds one user. {@code productList} is null for a user without an overall recommendation;
+     * {@code categories} maps category name to product list and may be empty.
+     */
+    public void addUser(String userId, List<String> productList, SortedMap<String, List<String>> categories) throws IOException {
+        if (userCount == keyHashes.length) {
+            keyHashes = Arrays.copyOf(keyHashes, userCount * 2);
+            recordOffsets = Arrays.copyOf(recordOffsets, userCount * 2);
+        }
+        byte[] key = userId.getBytes(StandardCharsets.UTF_8);
+        keyHashes[userCount] = RecommendationSnapshot.hash(key);
+        recordOffsets[userCount] = checkedPosition();
+        userCount++;
+
+        writeShortString(key);
+        write(productList != null ? RecommendationSnapshot.FLAG_HAS_RECOMMENDATION : 0);
+        if (productList != null) {
+            writeProductList(productList);
+        }
+        writeShort(categories.size());
+        for (Map.Entry<String, List<String>> category : categories.entrySet()) {
+            writeShortString(category.getKey().getBytes(StandardCharsets.UTF_8));
+            writeProductList(category.getValue());
+        }
+        categoryCount += categories.size();
+    }
+
+    public RecommendationSnapshotResponse finish() throws IOException {
+        int productTablePosition = checkedPosition();
+        writeInt(products.size());
+        byte[][] encoded = new byte[products.size()][];
+        int end = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = products.get(i).getBytes(StandardCharsets.UTF_8);
+            writeInt(end);
+            end += encoded[i].length;
+        }
+        writeInt(end);
+        for (byte[] asin : encoded) {
+            write(asin);
+        }
+
+        int slotTablePosition = checkedPosition();
+        // load factor of at most one half keeps probe sequences short
+        int slotCount = Integer.highestOneBit(Math.max(2, userCount) * 2 - 1) << 1;
+        int[] slots = new int[slotCount * 2];
+        for (int i = 0; i < userCount; i++) {
+            int slot = keyHashes[i] & (slotCount - 1);
+            while (slots[slot * 2 + 1] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[slot * 2] = keyHashes[i];
+            slots[slot * 2 + 1] = recordOffsets[i];
+        }
+        for (int value : slots) {
+            writeInt(value);
+        }
+        out.flush();
+        checkedPosition();
+
+        long createdAt = System.currentTimeMillis();
+        ByteBuffer header = ByteBuffer.allocate(RecommendationSnapshot.HEADER_SIZE);
+        header.putInt(RecommendationSnapshot.MAGIC)
+                .putInt(RecommendationSnapshot.FORMAT_VERSION)
+                .putLong(createdAt)
+                .putInt(userCount)
+                .putInt(categoryCount)
+                .putInt(products.size())
+                .putInt(slotCount)
+                .putInt(productTablePosition)
+                .putInt(slotTablePosition)
+                .putInt((int) position)
+                .putInt((int) checksum.getValue())
+                .flip();
+        channel.write(header, 0);
+        channel.force(true);
+        out.close();
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        return new RecommendationSnapshotResponse(RecommendationSnapshot.versionOf(target), target.toString(), createdAt, userCount, categoryCount, products.size(), position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            out.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void writeProductList(List<String> productList) throws IOException {
+        int[] indexes = new int[productList.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = productIndexes.computeIfAbsent(productList.get(i), asin -> {
+                products.add(asin);
+                return products.size() - 1;
+            });
+        }
+        byte[] encoded = ProductListCodec.encodeBinary(indexes);
+        writeInt(encoded.length);
+        write(encoded);
+    }
+
+    private void writeShortString(byte[] value) throws IOException {
+        if (value.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Snapshot key is too long: " + value.length + " bytes");
+        }
+        writeShort(value.length);
+        write(value);
+    }
+
+    private void write(int value) throws IOException {
+        out.write(value);
+        checksum.update(value);
+        position++;
+    }
+
+    private void write(byte[] value) throws IOException {
+        write(value, value.length);
+    }
+
+    private void write(byte[] value, int length) throws IOException {
+        out.write(value, 0, length);
+        checksum.update(value, 0, length);
+        position += length;
+    }
+
+    private void writeShort(int value) throws IOException {
+        scratch[0] = (byte) (value >>> 8);
+        scratch[1] = (byte) value;
+        write(scratch, 2);
+    }
+
+    private void writeInt(int value) throws IOException {
+        scratch[0] = (byte) (value >>> 24);
+        scratch[1] = (byte) (value >>> 16);
+        scratch[2] = (byte) (value >>> 8);
+        scratch[3] = (byte) value;
+        write(scratch, 4);
+    }
+
+    // a single MappedByteBuffer addresses at most 2 GB
+    private int checkedPosition() throws IOException {
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot exceeds the 2 GB that a single mapping can address");
+        }
+        return (int) position;
+    }
+}
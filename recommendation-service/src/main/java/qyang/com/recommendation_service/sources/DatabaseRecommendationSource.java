@@ -0,0 +1,171 @@
+package qyang.com.recommendation_service.sources;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.batch.BatchLoader;
+import qyang.com.recommendation_service.batch.BatchLoaderFactory;
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
+import qyang.com.recommendation_service.exceptions.RecommendationNotFoundException;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.ProductDictionary;
+import qyang.com.recommendation_service.models.CategoryProductListLookup;
+import qyang.com.recommendation_service.models.ProductListCodec;
+import qyang.com.recommendation_service.models.ProductListFormat;
+import qyang.com.recommendation_service.models.ProductListLookup;
+import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
+import qyang.com.recommendation_service.repositories.RecommendationRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the recommendation tables. Every lookup is one query that answers user existence and
+ * the stored list together, and reads only the product list column of the configured storage
+ * format unless a row lacks it.
+ */
+@Component
+@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+public class DatabaseRecommendationSource implements RecommendationSource {
+	private final RecommendationRepository recommendationRepository;
+	private final CategoryRecommendationRepository categoryRecommendationRepository;
+	private final ProductDictionary productDictionary;
+	private final ProductListFormat storageFormat;
+	private final boolean passthroughJson;
+	// null unless micro-batching is enabled
+	private final BatchLoader<String, ProductListLookup> lookupLoader;
+
+	public DatabaseRecommendationSource(RecommendationRepository recommendationRepository, CategoryRecommendationRepository categoryRecommendationRepository, ProductDictionary productDictionary,
+										BatchLoaderFactory batchLoaderFactory,
+										@Value("${recommendation.storage.format:json}") ProductListFormat storageFormat,
+										@Value("${recommendation.serving.passthrough-json:false}") boolean passthroughJson) {
+		this.recommendationRepository = recommendationRepository;
+		this.categoryRecommendationRepository = categoryRecommendationRepository;
+		this.productDictionary = productDictionary;
+		this.storageFormat = storageFormat;
+		this.passthroughJson = passthroughJson;
+		this.lookupLoader = batchLoaderFactory.create("recommendations", this::lookupByUserIds);
+	}
+
+	@Override
+	public RecommendationResponse getUserRecommendation(String userId) {
+		return toUserRecommendation(userId, lookupByUserId(userId).orElse(null));
+	}
+
+	/**
+	 * With micro-batching enabled the lookup joins the next batch query and no thread waits for
+	 * it; otherwise the blocking lookup runs on {@code executor}.
+	 */
+	@Override
+	public CompletableFuture<RecommendationResponse> getUserRecommendationAsync(String userId, Executor executor) {
+		if (lookupLoader == null) {
+			return RecommendationSource.super.getUserRecommendationAsync(userId, executor);
+		}
+		return lookupLoader.load(userId).thenApply(lookup -> toUserRecommendation(userId, lookup));
+	}
+
+	@Override
+	public Map<String, RecommendationResponse> getUserRecommendations(Collection<String> userIds) {
+		Map<String, ProductListLookup> lookups = lookupByUserIds(userIds);
+		Map<String, RecommendationResponse> recommendations = new LinkedHashMap<>();
+		for (String userId : userIds) {
+			ProductListLookup lookup = lookups.get(userId);
+			if (lookup != null) {
+				recommendations.put(userId, lookup.getHasRecommendation() ? toRecommendationResponse(lookup) : null);
+			}
+		}
+		return recommendations;
+	}
+
+	@Override
+	public CategoryRecommendationResponse getCategoryRecommendation(String userId, String category) {
+		ProductListLookup lookup = (storageFormat == ProductListFormat.BINARY
+				? categoryRecommendationRepository.lookupBinaryByUserIdAndCategory(userId, category)
+				: categoryRecommendationRepository.lookupJsonByUserIdAndCategory(userId, category))
+				.orElseThrow(() -> new ResourceNotFoundException("User not found: " + userId));
+		if (!lookup.getHasRecommendation()) {
+			throw new RecommendationNotFoundException("No recommendations found for user " + userId + " in category " + category);
+		}
+		return toCategoryRecommendationResponse(lookup, category);
+	}
+
+	@Override
+	public UserCategoryRecommendationsResponse getAllCategoryRecommendations(String userId) {
+		List<CategoryProductListLookup> lookups = storageFormat == ProductListFormat.BINARY
+				? categoryRecommendationRepository.lookupAllBinaryByUserId(userId)
+				: categoryRecommendationRepository.lookupAllJsonByUserId(userId);
+		if (lookups.isEmpty()) {
+			throw new ResourceNotFoundException("User not found: " + userId);
+		}
+		List<CategoryRecommendationResponse> categories = new ArrayList<>(lookups.size());
+		for (CategoryProductListLookup lookup : lookups) {
+			if (lookup.getHasRecommendation()) {
+				categories.add(toCategoryRecommendationResponse(lookup, lookup.getCategory()));
+			}
+		}
+		return new UserCategoryRecommendationsResponse(userId, categories);
+	}
+
+	private RecommendationResponse toUserRecommendation(String userId, ProductListLookup lookup) {
+		if (lookup == null) {
+			throw new ResourceNotFoundException("User not found: " + userId);
+		}
+		if (!lookup.getHasRecommendation()) {
+			throw new RecommendationNotFoundException("No recommendation found for user: " + userId);
+		}
+		return toRecommendationResponse(lookup);
+	}
+
+	// concurrent point lookups share one IN query when micro-batching is enabled
+	private Optional<ProductListLookup> lookupByUserId(String userId) {
+		if (lookupLoader != null) {
+			return Optional.ofNullable(lookupLoader.get(userId));
+		}
+		return storageFormat == ProductListFormat.BINARY
+				? recommendationRepository.lookupBinaryByUserId(userId)
+				: recommendationRepository.lookupJsonByUserId(userId);
+	}
+
+	private Map<String, ProductListLookup> lookupByUserIds(Collection<String> userIds) {
+		Map<String, ProductListLookup> lookups = new HashMap<>();
+		List<ProductListLookup> rows = storageFormat == ProductListFormat.BINARY
+				? recommendationRepository.lookupBinaryByUserIds(userIds)
+				: recommendationRepository.lookupJsonByUserIds(userIds);
+		for (ProductListLookup lookup : rows) {
+			lookups.put(lookup.getUserId(), lookup);
+		}
+		return lookups;
+	}
+
+	private RecommendationResponse toRecommendationResponse(ProductListLookup lookup) {
+		// the lookup carries the binary list in binary mode, and in JSON mode only once the JSON was cleared
+		if (lookup.getProductListBin() != null) {
+			return new RecommendationResponse(lookup.getUserId(), ProductListCodec.decodeBinary(lookup.getProductListBin(), productDictionary::asinOf));
+		}
+		if (passthroughJson) {
+			// product_list is validated on write, so it can be spliced into the body as-is
+			return RecommendationResponse.ofJson(lookup.getUserId(), lookup.getProductList());
+		}
+		return new RecommendationResponse(lookup.getUserId(), ProductListCodec.decodeJson(lookup.getProductList()));
+	}
+
+	private CategoryRecommendationResponse toCategoryRecommendationResponse(ProductListLookup lookup, String category) {
+		if (lookup.getProductListBin() != null) {
+			return new CategoryRecommendationResponse(lookup.getUserId(), category, ProductListCodec.decodeBinary(lookup.getProductListBin(), productDictionary::asinOf));
+		}
+		if (passthroughJson) {
+			return CategoryRecommendationResponse.ofJson(lookup.getUserId(), category, lookup.getProductList());
+		}
+		return new CategoryRecommendationResponse(lookup.getUserId(), category, ProductListCodec.decodeJson(lookup.getProductList()));
+	}
+}
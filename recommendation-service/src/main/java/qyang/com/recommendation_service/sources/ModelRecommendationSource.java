@@ -0,0 +1,85 @@
+package qyang.com.recommendation_service.sources;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
+import qyang.com.recommendation_service.exceptions.RecommendationNotFoundException;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.repositories.UserRepository;
+import qyang.com.recommendation_service.scoring.ScoringEngine;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scores every user against the loaded factor model on each cache miss instead of reading the
+ * list the offline job stored, so the cost and quality of online scoring can be compared with
+ * precomputed lists for the same users. Users the model cannot score have no list here. Only
+ * user existence is read from the database, by primary key. Category lists are read from the
+ * {@link DatabaseRecommendationSource}.
+ */
+@Component
+@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+public class ModelRecommendationSource implements RecommendationSource {
+	private final UserRepository userRepository;
+	private final ScoringEngine scoringEngine;
+	private final DatabaseRecommendationSource databaseRecommendationSource;
+
+	public ModelRecommendationSource(UserRepository userRepository, ScoringEngine scoringEngine,
+									 DatabaseRecommendationSource databaseRecommendationSource) {
+		this.userRepository = userRepository;
+		this.scoringEngine = scoringEngine;
+		this.databaseRecommendationSource = databaseRecommendationSource;
+	}
+
+	@Override
+	public RecommendationResponse getUserRecommendation(String userId) {
+		if (!userRepository.existsById(userId)) {
+			throw new ResourceNotFoundException("User not found: " + userId);
+		}
+		RecommendationResponse response = score(userId);
+		if (response == null) {
+			throw new RecommendationNotFoundException("No recommendation found for user: " + userId);
+		}
+		return response;
+	}
+
+	@Override
+	public Map<String, RecommendationResponse> getUserRecommendations(Collection<String> userIds) {
+		Set<String> existing = new HashSet<>(userRepository.findExistingUserIds(userIds));
+		Map<String, RecommendationResponse> recommendations = new LinkedHashMap<>();
+		for (String userId : userIds) {
+			if (existing.contains(userId)) {
+				recommendations.put(userId, score(userId));
+			}
+		}
+		return recommendations;
+	}
+
+	@Override
+	public CategoryRecommendationResponse getCategoryRecommendation(String userId, String category) {
+		return databaseRecommendationSource.getCategoryRecommendation(userId, category);
+	}
+
+	@Override
+	public UserCategoryRecommendationsResponse getAllCategoryRecommendations(String userId) {
+		return databaseRecommendationSource.getAllCategoryRecommendations(userId);
+	}
+
+	private RecommendationResponse score(String userId) {
+		List<String> scored = scoringEngine.recommend(userId);
+		if (scored == null || scored.isEmpty()) {
+			return null;
+		}
+		RecommendationResponse response = new RecommendationResponse(userId, scored);
+		response.setSource(RecommendationResponse.SOURCE_MODEL);
+		return response;
+	}
+}
@@ -0,0 +1,84 @@
+package qyang.com.recommendation_service.sources;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
+import qyang.com.recommendation_service.exceptions.RecommendationNotFoundException;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.PopularityRanking;
+import qyang.com.recommendation_service.repositories.UserRepository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves every existing user the overall best sellers from {@link PopularityRanking} instead of a
+ * personalized list, the baseline the other sources are measured against. Only user existence is
+ * read from the database, by primary key. Category lists are read from the
+ * {@link DatabaseRecommendationSource}.
+ */
+@Component
+@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+public class PopularityRecommendationSource implements RecommendationSource {
+	private final UserRepository userRepository;
+	private final PopularityRanking popularityRanking;
+	private final DatabaseRecommendationSource databaseRecommendationSource;
+
+	public PopularityRecommendationSource(UserRepository userRepository, PopularityRanking popularityRanking,
+										  DatabaseRecommendationSource databaseRecommendationSource) {
+		this.userRepository = userRepository;
+		this.popularityRanking = popularityRanking;
+		this.databaseRecommendationSource = databaseRecommendationSource;
+	}
+
+	@Override
+	public RecommendationResponse getUserRecommendation(String userId) {
+		if (!userRepository.existsById(userId)) {
+			throw new ResourceNotFoundException("User not found: " + userId);
+		}
+		RecommendationResponse response = toResponse(userId, popularityRanking.getOverall());
+		if (response == null) {
+			throw new RecommendationNotFoundException("No recommendation found for user: " + userId);
+		}
+		return response;
+	}
+
+	@Override
+	public Map<String, RecommendationResponse> getUserRecommendations(Collection<String> userIds) {
+		Set<String> existing = new HashSet<>(userRepository.findExistingUserIds(userIds));
+		List<String> popular = popularityRanking.getOverall();
+		Map<String, RecommendationResponse> recommendations = new LinkedHashMap<>();
+		for (String userId : userIds) {
+			if (existing.contains(userId)) {
+				recommendations.put(userId, toResponse(userId, popular));
+			}
+		}
+		return recommendations;
+	}
+
+	@Override
+	public CategoryRecommendationResponse getCategoryRecommendation(String userId, String category) {
+		return databaseRecommendationSource.getCategoryRecommendation(userId, category);
+	}
+
+	@Override
+	public UserCategoryRecommendationsResponse getAllCategoryRecommendations(String userId) {
+		return databaseRecommendationSource.getAllCategoryRecommendations(userId);
+	}
+
+	private static RecommendationResponse toResponse(String userId, List<String> popular) {
+		if (popular.isEmpty()) {
+			return null;
+		}
+		RecommendationResponse response = new RecommendationResponse(userId, popular);
+		response.setSource(RecommendationResponse.SOURCE_POPULARITY);
+		return response;
+	}
+}
@@ -0,0 +1,236 @@
+package qyang.com.recommendation_service.sources;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits users between recommendation sources for an A/B test. Each entry of
+ * {@code recommendation.experiment.variants} is {@code name:source:weight}, for example
+ * {@code control:database:90,scored:model:10}. A user's variant comes from a hash of the
+ * experiment name and the user id, so a user stays in one variant on every instance and across
+ * restarts, and renaming the experiment reshuffles everyone. Without variants every user is in
+ * one variant named {@code default} that reads from {@code recommendation.source}. Category lists
+ * are not split and always come from {@code recommendation.source}.
+ * <p>
+ * Every variant records its own meters, tagged with the experiment, variant and source: request
+ * latency as a histogram ({@code recommendation.experiment.latency}), failed requests by exception
+ * ({@code recommendation.experiment.errors}, not counting requests for unknown users) and response
+ * cache lookups by result
+ * ({@code recommendation.experiment.cache}, {@code result=hit|miss}).
+ */
+@Component
+public class RecommendationExperiment {
+	public static final String DEFAULT_VARIANT = "default";
+
+	private final String name;
+	private final RecommendationSourceType defaultSourceType;
+	private final RecommendationSource defaultSource;
+	private final List<Variant> variants;
+	// variant i takes the hash buckets below upperBounds[i] and at or above upperBounds[i - 1]
+	private final int[] upperBounds;
+
+	public RecommendationExperiment(DatabaseRecommendationSource databaseRecommendationSource, SnapshotRecommendationSource snapshotRecommendationSource,
+									PopularityRecommendationSource popularityRecommendationSource, ModelRecommendationSource modelRecommendationSource,
+									MeterRegistry meterRegistry,
+									@Value("${recommendation.source:database}") RecommendationSourceType defaultSourceType,
+									@Value("${recommendation.experiment.name:default}") String name,
+									@Value("${recommendation.experiment.variants:}") List<String> variants) {
+		this.name = name;
+		this.defaultSourceType = defaultSourceType;
+		RecommendationSource[] sources = new RecommendationSource[RecommendationSourceType.values().length];
+		sources[RecommendationSourceType.DATABASE.ordinal()] = databaseRecommendationSource;
+		sources[RecommendationSourceType.SNAPSHOT.ordinal()] = snapshotRecommendationSource;
+		sources[RecommendationSourceType.POPULARITY.ordinal()] = popularityRecommendationSource;
+		sources[RecommendationSourceType.MODEL.ordinal()] = modelRecommendationSource;
+		this.defaultSource = sources[defaultSourceType.ordinal()];
+
+		List<Variant> parsed = new ArrayList<>();
+		List<Integer> weights = new ArrayList<>();
+		Set<String> names = new HashSet<>();
+		for (String entry : variants) {
+			if (entry.isBlank()) {
+				continue;
+			}
+			String[] parts = entry.trim().split(":");
+			RecommendationSourceType sourceType;
+			int weight;
+			try {
+				if (parts.length != 3) {
+					throw new IllegalArgumentException();
+				}
+				sourceType = RecommendationSourceType.valueOf(parts[1].toUpperCase(Locale.ROOT));
+				weight = Integer.parseInt(parts[2]);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("recommendation.experiment.variants entries must be name:source:weight with source one of database, snapshot, popularity or model, got: " + entry);
+			}
+			if (weight < 1 || !names.add(parts[0])) {
+				throw new IllegalArgumentException("recommendation.experiment.variants needs distinct names and weights of at least 1, got: " + entry);
+			}
+			parsed.add(new Variant(parts[0], sourceType, sources[sourceType.ordinal()], name, meterRegistry));
+			weights.add(weight);
+		}
+		if (parsed.isEmpty()) {
+			parsed.add(new Variant(DEFAULT_VARIANT, defaultSourceType, defaultSource, name, meterRegistry));
+			weights.add(1);
+		}
+		this.variants = List.copyOf(parsed);
+		this.upperBounds = new int[weights.size()];
+		long total = 0;
+		for (int i = 0; i < upperBounds.length; i++) {
+			total += weights.get(i);
+			if (total > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("recommendation.experiment.variants weights are too large");
+			}
+			upperBounds[i] = (int) total;
+		}
+	}
+
+	/**
+	 * The variant {@code userId} is in; the same for the same experiment name and variant list.
+	 */
+	public Variant variantOf(String userId) {
+		if (upperBounds.length == 1) {
+			return variants.get(0);
+		}
+		int bucket = (int) Math.floorMod(hash(name, userId), (long) upperBounds[upperBounds.length - 1]);
+		int i = 0;
+		while (bucket >= upperBounds[i]) {
+			i++;
+		}
+		return variants.get(i);
+	}
+
+	public List<Variant> getVariants() {
+		return variants;
+	}
+
+	/**
+	 * Where category lists, which are not split, are read from.
+	 */
+	public RecommendationSource getDefaultSource() {
+		return defaultSource;
+	}
+
+	public RecommendationSourceType getDefaultSourceType() {
+		return defaultSourceType;
+	}
+
+	/**
+	 * Whether {@code sourceType} serves any request: as {@code recommendation.source} or for a variant.
+	 */
+	public boolean usesSource(RecommendationSourceType sourceType) {
+		if (defaultSourceType == sourceType) {
+			return true;
+		}
+		for (Variant variant : variants) {
+			if (variant.getSourceType() == sourceType) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	// 64-bit FNV-1a over the UTF-8 bytes, then the MurmurHash3 finalizer so that ids differing
+	// only in their last characters still land in unrelated buckets; String.hashCode would not
+	static long hash(String experiment, String userId) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : (experiment + ':' + userId).getBytes(StandardCharsets.UTF_8)) {
+			hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+		}
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	/**
+	 * One arm of the experiment: its source and its meters.
+	 */
+	public static final class Variant {
+		private final String name;
+		private final RecommendationSourceType sourceType;
+		private final RecommendationSource source;
+		private final MeterRegistry meterRegistry;
+		private final Tags tags;
+		private final Timer latency;
+		private final Counter cacheHits;
+		private final Counter cacheMisses;
+
+		Variant(String name, RecommendationSourceType sourceType, RecommendationSource source, String experiment, MeterRegistry meterRegistry) {
+			this.name = name;
+			this.sourceType = sourceType;
+			this.source = source;
+			this.meterRegistry = meterRegistry;
+			this.tags = Tags.of("experiment", experiment, "variant", name, "source", sourceType.name().toLowerCase(Locale.ROOT));
+			this.latency = Timer.builder("recommendation.experiment.latency")
+					.description("Time to answer a user's recommendation list, cache hits included")
+					.tags(tags)
+					.publishPercentileHistogram()
+					.register(meterRegistry);
+			this.cacheHits = Counter.builder("recommendation.experiment.cache")
+					.description("Response cache lookups for a user's recommendation list")
+					.tags(tags)
+					.tag("result", "hit")
+					.register(meterRegistry);
+			this.cacheMisses = Counter.builder("recommendation.experiment.cache")
+					.description("Response cache lookups for a user's recommendation list")
+					.tags(tags)
+					.tag("result", "miss")
+					.register(meterRegistry);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public RecommendationSourceType getSourceType() {
+			return sourceType;
+		}
+
+		public RecommendationSource getSource() {
+			return source;
+		}
+
+		public void recordLatency(long nanos) {
+			latency.record(nanos, TimeUnit.NANOSECONDS);
+		}
+
+		public void recordCacheHit() {
+			cacheHits.increment();
+		}
+
+		public void recordCacheMiss() {
+			cacheMisses.increment();
+		}
+
+		public void recordError(Throwable error) {
+			// an unknown user id is the client's mistake, not the source's; a known user without a
+			// list (RecommendationNotFoundException) still counts
+			if (error.getClass() == ResourceNotFoundException.class) {
+				return;
+			}
+			Counter.builder("recommendation.experiment.errors")
+					.description("Failed requests for a user's recommendation list")
+					.tags(tags)
+					.tag("exception", error.getClass().getSimpleName())
+					.register(meterRegistry)
+					.increment();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package qyang.com.recommendation_service.sources;
+
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Where stored recommendations are read from once the response cache has missed.
+ * Implementations throw {@link qyang.com.recommendation_service.exceptions.ResourceNotFoundException}
+ * for unknown users and its subclass
+ * {@link qyang.com.recommendation_service.exceptions.RecommendationNotFoundException} for existing
+ * users without a stored list, with the same messages whatever the source.
+ */
+public interface RecommendationSource {
+	RecommendationResponse getUserRecommendation(String userId);
+
+	/**
+	 * Non-blocking form of {@link #getUserRecommendation}; the future fails with the same
+	 * exceptions. By default the blocking lookup runs on {@code executor}.
+	 */
+	default CompletableFuture<RecommendationResponse> getUserRecommendationAsync(String userId, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> getUserRecommendation(userId), executor);
+	}
+
+	/**
+	 * Resolves every id at once. Unknown users are left out of the result and existing users
+	 * without a stored list map to null.
+	 */
+	Map<String, RecommendationResponse> getUserRecommendations(Collection<String> userIds);
+
+	CategoryRecommendationResponse getCategoryRecommendation(String userId, String category);
+
+	UserCategoryRecommendationsResponse getAllCategoryRecommendations(String userId);
+}
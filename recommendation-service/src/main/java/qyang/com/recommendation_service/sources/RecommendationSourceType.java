@@ -0,0 +1,12 @@
+package qyang.com.recommendation_service.sources;
+
+/**
+ * Selected with {@code recommendation.source}, and per variant with
+ * {@code recommendation.experiment.variants}.
+ */
+public enum RecommendationSourceType {
+    DATABASE,
+    SNAPSHOT,
+    POPULARITY,
+    MODEL
+}
@@ -0,0 +1,116 @@
+package qyang.com.recommendation_service.sources;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
+import qyang.com.recommendation_service.exceptions.RecommendationNotFoundException;
+import qyang.com.recommendation_service.snapshot.RecommendationSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves recommendations from a memory-mapped {@link RecommendationSnapshot} without touching
+ * the database. Until a snapshot has been loaded, reads go to the database instead.
+ * <p>
+ * Unknown ids are rejected before a source is asked, by the in-memory known-user filter. An id
+ * that passed it but is not in the snapshot, usually a user who signed up after the export, is
+ * answered as a user without recommendations, so the fallbacks apply; no query is made to tell
+ * it apart from one of the filter's rare false positives.
+ */
+@Component
+@Slf4j
+public class SnapshotRecommendationSource implements RecommendationSource {
+	private final DatabaseRecommendationSource databaseRecommendationSource;
+	private volatile RecommendationSnapshot snapshot;
+
+	public SnapshotRecommendationSource(DatabaseRecommendationSource databaseRecommendationSource) {
+		this.databaseRecommendationSource = databaseRecommendationSource;
+	}
+
+	public RecommendationSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public void setSnapshot(RecommendationSnapshot snapshot) {
+		this.snapshot = snapshot;
+		log.info("Serving recommendations from snapshot {} with {} users", snapshot.getPath(), snapshot.getUserCount());
+	}
+
+	@Override
+	public RecommendationResponse getUserRecommendation(String userId) {
+		RecommendationSnapshot current = snapshot;
+		if (current == null) {
+			return databaseRecommendationSource.getUserRecommendation(userId);
+		}
+		RecommendationSnapshot.UserRecord user = current.findUser(userId).orElse(null);
+		List<String> productList = user == null ? null : user.getProductList();
+		if (productList == null) {
+			throw new RecommendationNotFoundException("No recommendation found for user: " + userId);
+		}
+		return new RecommendationResponse(userId, productList);
+	}
+
+	// a mapped lookup does not wait on I/O, so it is answered on the calling thread
+	@Override
+	public CompletableFuture<RecommendationResponse> getUserRecommendationAsync(String userId, Executor executor) {
+		if (snapshot == null) {
+			return databaseRecommendationSource.getUserRecommendationAsync(userId, executor);
+		}
+		try {
+			return CompletableFuture.completedFuture(getUserRecommendation(userId));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	@Override
+	public Map<String, RecommendationResponse> getUserRecommendations(Collection<String> userIds) {
+		RecommendationSnapshot current = snapshot;
+		if (current == null) {
+			return databaseRecommendationSource.getUserRecommendations(userIds);
+		}
+		Map<String, RecommendationResponse> recommendations = new LinkedHashMap<>();
+		for (String userId : userIds) {
+			RecommendationSnapshot.UserRecord user = current.findUser(userId).orElse(null);
+			recommendations.put(userId, user != null && user.hasRecommendation() ? new RecommendationResponse(userId, user.getProductList()) : null);
+		}
+		return recommendations;
+	}
+
+	@Override
+	public CategoryRecommendationResponse getCategoryRecommendation(String userId, String category) {
+		RecommendationSnapshot current = snapshot;
+		if (current == null) {
+			return databaseRecommendationSource.getCategoryRecommendation(userId, category);
+		}
+		RecommendationSnapshot.UserRecord user = current.findUser(userId).orElse(null);
+		List<String> productList = user == null ? null : user.getCategoryProductList(category);
+		if (productList == null) {
+			throw new RecommendationNotFoundException("No recommendations found for user " + userId + " in category " + category);
+		}
+		return new CategoryRecommendationResponse(userId, category, productList);
+	}
+
+	@Override
+	public UserCategoryRecommendationsResponse getAllCategoryRecommendations(String userId) {
+		RecommendationSnapshot current = snapshot;
+		if (current == null) {
+			return databaseRecommendationSource.getAllCategoryRecommendations(userId);
+		}
+		RecommendationSnapshot.UserRecord user = current.findUser(userId).orElse(null);
+		List<CategoryRecommendationResponse> categories = new ArrayList<>();
+		if (user != null) {
+			user.getCategoryProductLists().forEach((category, productList) ->
+					categories.add(new CategoryRecommendationResponse(userId, category, productList)));
+		}
+		return new UserCategoryRecommendationsResponse(userId, categories);
+	}
+}
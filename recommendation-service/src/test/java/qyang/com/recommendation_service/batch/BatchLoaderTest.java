@@ -0,0 +1,123 @@
+package qyang.com.recommendation_service.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchLoaderTest {
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private final ExecutorService dispatcher = Executors.newFixedThreadPool(2);
+	private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	public void tearDown() {
+		scheduler.shutdownNow();
+		dispatcher.shutdownNow();
+	}
+
+	@Test
+	public void load_WithinWindow_ResolvesAllKeysWithOneBatch() throws Exception {
+		BatchLoader<String, String> loader = loader(this::upperCase, TimeUnit.MILLISECONDS.toNanos(50), 100);
+
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(loader.load("user-" + i));
+		}
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals("USER-" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, batches.size());
+		assertEquals(10, batches.get(0).size());
+		assertEquals(1, loader.getBatchCount());
+		assertEquals(10, loader.getKeyCount());
+	}
+
+	@Test
+	public void load_AtMaxBatchSize_DispatchesWithoutWaitingForWindow() throws Exception {
+		BatchLoader<String, String> loader = loader(this::upperCase, TimeUnit.MINUTES.toNanos(10), 3);
+
+		CompletableFuture<String> first = loader.load("a");
+		loader.load("b");
+		loader.load("c");
+		CompletableFuture<String> fourth = loader.load("d");
+
+		assertEquals("A", first.get(5, TimeUnit.SECONDS));
+		assertEquals(List.of(List.of("a", "b", "c")), batches);
+		assertFalse(fourth.isDone());
+		loader.flush();
+		assertEquals("D", fourth.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void load_SameKeyTwiceInBatch_SharesFutureAndQueriesKeyOnce() throws Exception {
+		BatchLoader<String, String> loader = loader(this::upperCase, TimeUnit.MILLISECONDS.toNanos(20), 100);
+
+		CompletableFuture<String> first = loader.load("a");
+		CompletableFuture<String> second = loader.load("a");
+
+		assertSame(first, second);
+		assertEquals("A", first.get(5, TimeUnit.SECONDS));
+		assertEquals(List.of(List.of("a")), batches);
+	}
+
+	@Test
+	public void load_KeyMissingFromResult_CompletesWithNull() throws Exception {
+		BatchLoader<String, String> loader = loader(keys -> {
+			Map<String, String> values = upperCase(keys);
+			values.remove("missing");
+			return values;
+		}, TimeUnit.MILLISECONDS.toNanos(20), 100);
+
+		CompletableFuture<String> missing = loader.load("missing");
+		CompletableFuture<String> present = loader.load("present");
+
+		assertNull(missing.get(5, TimeUnit.SECONDS));
+		assertEquals("PRESENT", present.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void load_BatchFunctionThrows_FailsEveryCallerOfTheBatch() {
+		BatchLoader<String, String> loader = loader(keys -> {
+			throw new IllegalStateException("database down");
+		}, TimeUnit.MILLISECONDS.toNanos(20), 100);
+
+		CompletableFuture<String> first = loader.load("a");
+		CompletableFuture<String> second = loader.load("b");
+
+		ExecutionException thrown = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(IllegalStateException.class, thrown.getCause());
+		assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+		IllegalStateException unwrapped = assertThrows(IllegalStateException.class, () -> loader.get("c"));
+		assertEquals("database down", unwrapped.getMessage());
+	}
+
+	private BatchLoader<String, String> loader(Function<List<String>, Map<String, String>> batchFunction, long windowNanos, int maxBatchSize) {
+		return new BatchLoader<>("test", keys -> {
+			batches.add(List.copyOf(keys));
+			return batchFunction.apply(keys);
+		}, windowNanos, maxBatchSize, scheduler, dispatcher);
+	}
+
+	private Map<String, String> upperCase(List<String> keys) {
+		Map<String, String> values = new HashMap<>();
+		for (String key : keys) {
+			values.put(key, key.toUpperCase());
+		}
+		return values;
+	}
+}
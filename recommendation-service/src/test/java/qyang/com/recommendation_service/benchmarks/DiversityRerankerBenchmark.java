@@ -0,0 +1,81 @@
+package qyang.com.recommendation_service.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import qyang.com.recommendation_service.scoring.DiversityReranker;
+import qyang.com.recommendation_service.scoring.FactorModel;
+import qyang.com.recommendation_service.scoring.FactorModelFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of diversifying one candidate list by maximal marginal relevance, with item factors
+ * from a random model and categories drawn at random, for the default depth and comparison budget.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark=DiversityRerankerBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiversityRerankerBenchmark {
+	@Param({"20", "200"})
+	public int candidates;
+
+	@Param({"100"})
+	public int factors;
+
+	@Param({"20"})
+	public int categoryCount;
+
+	private Path path;
+	private FactorModel model;
+	private int[] items;
+	private int[] categories;
+
+	@Setup
+	public void setUp() throws IOException {
+		path = Files.createTempFile("factors", ".bin");
+		FactorModelFiles.writeRandom(path, 100, 100000, factors, 42);
+		model = FactorModel.open(path);
+		Random random = new Random(42);
+		items = new int[candidates];
+		categories = new int[candidates];
+		for (int i = 0; i < candidates; i++) {
+			items[i] = random.nextInt(100000);
+			categories[i] = random.nextInt(categoryCount);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(path);
+	}
+
+	@Benchmark
+	public int[] diversify() {
+		return DiversityReranker.order(model, items, categories, 0.7f, 20, 5000);
+	}
+
+	@Benchmark
+	public int[] categoriesOnly() {
+		return DiversityReranker.order(null, items, categories, 0.7f, 20, 5000);
+	}
+}
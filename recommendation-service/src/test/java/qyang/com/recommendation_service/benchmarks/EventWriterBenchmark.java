@@ -0,0 +1,136 @@
+package qyang.com.recommendation_service.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import qyang.com.recommendation_service.events.EventRingBuffer;
+import qyang.com.recommendation_service.events.EventType;
+import qyang.com.recommendation_service.events.EventWriter;
+import qyang.com.recommendation_service.events.InteractionEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event ingestion throughput, in events per second: the ring buffer alone with four producers
+ * and one consumer, and end to end into an in-memory H2 {@code events} table through the writer
+ * thread's JDBC batches.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark=EventWriterBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventWriterBenchmark {
+	private static final int EVENTS_PER_INVOCATION = 1000;
+
+	@State(Scope.Group)
+	public static class Ring {
+		final EventRingBuffer<InteractionEvent> buffer = new EventRingBuffer<>(65536);
+		final InteractionEvent event = new InteractionEvent("USER-1", "B000000001", EventType.VIEW, Instant.now());
+		final List<InteractionEvent> sink = new ArrayList<>(500);
+	}
+
+	@State(Scope.Benchmark)
+	public static class Writer {
+		DriverManagerDataSource dataSource;
+		JdbcTemplate jdbcTemplate;
+		EventWriter writer;
+		List<InteractionEvent> batch;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			dataSource = new DriverManagerDataSource("jdbc:h2:mem:events;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+			jdbcTemplate = new JdbcTemplate(dataSource);
+			jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS events (event_id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id VARCHAR(100) NOT NULL, "
+					+ "parent_asin VARCHAR(50) NOT NULL, event_type VARCHAR(20) NOT NULL, occurred_at TIMESTAMP(3) NOT NULL)");
+			writer = new EventWriter(jdbcTemplate, new DataSourceTransactionManager(dataSource), new SimpleMeterRegistry(), 65536, 500, Duration.ofMillis(10));
+			writer.start();
+			batch = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				batch.add(new InteractionEvent("USER-" + i, "B00000000" + (i % 10), EventType.VIEW, Instant.now()));
+			}
+		}
+
+		@Setup(Level.Iteration)
+		public void truncate() {
+			jdbcTemplate.execute("TRUNCATE TABLE events");
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws InterruptedException {
+			writer.stop();
+			jdbcTemplate.execute("DROP TABLE events");
+		}
+	}
+
+	// JMH counts every call; these count the offers that found room
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Offers {
+		public long accepted;
+		public long rejected;
+	}
+
+	@Benchmark
+	@Group("ring")
+	@GroupThreads(4)
+	public void offer(Ring ring, Offers offers) {
+		if (ring.buffer.offer(ring.event)) {
+			offers.accepted++;
+		} else {
+			offers.rejected++;
+		}
+	}
+
+	@Benchmark
+	@Group("ring")
+	@GroupThreads(1)
+	public int drain(Ring ring) {
+		ring.sink.clear();
+		return ring.buffer.drainTo(ring.sink, 500);
+	}
+
+	/**
+	 * Submits 1000 events in batches of 100 and returns once the writer has inserted them.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(EVENTS_PER_INVOCATION)
+	public long writeBehind(Writer state) {
+		long target = state.writer.getWrittenCount() + EVENTS_PER_INVOCATION;
+		for (int submitted = 0; submitted < EVENTS_PER_INVOCATION; submitted += state.batch.size()) {
+			while (!state.writer.submit(state.batch)) {
+				LockSupport.parkNanos(50_000);
+			}
+		}
+		// parks rather than spins so the writer thread gets the core on small machines
+		while (state.writer.getWrittenCount() < target) {
+			LockSupport.parkNanos(50_000);
+		}
+		return target;
+	}
+}
@@ -0,0 +1,79 @@
+package qyang.com.recommendation_service.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import qyang.com.recommendation_service.scoring.FactorModel;
+import qyang.com.recommendation_service.scoring.FactorModelFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of scoring one user against every item of a factor model and keeping the top k, on
+ * the calling thread and split across a fork-join pool.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark=FactorModelBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FactorModelBenchmark {
+	@Param({"100000", "1000000"})
+	public int items;
+
+	@Param({"100"})
+	public int factors;
+
+	@Param({"10", "100"})
+	public int k;
+
+	@Param({"4"})
+	public int parallelism;
+
+	private Path path;
+	private FactorModel model;
+	private float[] user;
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setUp() throws IOException {
+		path = Files.createTempFile("factors", ".bin");
+		FactorModelFiles.writeRandom(path, 100, items, factors, 42);
+		model = FactorModel.open(path);
+		user = model.userVector("USER-000000007");
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		pool.shutdown();
+		Files.deleteIfExists(path);
+	}
+
+	@Benchmark
+	public int[] topK() {
+		return model.topK(user, k);
+	}
+
+	@Benchmark
+	public int[] parallelTopK() {
+		return model.topK(user, k, null, 0, items, pool, 16384);
+	}
+}
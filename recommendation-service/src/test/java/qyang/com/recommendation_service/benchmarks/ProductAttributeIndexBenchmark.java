@@ -0,0 +1,101 @@
+package qyang.com.recommendation_service.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import qyang.com.recommendation_service.index.ProductAttributeIndex;
+import qyang.com.recommendation_service.index.ProductFilter;
+import qyang.com.recommendation_service.models.ProductAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the request-time filter and re-rank stage for one recommendation list.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark=ProductAttributeIndexBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductAttributeIndexBenchmark {
+	private static final String[] CATEGORIES = {"All_Beauty", "Books", "Electronics", "Home_and_Kitchen", "Toys_and_Games"};
+
+	@Param({"100000"})
+	public int products;
+
+	@Param({"50", "1000"})
+	public int candidates;
+
+	private ProductAttributeIndex index;
+	private List<String> candidateList;
+	private ProductFilter filter;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		List<ProductAttributes> attributes = new ArrayList<>(products);
+		for (int i = 0; i < products; i++) {
+			attributes.add(new Attributes(asin(i), 5 + random.nextFloat() * 200, 1 + random.nextFloat() * 4,
+					CATEGORIES[random.nextInt(CATEGORIES.length)]));
+		}
+		index = new ProductAttributeIndex(null);
+		index.load(attributes);
+
+		candidateList = new ArrayList<>(candidates);
+		for (int i = 0; i < candidates; i++) {
+			candidateList.add(asin(random.nextInt(products)));
+		}
+		filter = new ProductFilter(null, 100.0f, 3.5f, null);
+	}
+
+	@Benchmark
+	public List<String> filterAndRerank() {
+		return index.rerank(candidateList, filter, 1.0f, 0.5f);
+	}
+
+	@Benchmark
+	public List<String> rerankOnly() {
+		return index.rerank(candidateList, ProductFilter.NONE, 1.0f, 0.5f);
+	}
+
+	private static String asin(int i) {
+		return String.format("B%09d", i);
+	}
+
+	private record Attributes(String parentAsin, Float price, Float averageRating, String category) implements ProductAttributes {
+		@Override
+		public String getParentAsin() {
+			return parentAsin;
+		}
+
+		@Override
+		public Float getPrice() {
+			return price;
+		}
+
+		@Override
+		public Float getAverageRating() {
+			return averageRating;
+		}
+
+		@Override
+		public String getCategory() {
+			return category;
+		}
+	}
+}
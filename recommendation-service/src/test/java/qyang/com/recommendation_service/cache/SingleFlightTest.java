@@ -0,0 +1,160 @@
+package qyang.com.recommendation_service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+	@Test
+	public void load_ConcurrentCallersForSameKey_ShareOneLoad() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		AtomicInteger loaderCalls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		int callers = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(() -> singleFlight.load("USER-1", () -> {
+					loaderCalls.incrementAndGet();
+					await(release);
+					return "value";
+				})));
+			}
+			// hold the load until every other caller is waiting on it
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (singleFlight.getCoalescedCount() < callers - 1 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+
+			for (Future<String> result : results) {
+				assertEquals("value", result.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, loaderCalls.get());
+		assertEquals(1, singleFlight.getLoadCount());
+		assertEquals(callers - 1, singleFlight.getCoalescedCount());
+		assertEquals(0, singleFlight.getInFlightCount());
+	}
+
+	@Test
+	public void load_LoaderThrows_RethrowsToWaitersAndForgetsFlight() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> leader = executor.submit(() -> singleFlight.load("USER-1", () -> {
+				loading.countDown();
+				await(release);
+				throw new IllegalStateException("boom");
+			}));
+			assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+			// let the load fail only once this thread is waiting on it
+			Thread releaser = new Thread(() -> {
+				while (singleFlight.getCoalescedCount() == 0) {
+					Thread.onSpinWait();
+				}
+				release.countDown();
+			});
+			releaser.start();
+			IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+					singleFlight.load("USER-1", () -> "unused"));
+			assertEquals("boom", thrown.getMessage());
+			assertThrows(Exception.class, () -> leader.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals("fresh", singleFlight.load("USER-1", () -> "fresh"));
+		assertEquals(0, singleFlight.getInFlightCount());
+	}
+
+	@Test
+	public void load_DifferentKeys_LoadIndependently() {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+		assertEquals("a", singleFlight.load("USER-1", () -> "a"));
+		assertEquals("b", singleFlight.load("USER-2", () -> "b"));
+		assertEquals(2, singleFlight.getLoadCount());
+		assertEquals(0, singleFlight.getCoalescedCount());
+	}
+
+	@Test
+	public void loadAsync_ConcurrentCallersForSameKey_ShareOneLoadWithBlockingCallers() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		AtomicInteger loaderCalls = new AtomicInteger();
+		CompletableFuture<String> source = new CompletableFuture<>();
+
+		CompletableFuture<String> first = singleFlight.loadAsync("USER-1", () -> {
+			loaderCalls.incrementAndGet();
+			return source;
+		});
+		CompletableFuture<String> second = singleFlight.loadAsync("USER-1", () -> {
+			loaderCalls.incrementAndGet();
+			return CompletableFuture.completedFuture("unused");
+		});
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> blocking = executor.submit(() -> singleFlight.load("USER-1", () -> {
+				loaderCalls.incrementAndGet();
+				return "unused";
+			}));
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (singleFlight.getCoalescedCount() < 2 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertFalse(first.isDone());
+			source.complete("value");
+
+			assertEquals("value", first.get(10, TimeUnit.SECONDS));
+			assertEquals("value", second.get(10, TimeUnit.SECONDS));
+			assertEquals("value", blocking.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, loaderCalls.get());
+		assertEquals(2, singleFlight.getCoalescedCount());
+		assertEquals(0, singleFlight.getInFlightCount());
+	}
+
+	@Test
+	public void loadAsync_LoaderFails_FailsEveryCallerAndForgetsFlight() {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		CompletableFuture<String> source = new CompletableFuture<>();
+
+		CompletableFuture<String> first = singleFlight.loadAsync("USER-1", () -> source);
+		CompletableFuture<String> second = singleFlight.loadAsync("USER-1", () -> CompletableFuture.completedFuture("unused"));
+		// cancelling one caller's copy leaves the shared load running
+		second.cancel(false);
+		source.completeExceptionally(new IllegalStateException("boom"));
+
+		ExecutionException thrown = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+		assertInstanceOf(IllegalStateException.class, thrown.getCause());
+		assertEquals(0, singleFlight.getInFlightCount());
+		assertEquals("fresh", singleFlight.loadAsync("USER-1", () -> CompletableFuture.completedFuture("fresh")).join());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -20,6 +20,8 @@ import qyang.com.recommendation_service.models.User;
 import qyang.com.recommendation_service.repositories.ProductRepository;
 import qyang.com.recommendation_service.repositories.UserRepository;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -193,4 +195,33 @@ public class AdminControllerTest {
 				.andExpect(status().isForbidden());
 	}
 
+	@Test
+	void getRecommendationCacheStats_WithAdminRole_ShouldSucceed() throws Exception {
+		mockMvc.perform(get("/api/admin/cache/recommendations")
+						.header("Authorization", "Bearer " + adminToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.userRecommendations.hitCount").isNumber())
+				.andExpect(jsonPath("$.userRecommendations.missCount").isNumber())
+				.andExpect(jsonPath("$.userRecommendations.evictionCount").isNumber())
+				.andExpect(jsonPath("$.categoryRecommendations.size").isNumber());
+	}
+
+	@Test
+	void invalidateRecommendationCache_WithAdminRole_ShouldReturnNoContent() throws Exception {
+		mockMvc.perform(delete("/api/admin/cache/recommendations")
+						.header("Authorization", "Bearer " + adminToken))
+				.andExpect(status().isNoContent());
+
+		mockMvc.perform(delete("/api/admin/cache/recommendations/USER-1234")
+						.header("Authorization", "Bearer " + adminToken))
+				.andExpect(status().isNoContent());
+	}
+
+	@Test
+	void invalidateRecommendationCache_WithoutAdminRole_ShouldReturnForbidden() throws Exception {
+		mockMvc.perform(delete("/api/admin/cache/recommendations")
+						.header("Authorization", "Bearer " + userToken))
+				.andExpect(status().isForbidden());
+	}
+
 }
@@ -0,0 +1,168 @@
+package qyang.com.recommendation_service.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import qyang.com.recommendation_service.cache.RecommendationCache;
+import qyang.com.recommendation_service.dtos.LoginRequest;
+import qyang.com.recommendation_service.models.CategoryRecommendation;
+import qyang.com.recommendation_service.models.CategoryRecommendationId;
+import qyang.com.recommendation_service.models.Product;
+import qyang.com.recommendation_service.models.Recommendation;
+import qyang.com.recommendation_service.models.User;
+import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
+import qyang.com.recommendation_service.repositories.ProductRepository;
+import qyang.com.recommendation_service.repositories.RecommendationRepository;
+import qyang.com.recommendation_service.repositories.UserRepository;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Not transactional: the async lookups run on other threads and only see committed rows.
+ * Micro-batching is on, so user and product lookups go through the batch loaders.
+ */
+@TestPropertySource(locations = "classpath:application-test.properties", properties = "recommendation.batching.enabled=true")
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AsyncReadControllerTest {
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private RecommendationRepository recommendationRepository;
+
+	@Autowired
+	private CategoryRecommendationRepository categoryRecommendationRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+
+	@Autowired
+	private RecommendationCache recommendationCache;
+
+	private String authToken;
+	private User testUser;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		testUser = new User("asyncuser", "password123");
+		testUser.setPassword(passwordEncoder.encode(testUser.getPassword()));
+		userRepository.save(testUser);
+
+		LoginRequest loginRequest = new LoginRequest();
+		loginRequest.setUsername("asyncuser");
+		loginRequest.setPassword("password123");
+		String result = mockMvc.perform(post("/api/users/login")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(loginRequest)))
+				.andReturn()
+				.getResponse()
+				.getContentAsString();
+		authToken = JsonPath.read(result, "$.token");
+
+		recommendationRepository.save(new Recommendation(testUser.getUserId(), "[\"B001ASYNC\",\"B002ASYNC\"]"));
+		categoryRecommendationRepository.save(new CategoryRecommendation(new CategoryRecommendationId(testUser.getUserId(), "All_Beauty"), "[\"B001ASYNC\"]"));
+		productRepository.save(new Product("B001ASYNC", "Async Product", 10.0f, 4.5f, 20, "All_Beauty"));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		categoryRecommendationRepository.deleteAll();
+		recommendationRepository.deleteAll();
+		productRepository.deleteAll();
+		userRepository.deleteAll();
+		recommendationCache.invalidateAll();
+	}
+
+	@Test
+	public void getUserRecommendations_WhenExists_ReturnsRecommendations() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/async/recommendations/" + testUser.getUserId())
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.userId").value(testUser.getUserId()))
+				.andExpect(jsonPath("$.productList", hasSize(2)))
+				.andExpect(jsonPath("$.source").value("personalized"));
+	}
+
+	@Test
+	public void getUserRecommendations_WhenUserNotExists_ReturnsNotFound() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/async/recommendations/nonexistent")
+						.header("Authorization", "Bearer " + authToken))
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isNotFound())
+				.andExpect(jsonPath("$.message").value("User not found: nonexistent"));
+	}
+
+	@Test
+	public void getCategoryRecommendations_WhenExists_ReturnsRecommendations() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/async/recommendations/" + testUser.getUserId() + "/All_Beauty")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.category").value("All_Beauty"))
+				.andExpect(jsonPath("$.productList", hasSize(1)));
+	}
+
+	@Test
+	public void getProduct_WhenExists_ReturnsProduct() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/async/products/B001ASYNC")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.parentAsin").value("B001ASYNC"));
+	}
+
+	@Test
+	public void getProduct_WhenNotExists_ReturnsNotFound() throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/async/products/B00MISSING")
+						.header("Authorization", "Bearer " + authToken))
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isNotFound())
+				.andExpect(jsonPath("$.message").value("Product not found with ID: B00MISSING"));
+	}
+
+	@Test
+	public void getUserRecommendations_WithoutToken_ReturnsUnauthorized() throws Exception {
+		mockMvc.perform(get("/api/async/recommendations/" + testUser.getUserId()))
+				.andExpect(status().isUnauthorized());
+	}
+}
@@ -0,0 +1,129 @@
+package qyang.com.recommendation_service.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import qyang.com.recommendation_service.dtos.EventBatchRequest;
+import qyang.com.recommendation_service.dtos.EventRequest;
+import qyang.com.recommendation_service.dtos.LoginRequest;
+import qyang.com.recommendation_service.models.User;
+import qyang.com.recommendation_service.repositories.UserRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// not @Transactional: the writer thread inserts on its own connection, after the request returns
+@TestPropertySource("classpath:application-test.properties")
+@SpringBootTest
+@AutoConfigureMockMvc
+public class EventControllerTest {
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private String authToken;
+	private User testUser;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		jdbcTemplate.update("DELETE FROM events");
+		testUser = new User("eventuser", passwordEncoder.encode("password123"));
+		userRepository.save(testUser);
+
+		LoginRequest loginRequest = new LoginRequest();
+		loginRequest.setUsername("eventuser");
+		loginRequest.setPassword("password123");
+		String result = mockMvc.perform(post("/api/users/login")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(loginRequest)))
+				.andReturn()
+				.getResponse()
+				.getContentAsString();
+		authToken = JsonPath.read(result, "$.token");
+	}
+
+	@AfterEach
+	public void tearDown() {
+		jdbcTemplate.update("DELETE FROM events");
+		userRepository.delete(testUser);
+	}
+
+	@Test
+	public void recordEvent_IsWrittenBehindTheResponse() throws Exception {
+		mockMvc.perform(post("/api/events")
+						.header("Authorization", "Bearer " + authToken)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(new EventRequest(testUser.getUserId(), "B001TEST", "view"))))
+				.andExpect(status().isAccepted())
+				.andExpect(jsonPath("$.accepted").value(1));
+
+		awaitEventCount(1);
+		assertEquals("VIEW", jdbcTemplate.queryForObject("SELECT event_type FROM events WHERE user_id = ?", String.class, testUser.getUserId()));
+	}
+
+	@Test
+	public void recordEvents_WritesWholeBatch() throws Exception {
+		EventBatchRequest request = new EventBatchRequest();
+		request.setEvents(List.of(
+				new EventRequest(testUser.getUserId(), "B001TEST", "view"),
+				new EventRequest(testUser.getUserId(), "B001TEST", "add_to_cart"),
+				new EventRequest(testUser.getUserId(), "B001TEST", "purchase")));
+
+		mockMvc.perform(post("/api/events/batch")
+						.header("Authorization", "Bearer " + authToken)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(request)))
+				.andExpect(status().isAccepted())
+				.andExpect(jsonPath("$.accepted").value(3));
+
+		awaitEventCount(3);
+	}
+
+	@Test
+	public void recordEvent_WithUnsupportedType_ReturnsBadRequest() throws Exception {
+		mockMvc.perform(post("/api/events")
+						.header("Authorization", "Bearer " + authToken)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(new EventRequest(testUser.getUserId(), "B001TEST", "like"))))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.message").value("Unsupported event type: like"));
+	}
+
+	private void awaitEventCount(int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		Integer count = 0;
+		while (System.currentTimeMillis() < deadline) {
+			count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Integer.class);
+			if (count != null && count >= expected) {
+				break;
+			}
+			Thread.sleep(20);
+		}
+		assertEquals(expected, count);
+	}
+}
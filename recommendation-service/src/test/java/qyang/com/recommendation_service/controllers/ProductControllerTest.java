@@ -8,11 +8,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import qyang.com.recommendation_service.dtos.LoginRequest;
+import qyang.com.recommendation_service.index.RelatedProductIndex;
 import qyang.com.recommendation_service.models.Product;
 import qyang.com.recommendation_service.models.User;
 import qyang.com.recommendation_service.repositories.ProductRepository;
@@ -44,6 +46,12 @@ public class ProductControllerTest {
 	@Autowired
 	private PasswordEncoder passwordEncoder;
 
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private RelatedProductIndex relatedProductIndex;
+
 	private String authToken;
 	private Product testProduct;
 
@@ -123,5 +131,48 @@ public class ProductControllerTest {
 				.andExpect(status().isUnauthorized());
 	}
 
+	@Test
+	public void getRelatedProducts_RanksByCoOccurrence() throws Exception {
+		// B00RELATED1 shares two buyers with the product, B00RELATED2 only a view
+		insertEvent("related-user-1", "B00TEST123", "PURCHASE");
+		insertEvent("related-user-1", "B00RELATED1", "PURCHASE");
+		insertEvent("related-user-2", "B00TEST123", "PURCHASE");
+		insertEvent("related-user-2", "B00RELATED1", "ADD_TO_CART");
+		insertEvent("related-user-3", "B00TEST123", "VIEW");
+		insertEvent("related-user-3", "B00RELATED2", "VIEW");
+		relatedProductIndex.refresh();
+
+		mockMvc.perform(get("/api/products/B00TEST123/related")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.parentAsin").value("B00TEST123"))
+				.andExpect(jsonPath("$.relatedProducts.length()").value(2))
+				.andExpect(jsonPath("$.relatedProducts[0]").value("B00RELATED1"))
+				.andExpect(jsonPath("$.relatedProducts[1]").value("B00RELATED2"));
+
+		mockMvc.perform(get("/api/products/B00TEST123/related?limit=1")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.relatedProducts.length()").value(1));
+	}
+
+	@Test
+	public void getRelatedProducts_WhenNoInteractions_ReturnsNotFound() throws Exception {
+		mockMvc.perform(get("/api/products/nonexistent/related")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isNotFound())
+				.andExpect(jsonPath("$.message").value("No related products found for product: nonexistent"));
+	}
 
+	@Test
+	public void getRelatedProducts_WithInvalidLimit_ReturnsBadRequest() throws Exception {
+		mockMvc.perform(get("/api/products/B00TEST123/related?limit=0")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isBadRequest());
+	}
+
+	private void insertEvent(String userId, String parentAsin, String type) {
+		jdbcTemplate.update("INSERT INTO events (user_id, parent_asin, event_type, occurred_at) VALUES (?, ?, ?, CURRENT_TIMESTAMP)",
+				userId, parentAsin, type);
+	}
 }
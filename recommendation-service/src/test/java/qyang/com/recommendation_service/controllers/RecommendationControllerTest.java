@@ -12,12 +12,18 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.dtos.BatchRecommendationRequest;
+import qyang.com.recommendation_service.dtos.InteractionRequest;
+import qyang.com.recommendation_service.dtos.InteractionsRequest;
 import qyang.com.recommendation_service.dtos.LoginRequest;
+import qyang.com.recommendation_service.index.ProductAttributeIndex;
 import qyang.com.recommendation_service.models.CategoryRecommendation;
 import qyang.com.recommendation_service.models.CategoryRecommendationId;
+import qyang.com.recommendation_service.models.Product;
 import qyang.com.recommendation_service.models.Recommendation;
 import qyang.com.recommendation_service.models.User;
 import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
+import qyang.com.recommendation_service.repositories.ProductRepository;
 import qyang.com.recommendation_service.repositories.RecommendationRepository;
 import qyang.com.recommendation_service.repositories.UserRepository;
 
@@ -51,9 +57,15 @@ public class RecommendationControllerTest {
 	@Autowired
 	private UserRepository userRepository;
 
+	@Autowired
+	private ProductRepository productRepository;
+
 	@Autowired
 	private PasswordEncoder passwordEncoder;
 
+	@Autowired
+	private ProductAttributeIndex productAttributeIndex;
+
 	private String authToken;
 	private User testUser;
 	private Recommendation testRecommendation;
@@ -131,6 +143,25 @@ public class RecommendationControllerTest {
 				.andExpect(jsonPath("$.productList", hasItem("B002TEST")));
 	}
 
+	@Test
+	public void getAllCategoryRecommendations_WhenExists_ReturnsCategories() throws Exception {
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId() + "/categories")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.userId").value(testUser.getUserId()))
+				.andExpect(jsonPath("$.categories", hasSize(1)))
+				.andExpect(jsonPath("$.categories[0].category").value("All_Beauty"))
+				.andExpect(jsonPath("$.categories[0].productList", hasSize(2)));
+	}
+
+	@Test
+	public void getAllCategoryRecommendations_WhenUserNotExists_ReturnsNotFound() throws Exception {
+		mockMvc.perform(get("/api/recommendations/nonexistent/categories")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isNotFound())
+				.andExpect(jsonPath("$.message").value("User not found: nonexistent"));
+	}
+
 	@Test
 	public void getCategoryRecommendations_WhenUserNotExists_ReturnsNotFound() throws Exception {
 		mockMvc.perform(get("/api/recommendations/nonexistent/All_Beauty")
@@ -153,4 +184,184 @@ public class RecommendationControllerTest {
 				.andExpect(status().isUnauthorized());
 	}
 
+	@Test
+	public void getBatchRecommendations_ReturnsResultsAndNotFoundMarkers() throws Exception {
+		User userWithoutRecommendation = userRepository.save(new User("norecs", "password123"));
+		BatchRecommendationRequest request = new BatchRecommendationRequest();
+		request.setUserIds(Arrays.asList(testUser.getUserId(), "nonexistent", userWithoutRecommendation.getUserId()));
+
+		mockMvc.perform(post("/api/recommendations/batch")
+						.header("Authorization", "Bearer " + authToken)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(request)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.recommendations['" + testUser.getUserId() + "'].productList", hasSize(2)))
+				.andExpect(jsonPath("$.notFound.nonexistent").value("User not found: nonexistent"))
+				.andExpect(jsonPath("$.notFound['" + userWithoutRecommendation.getUserId() + "']")
+						.value("No recommendation found for user: " + userWithoutRecommendation.getUserId()));
+	}
+
+	@Test
+	public void getBatchRecommendations_WithoutUserIds_ReturnsBadRequest() throws Exception {
+		mockMvc.perform(post("/api/recommendations/batch")
+						.header("Authorization", "Bearer " + authToken)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{}"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.message").value("userIds must not be empty"));
+	}
+
+	@Test
+	public void getBatchRecommendations_WithoutAuth_ReturnsUnauthroized() throws Exception {
+		mockMvc.perform(post("/api/recommendations/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"userIds\":[\"" + testUser.getUserId() + "\"]}"))
+				.andExpect(status().isUnauthorized());
+	}
+
+	@Test
+	public void getUserRecommendations_WithExpandProducts_EmbedsProductsInOrder() throws Exception {
+		productRepository.save(new Product("B002TEST", "Second Product", 20.0f, 4.0f, 10, "All_Beauty"));
+		productRepository.save(new Product("B001TEST", "First Product", 10.0f, 4.5f, 20, "All_Beauty"));
+
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId())
+						.param("expand", "products")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.productList", hasSize(2)))
+				.andExpect(jsonPath("$.products", hasSize(2)))
+				.andExpect(jsonPath("$.products[0].parentAsin").value("B001TEST"))
+				.andExpect(jsonPath("$.products[0].title").value("First Product"))
+				.andExpect(jsonPath("$.products[1].parentAsin").value("B002TEST"));
+	}
+
+	@Test
+	public void getCategoryRecommendations_WithExpandProducts_SkipsUnknownProducts() throws Exception {
+		productRepository.save(new Product("B002TEST", "Second Product", 20.0f, 4.0f, 10, "All_Beauty"));
+
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId() + "/All_Beauty")
+						.param("expand", "products")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.products", hasSize(1)))
+				.andExpect(jsonPath("$.products[0].parentAsin").value("B002TEST"));
+	}
+
+	@Test
+	public void getUserRecommendations_WithoutExpand_OmitsProducts() throws Exception {
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId())
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.products").doesNotExist());
+	}
+
+	@Test
+	public void getUserRecommendations_WithUnsupportedExpand_ReturnsBadRequest() throws Exception {
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId())
+						.param("expand", "reviews")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.message").value("Unsupported expand value: reviews"));
+	}
+
+
+	@Test
+	public void getUserRecommendations_WithMaxPrice_FiltersProducts() throws Exception {
+		productRepository.save(new Product("B001TEST", "First Product", 10.0f, 4.5f, 20, "All_Beauty"));
+		productRepository.save(new Product("B002TEST", "Second Product", 20.0f, 4.0f, 10, "All_Beauty"));
+		productAttributeIndex.refresh();
+
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId())
+						.param("maxPrice", "15")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.productList", hasSize(1)))
+				.andExpect(jsonPath("$.productList[0]").value("B001TEST"));
+	}
+
+	@Test
+	public void getUserRecommendations_WithDiversify_MovesOtherCategoryUp() throws Exception {
+		productRepository.save(new Product("B001DIV", "Beauty One", 10.0f, 4.5f, 20, "All_Beauty"));
+		productRepository.save(new Product("B002DIV", "Beauty Two", 10.0f, 4.5f, 20, "All_Beauty"));
+		productRepository.save(new Product("B003DIV", "Beauty Three", 10.0f, 4.5f, 20, "All_Beauty"));
+		productRepository.save(new Product("B004DIV", "Car Part", 10.0f, 4.5f, 20, "Automotive"));
+		productAttributeIndex.refresh();
+		User user = userRepository.save(new User("diverseuser", "password123"));
+		recommendationRepository.save(new Recommendation(user.getUserId(),
+				objectMapper.writeValueAsString(List.of("B001DIV", "B002DIV", "B003DIV", "B004DIV"))));
+
+		mockMvc.perform(get("/api/recommendations/" + user.getUserId())
+						.param("diversify", "true")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.productList[0]").value("B001DIV"))
+				.andExpect(jsonPath("$.productList[1]").value("B002DIV"))
+				.andExpect(jsonPath("$.productList[2]").value("B004DIV"))
+				.andExpect(jsonPath("$.productList[3]").value("B003DIV"));
+	}
+
+	@Test
+	public void getUserRecommendations_WithInvalidMinRating_ReturnsBadRequest() throws Exception {
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId())
+						.param("minRating", "6")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.message").value("minRating must be between 0 and 5"));
+	}
+
+	@Test
+	public void getUserRecommendations_WithOffsetAndLimit_ReturnsSlice() throws Exception {
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId())
+						.param("offset", "1")
+						.param("limit", "1")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.productList", hasSize(1)))
+				.andExpect(jsonPath("$.productList[0]").value("B002TEST"));
+	}
+
+	@Test
+	public void getCategoryRecommendations_WithLimit_ReturnsSlice() throws Exception {
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId() + "/All_Beauty")
+						.param("limit", "1")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.productList", hasSize(1)))
+				.andExpect(jsonPath("$.productList[0]").value("B001TEST"));
+	}
+
+	@Test
+	public void getUserRecommendations_WithZeroLimit_ReturnsBadRequest() throws Exception {
+		mockMvc.perform(get("/api/recommendations/" + testUser.getUserId())
+						.param("limit", "0")
+						.header("Authorization", "Bearer " + authToken))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.message").value("limit must be at least 1"));
+	}
+
+	@Test
+	public void foldInInteractions_WithInvalidRating_ReturnsBadRequest() throws Exception {
+		InteractionsRequest request = new InteractionsRequest();
+		request.setInteractions(List.of(new InteractionRequest("B001TEST", 6.0f)));
+
+		mockMvc.perform(post("/api/recommendations/" + testUser.getUserId() + "/interactions")
+						.header("Authorization", "Bearer " + authToken)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(request)))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.message").value("rating must be between 1 and 5"));
+	}
+
+	@Test
+	public void foldInInteractions_WithoutFactorModel_ReturnsServiceUnavailable() throws Exception {
+		InteractionsRequest request = new InteractionsRequest();
+		request.setInteractions(List.of(new InteractionRequest("B001TEST", 4.0f)));
+
+		mockMvc.perform(post("/api/recommendations/" + testUser.getUserId() + "/interactions")
+						.header("Authorization", "Bearer " + authToken)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(request)))
+				.andExpect(status().isServiceUnavailable())
+				.andExpect(jsonPath("$.message").value("No factor model is loaded"));
+	}
 }
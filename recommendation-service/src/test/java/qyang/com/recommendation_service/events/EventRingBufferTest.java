@@ -0,0 +1,92 @@
+package qyang.com.recommendation_service.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventRingBufferTest {
+	@Test
+	public void offer_WhenBatchDoesNotFit_AddsNothing() {
+		EventRingBuffer<Integer> buffer = new EventRingBuffer<>(3);
+
+		assertEquals(4, buffer.capacity());
+		assertTrue(buffer.offer(List.of(1, 2, 3)));
+		assertFalse(buffer.offer(List.of(4, 5)));
+		assertTrue(buffer.offer(4));
+		assertFalse(buffer.offer(5));
+
+		List<Integer> drained = new ArrayList<>();
+		assertEquals(4, buffer.drainTo(drained, 10));
+		assertEquals(List.of(1, 2, 3, 4), drained);
+		assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void drainTo_AfterWrapAround_KeepsOrder() {
+		EventRingBuffer<Integer> buffer = new EventRingBuffer<>(4);
+		List<Integer> drained = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			assertTrue(buffer.offer(List.of(3 * i, 3 * i + 1, 3 * i + 2)));
+			buffer.drainTo(drained, 2);
+			buffer.drainTo(drained, 1);
+		}
+
+		for (int i = 0; i < 30; i++) {
+			assertEquals(i, drained.get(i));
+		}
+	}
+
+	@Test
+	public void offer_FromConcurrentProducers_DeliversEveryElementOnce() throws Exception {
+		int producers = 4;
+		int perProducer = 20000;
+		EventRingBuffer<Integer> buffer = new EventRingBuffer<>(64);
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			for (int p = 0; p < producers; p++) {
+				int base = p * perProducer;
+				executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < perProducer; i += 2) {
+						while (!buffer.offer(List.of(base + i, base + i + 1))) {
+							Thread.onSpinWait();
+						}
+					}
+					return null;
+				});
+			}
+			start.countDown();
+
+			boolean[] seen = new boolean[producers * perProducer];
+			int[] lastByProducer = new int[producers];
+			Arrays.fill(lastByProducer, -1);
+			List<Integer> drained = new ArrayList<>();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+			int received = 0;
+			while (received < seen.length && System.nanoTime() < deadline) {
+				drained.clear();
+				buffer.drainTo(drained, 50);
+				for (int value : drained) {
+					assertFalse(seen[value]);
+					seen[value] = true;
+					// each producer's elements arrive in the order it offered them
+					assertTrue(value > lastByProducer[value / perProducer]);
+					lastByProducer[value / perProducer] = value;
+					received++;
+				}
+			}
+			assertEquals(seen.length, received);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
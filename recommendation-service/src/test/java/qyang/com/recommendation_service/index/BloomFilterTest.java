@@ -0,0 +1,43 @@
+package qyang.com.recommendation_service.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+	@Test
+	public void mightContain_AfterAdd_HasNoFalseNegatives() {
+		BloomFilter filter = BloomFilter.create(10_000, 0.01);
+		for (int i = 0; i < 10_000; i++) {
+			filter.add("USER-" + i);
+		}
+
+		for (int i = 0; i < 10_000; i++) {
+			assertTrue(filter.mightContain("USER-" + i));
+		}
+		assertEquals(10_000, filter.getInsertions());
+	}
+
+	@Test
+	public void mightContain_AtExpectedInsertions_StaysNearTargetRate() {
+		BloomFilter filter = BloomFilter.create(10_000, 0.01);
+		for (int i = 0; i < 10_000; i++) {
+			filter.add("USER-" + i);
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 100_000; i++) {
+			if (filter.mightContain("OTHER-" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+		assertEquals(0.01, filter.getExpectedFalsePositiveRate(), 0.002);
+	}
+
+	@Test
+	public void create_WithInvalidRate_ThrowsException() {
+		assertThrows(IllegalArgumentException.class, ()->
+				BloomFilter.create(100, 1.0));
+	}
+}
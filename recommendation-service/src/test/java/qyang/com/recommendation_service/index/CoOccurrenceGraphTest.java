@@ -0,0 +1,77 @@
+package qyang.com.recommendation_service.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoOccurrenceGraphTest {
+
+	@Test
+	public void build_OrdersNeighborsByCosineSimilarity() {
+		CoOccurrenceGraph.Builder builder = new CoOccurrenceGraph.Builder();
+		int a = builder.id("A");
+		int b = builder.id("B");
+		int c = builder.id("C");
+		int d = builder.id("D");
+		builder.addUser(new int[]{a, b}, new float[]{1, 1}, 2);
+		builder.addUser(new int[]{a, b, c}, new float[]{1, 1, 1}, 3);
+		// D never shares a user with A, so it is no neighbor of A however often it is bought
+		builder.addUser(new int[]{b, d}, new float[]{1, 1}, 2);
+		builder.addUser(new int[]{c, d}, new float[]{1, 1}, 2);
+		CoOccurrenceGraph graph = builder.build(10);
+
+		assertEquals(List.of("B", "C"), graph.related("A", 10));
+		assertEquals(List.of("A", "C", "D"), graph.related("B", 10));
+
+		int id = graph.indexOf("A");
+		assertEquals(2, graph.end(id) - graph.start(id));
+		// A and B: two shared users of the two A and three B have
+		assertEquals(2 / Math.sqrt(2 * 3), graph.weight(graph.start(id)), 1e-6);
+		assertEquals("B", graph.asinOf(graph.neighbor(graph.start(id))));
+	}
+
+	@Test
+	public void build_KeepsOnlyTheBestNeighbors() {
+		CoOccurrenceGraph.Builder builder = new CoOccurrenceGraph.Builder();
+		int[] items = new int[]{builder.id("A"), builder.id("B"), builder.id("C"), builder.id("D")};
+		builder.addUser(items, new float[]{1, 8, 4, 1}, 4);
+		CoOccurrenceGraph graph = builder.build(2);
+
+		// with one user every similarity is 1, so ties go to the product seen first
+		assertEquals(List.of("B", "C"), graph.related("A", 10));
+		assertEquals(List.of("B"), graph.related("A", 1));
+		assertEquals(4 * 2, graph.getEdgeCount());
+	}
+
+	@Test
+	public void related_WhenProductHasNoPair_ReturnsNull() {
+		CoOccurrenceGraph.Builder builder = new CoOccurrenceGraph.Builder();
+		builder.addUser(new int[]{builder.id("A")}, new float[]{1}, 1);
+		builder.addUser(new int[]{builder.id("B"), builder.id("C")}, new float[]{1, 1}, 2);
+		CoOccurrenceGraph graph = builder.build(10);
+
+		assertNull(graph.related("A", 10));
+		assertNull(graph.related("unknown", 10));
+		assertEquals(2, graph.size());
+		assertNull(CoOccurrenceGraph.empty().related("A", 10));
+	}
+
+	@Test
+	public void build_GrowsPastInitialCapacity() {
+		CoOccurrenceGraph.Builder builder = new CoOccurrenceGraph.Builder();
+		int[] items = new int[200];
+		float[] weights = new float[200];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = builder.id("P" + i);
+			weights[i] = 1;
+		}
+		builder.addUser(items, weights, items.length);
+		builder.addUser(new int[]{items[0], items[199]}, new float[]{1, 1}, 2);
+		CoOccurrenceGraph graph = builder.build(5);
+
+		assertEquals(200, graph.size());
+		assertEquals("P199", graph.related("P0", 1).get(0));
+	}
+}
@@ -0,0 +1,99 @@
+package qyang.com.recommendation_service.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.dtos.BatchRecommendationResponse;
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.models.Product;
+import qyang.com.recommendation_service.models.User;
+import qyang.com.recommendation_service.repositories.ProductRepository;
+import qyang.com.recommendation_service.repositories.UserRepository;
+import qyang.com.recommendation_service.services.RecommendationService;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// its own context: the ranking it builds must not leak into tests that expect no fallback
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+		"recommendation.popularity.list-size=2",
+		"recommendation.popularity.prior-weight=50"
+})
+@SpringBootTest
+@Transactional
+public class PopularityRankingTest {
+	@Autowired
+	private PopularityRanking popularityRanking;
+
+	@Autowired
+	private RecommendationService recommendationService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private User userWithoutRecommendation;
+
+	@BeforeEach
+	public void setUp() {
+		productRepository.deleteAll();
+		// few but perfect ratings must not beat many good ones
+		productRepository.save(new Product("B00FEWVOTES", "Few Votes", 10.0f, 5.0f, 2, "All_Beauty"));
+		productRepository.save(new Product("B00POPULAR1", "Popular", 10.0f, 4.9f, 800, "All_Beauty"));
+		productRepository.save(new Product("B00POPULAR2", "Also Popular", 10.0f, 4.6f, 1000, "Books"));
+		productRepository.save(new Product("B00AVERAGE", "Average", 10.0f, 3.0f, 500, "Books"));
+		productRepository.save(new Product("B00UNRATED", "Unrated", 10.0f, null, 0, "Books"));
+		popularityRanking.refresh();
+
+		userWithoutRecommendation = userRepository.save(new User("norecs", "password123"));
+	}
+
+	@Test
+	public void refresh_RanksByBayesianAverage() {
+		assertEquals(List.of("B00POPULAR1", "B00POPULAR2"), popularityRanking.getOverall());
+		assertEquals(List.of("B00POPULAR1", "B00FEWVOTES"), popularityRanking.getCategory("All_Beauty"));
+		assertEquals(List.of("B00POPULAR2", "B00AVERAGE"), popularityRanking.getCategory("Books"));
+		assertEquals(List.of(), popularityRanking.getCategory("nonexistent"));
+	}
+
+	@Test
+	public void getUserRecommendations_WhenUserHasNoRecommendation_FallsBackToPopularity() {
+		RecommendationResponse response = recommendationService.getUserRecommendation(userWithoutRecommendation.getUserId());
+
+		assertEquals(RecommendationResponse.SOURCE_POPULARITY, response.getSource());
+		assertEquals(List.of("B00POPULAR1", "B00POPULAR2"), response.getProductList());
+	}
+
+	@Test
+	public void getCategoryRecommendations_WhenUserHasNoRecommendation_FallsBackToPopularity() {
+		CategoryRecommendationResponse response = recommendationService.getCategoryRecommendation(userWithoutRecommendation.getUserId(), "Books");
+
+		assertEquals(RecommendationResponse.SOURCE_POPULARITY, response.getSource());
+		assertEquals(List.of("B00POPULAR2", "B00AVERAGE"), response.getProductList());
+		assertThrows(ResourceNotFoundException.class, ()->
+				recommendationService.getCategoryRecommendation(userWithoutRecommendation.getUserId(), "nonexistent"));
+	}
+
+	@Test
+	public void getBatchRecommendations_WhenUserHasNoRecommendation_FallsBackToPopularity() {
+		BatchRecommendationResponse response = recommendationService.getUserRecommendations(
+				List.of(userWithoutRecommendation.getUserId(), "nonexistent"));
+
+		assertEquals(RecommendationResponse.SOURCE_POPULARITY, response.getRecommendations().get(userWithoutRecommendation.getUserId()).getSource());
+		assertEquals("User not found: nonexistent", response.getNotFound().get("nonexistent"));
+	}
+
+	@Test
+	public void getUserRecommendations_WhenUserNotExists_StillThrowsException() {
+		assertThrows(ResourceNotFoundException.class, ()->
+				recommendationService.getUserRecommendation("nonexistent"));
+	}
+}
@@ -0,0 +1,77 @@
+package qyang.com.recommendation_service.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import qyang.com.recommendation_service.models.ProductAttributes;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductAttributeIndexTest {
+	private static final List<String> CANDIDATES = List.of("B00CHEAP", "B00PRICEY", "B00BOOK", "B00NOPRICE", "B00UNKNOWN");
+
+	private final ProductAttributeIndex index = new ProductAttributeIndex(null);
+
+	@BeforeEach
+	public void setUp() {
+		index.load(List.of(
+				new Attributes("B00CHEAP", 10.0f, 3.0f, "All_Beauty"),
+				new Attributes("B00PRICEY", 90.0f, 4.8f, "All_Beauty"),
+				new Attributes("B00BOOK", 15.0f, 4.2f, "Books"),
+				new Attributes("B00NOPRICE", null, null, null)
+		));
+	}
+
+	@Test
+	public void rerank_WithoutFilterAndRatingWeight_KeepsStoredOrder() {
+		assertEquals(CANDIDATES, index.rerank(CANDIDATES, ProductFilter.NONE, 1.0f, 0.0f));
+	}
+
+	@Test
+	public void rerank_WithPriceRange_DropsOutOfRangeAndUnknownProducts() {
+		List<String> ranked = index.rerank(CANDIDATES, new ProductFilter(5.0f, 20.0f, null, null), 1.0f, 0.0f);
+
+		assertEquals(List.of("B00CHEAP", "B00BOOK"), ranked);
+	}
+
+	@Test
+	public void rerank_WithMinRatingAndCategory_AppliesBoth() {
+		assertEquals(List.of("B00PRICEY"), index.rerank(CANDIDATES, new ProductFilter(null, null, 4.0f, "All_Beauty"), 1.0f, 0.0f));
+		assertEquals(List.of(), index.rerank(CANDIDATES, new ProductFilter(null, null, null, "Garden"), 1.0f, 0.0f));
+	}
+
+	@Test
+	public void rerank_WithRatingWeight_MovesHigherRatedProductsUp() {
+		List<String> ranked = index.rerank(CANDIDATES, ProductFilter.NONE, 1.0f, 2.0f);
+
+		assertEquals(List.of("B00PRICEY", "B00BOOK", "B00CHEAP", "B00NOPRICE", "B00UNKNOWN"), ranked);
+	}
+
+	@Test
+	public void productFilter_WithInvertedPriceRange_IsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new ProductFilter(20.0f, 10.0f, null, null));
+	}
+
+	private record Attributes(String parentAsin, Float price, Float averageRating, String category) implements ProductAttributes {
+		@Override
+		public String getParentAsin() {
+			return parentAsin;
+		}
+
+		@Override
+		public Float getPrice() {
+			return price;
+		}
+
+		@Override
+		public Float getAverageRating() {
+			return averageRating;
+		}
+
+		@Override
+		public String getCategory() {
+			return category;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package qyang.com.recommendation_service.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductBitmapTest {
+
+	@Test
+	public void of_IgnoresOrderAndDuplicates() {
+		ProductBitmap bitmap = ProductBitmap.of(70_000, 3, 3, 65_535, 65_536);
+
+		assertEquals(4, bitmap.cardinality());
+		assertTrue(bitmap.contains(3));
+		assertTrue(bitmap.contains(65_535));
+		assertTrue(bitmap.contains(65_536));
+		assertTrue(bitmap.contains(70_000));
+		assertFalse(bitmap.contains(4));
+		assertFalse(bitmap.contains(-1));
+		assertFalse(bitmap.contains(1 << 20));
+	}
+
+	@Test
+	public void with_LeavesOriginalUnchanged() {
+		ProductBitmap original = ProductBitmap.of(1, 2);
+		ProductBitmap added = original.with(1_000_000);
+
+		assertTrue(added.contains(1_000_000));
+		assertFalse(original.contains(1_000_000));
+		assertSame(added, added.with(2));
+		assertSame(original, ProductBitmap.empty().or(original));
+	}
+
+	@Test
+	public void or_SwitchesToBitmapContainerPastArrayLimit() {
+		int[] evens = new int[3000];
+		int[] odds = new int[3000];
+		for (int i = 0; i < 3000; i++) {
+			evens[i] = 2 * i;
+			odds[i] = 2 * i + 1;
+		}
+		ProductBitmap union = ProductBitmap.of(evens).or(ProductBitmap.of(odds));
+
+		assertEquals(6000, union.cardinality());
+		for (int id = 0; id < 6000; id++) {
+			assertTrue(union.contains(id));
+		}
+		assertFalse(union.contains(6000));
+		// one group of 65536 bits instead of 6000 chars
+		assertEquals(24 + 24 + 24 + 16 + 8192, union.getSizeInBytes());
+		assertEquals(6001, union.or(ProductBitmap.of(100_000)).cardinality());
+		assertEquals(6000, union.or(ProductBitmap.of(evens)).cardinality());
+	}
+
+	@Test
+	public void getSizeInBytes_StaysSmallForATypicalUser() {
+		int[] purchases = new int[20];
+		for (int i = 0; i < purchases.length; i++) {
+			purchases[i] = i * 50_021;
+		}
+		ProductBitmap bitmap = ProductBitmap.of(purchases);
+
+		// fifteen groups would cost more than the plain sorted ids
+		assertEquals(20, bitmap.cardinality());
+		assertEquals(24 + 16 + 4 * 20, bitmap.getSizeInBytes());
+		assertTrue(bitmap.contains(19 * 50_021));
+		assertFalse(bitmap.contains(50_020));
+	}
+
+	@Test
+	public void of_GroupsDenseIds() {
+		int[] dense = new int[100];
+		for (int i = 0; i < dense.length; i++) {
+			dense[i] = 500 + i;
+		}
+		ProductBitmap bitmap = ProductBitmap.of(dense);
+
+		// one group of 100 chars is smaller than 100 ints
+		assertEquals(24 + 24 + 24 + 16 + 200, bitmap.getSizeInBytes());
+		assertTrue(bitmap.contains(599));
+		assertFalse(bitmap.contains(600));
+		assertTrue(ProductBitmap.of(7).or(bitmap).contains(7));
+	}
+
+	@Test
+	public void of_RejectsNegativeIds() {
+		assertThrows(IllegalArgumentException.class, () -> ProductBitmap.of(-5, 1));
+	}
+}
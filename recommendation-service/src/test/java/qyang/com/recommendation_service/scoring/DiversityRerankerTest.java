@@ -0,0 +1,68 @@
+package qyang.com.recommendation_service.scoring;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiversityRerankerTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void order_WithoutModel_MovesOtherCategoryUp() {
+		// three of one category ahead of one of another
+		int[] order = DiversityReranker.order(null, new int[]{-1, -1, -1, -1}, new int[]{0, 0, 0, 1}, 0.7f, 20, 5000);
+
+		assertArrayEquals(new int[]{0, 1, 3, 2}, order);
+	}
+
+	@Test
+	public void order_WithLambdaOne_KeepsStoredOrder() {
+		int[] order = DiversityReranker.order(null, new int[]{-1, -1, -1, -1}, new int[]{0, 0, 0, 1}, 1f, 20, 5000);
+
+		assertArrayEquals(new int[]{0, 1, 2, 3}, order);
+	}
+
+	@Test
+	public void order_PastComparisonBudget_KeepsStoredOrderForTheRest() {
+		int[] categories = new int[]{0, 0, 0, 0, 1, 1};
+		int[] items = new int[]{-1, -1, -1, -1, -1, -1};
+
+		assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, DiversityReranker.order(null, items, categories, 0.3f, 20, 0));
+		// the first placement costs 5 comparisons, the second would cost 4 more
+		assertArrayEquals(new int[]{0, 4, 1, 2, 3, 5}, DiversityReranker.order(null, items, categories, 0.3f, 20, 8));
+		// and with depth 2 only two positions are chosen
+		assertArrayEquals(new int[]{0, 4, 1, 2, 3, 5}, DiversityReranker.order(null, items, categories, 0.3f, 2, 5000));
+	}
+
+	@Test
+	public void order_WithModel_SeparatesItemsWithSimilarFactors() throws IOException {
+		Path path = directory.resolve("factors.bin");
+		// B000000001 points the same way as B000000000, B000000002 at a right angle
+		FactorModelFiles.write(path, 2, List.of("USER-000000000"), new float[]{1, 0},
+				FactorModelFiles.ids("B", 3), new float[3], new float[]{1, 0, 2, 0, 0, 1});
+		FactorModel model = FactorModel.open(path);
+
+		assertEquals(1f, model.similarity(0, 1), 1e-6);
+		assertEquals(0f, model.similarity(0, 2), 1e-6);
+		assertArrayEquals(new int[]{0, 2, 1}, DiversityReranker.order(model, new int[]{0, 1, 2}, new int[]{-1, -1, -1}, 0.5f, 20, 5000));
+	}
+
+	@Test
+	public void order_WithModelMissingSomeItems_ScoresThemOnTheSameScale() throws IOException {
+		Path path = directory.resolve("factors.bin");
+		// B000000002 is at a right angle to B000000000; the second product is not in the model
+		FactorModelFiles.write(path, 2, List.of("USER-000000000"), new float[]{1, 0},
+				FactorModelFiles.ids("B", 3), new float[3], new float[]{1, 0, 2, 0, 0, 1});
+		FactorModel model = FactorModel.open(path);
+
+		// all three share a category, so each is half as similar to the first as a perfect match,
+		// and the unknown product keeps its better stored position
+		assertArrayEquals(new int[]{0, 1, 2}, DiversityReranker.order(model, new int[]{0, -1, 2}, new int[]{0, 0, 0}, 0.5f, 20, 5000));
+	}
+}
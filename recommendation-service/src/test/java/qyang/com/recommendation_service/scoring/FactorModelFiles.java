@@ -0,0 +1,78 @@
+package qyang.com.recommendation_service.scoring;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes factor model files the way the training job's export does, for tests and benchmarks.
+ */
+public final class FactorModelFiles {
+	private FactorModelFiles() {
+	}
+
+	public static void write(Path path, int factorCount, List<String> userIds, float[] userFactors, List<String> itemIds, float[] itemBiases, float[] itemFactors) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+			out.writeInt(FactorModel.MAGIC);
+			out.writeInt(FactorModel.FORMAT_VERSION);
+			out.writeInt(factorCount);
+			out.writeInt(userIds.size());
+			out.writeInt(itemIds.size());
+			out.writeFloat(3.5f);
+			for (String id : userIds) {
+				writeId(out, id);
+			}
+			for (String id : itemIds) {
+				writeId(out, id);
+			}
+			for (int i = 0; i < userIds.size(); i++) {
+				out.writeFloat(0.1f * i);
+			}
+			writeFloats(out, userFactors);
+			writeFloats(out, itemBiases);
+			writeFloats(out, itemFactors);
+		}
+	}
+
+	/**
+	 * A model of normally distributed factors with items named {@code B000000000}, {@code B000000001}, ...
+	 */
+	public static void writeRandom(Path path, int users, int items, int factorCount, long seed) throws IOException {
+		Random random = new Random(seed);
+		write(path, factorCount, ids("USER-", users), gaussian(random, users * factorCount, 0.1f),
+				ids("B", items), gaussian(random, items, 0.3f), gaussian(random, items * factorCount, 0.1f));
+	}
+
+	public static List<String> ids(String prefix, int count) {
+		String[] ids = new String[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = prefix + String.format("%09d", i);
+		}
+		return List.of(ids);
+	}
+
+	private static float[] gaussian(Random random, int count, float deviation) {
+		float[] values = new float[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = (float) random.nextGaussian() * deviation;
+		}
+		return values;
+	}
+
+	private static void writeId(DataOutputStream out, String id) throws IOException {
+		byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+		for (float value : values) {
+			out.writeFloat(value);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package qyang.com.recommendation_service.scoring;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FactorModelTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void topK_MatchesFullSort() throws IOException {
+		// 13 factors also exercises the tail after the unrolled loop
+		Path path = directory.resolve("factors.bin");
+		FactorModelFiles.writeRandom(path, 20, 5000, 13, 7);
+		FactorModel model = FactorModel.open(path);
+
+		for (String userId : List.of("USER-000000000", "USER-000000011", "USER-000000019")) {
+			float[] user = model.userVector(userId);
+			int[] expected = bruteForceTopK(path, model, user, 25);
+
+			assertArrayEquals(expected, model.topK(user, 25));
+		}
+	}
+
+	@Test
+	public void parallelTopK_MatchesSequentialScan() throws IOException {
+		Path path = directory.resolve("factors.bin");
+		FactorModelFiles.writeRandom(path, 5, 10000, 16, 3);
+		FactorModel model = FactorModel.open(path);
+		float[] user = model.userVector("USER-000000002");
+		int[] everyOtherItem = IntStream.range(0, 5000).map(i -> 2 * i).toArray();
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			// split sizes that leave some leaves with fewer items than k
+			for (int splitSize : new int[]{7, 100, 1000}) {
+				assertArrayEquals(model.topK(user, 20), model.topK(user, 20, null, 0, 10000, pool, splitSize));
+				assertArrayEquals(model.scan(user, 20, everyOtherItem, 100, 4900).drain(),
+						model.topK(user, 20, everyOtherItem, 100, 4900, pool, splitSize));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void topK_WithFewerItemsThanK_ReturnsAllRanked() throws IOException {
+		Path path = directory.resolve("factors.bin");
+		FactorModelFiles.write(path, 2, List.of("USER-1"), new float[]{1, 0},
+				List.of("B001", "B002", "B003"), new float[]{0, 0, 0}, new float[]{0.5f, 0, 2, 0, 1, 0});
+		FactorModel model = FactorModel.open(path);
+
+		assertEquals(List.of("B002", "B003", "B001"), model.itemIds(model.topK(model.userVector("USER-1"), 10)));
+		assertNull(model.userVector("unknown"));
+	}
+
+	@Test
+	public void foldIn_RecoversVectorThatExplainsRatings() throws IOException {
+		Path path = directory.resolve("factors.bin");
+		FactorModelFiles.write(path, 2, List.of("USER-1"), new float[]{0, 0},
+				List.of("B001", "B002", "B003", "B004", "B005", "B006"), new float[6],
+				new float[]{1, 0, -1, 0, 0, 1, 0, -1, 1, 1, -1, -1});
+		FactorModel model = FactorModel.open(path);
+		// ratings of mean 3.5 plus q . (1, -0.5); the residuals sum to zero, so the user bias is zero
+		float[] ratings = {4.5f, 2.5f, 3.0f, 4.0f, 4.0f, 3.0f};
+
+		float[] user = model.foldIn(new int[]{0, 1, 2, 3, 4, 5}, ratings, 0.0001f);
+
+		assertEquals(1.0f, user[0], 0.001f);
+		assertEquals(-0.5f, user[1], 0.001f);
+		assertEquals(List.of("B001"), model.itemIds(model.topK(user, 1)));
+	}
+
+	@Test
+	public void open_WithTruncatedFile_ThrowsException() throws IOException {
+		Path path = directory.resolve("factors.bin");
+		FactorModelFiles.writeRandom(path, 2, 10, 4, 1);
+		byte[] bytes = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+
+		assertThrows(IllegalStateException.class, () -> FactorModel.open(path));
+	}
+
+	private static int[] bruteForceTopK(Path path, FactorModel model, float[] user, int k) throws IOException {
+		// recomputes every score in double precision from the exported biases and factors
+		int items = model.getItemCount();
+		int factors = model.getFactorCount();
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		int itemSection = buffer.capacity() - 4 * (items + items * factors);
+		double[] scores = new double[items];
+		for (int item = 0; item < items; item++) {
+			double score = buffer.getFloat(itemSection + 4 * item);
+			for (int f = 0; f < factors; f++) {
+				score += (double) user[f] * buffer.getFloat(itemSection + 4 * items + 4 * (item * factors + f));
+			}
+			scores[item] = score;
+		}
+		return IntStream.range(0, items).boxed()
+				.sorted(Comparator.comparingDouble((Integer item) -> scores[item]).reversed())
+				.limit(k)
+				.mapToInt(Integer::intValue)
+				.toArray();
+	}
+}
@@ -0,0 +1,144 @@
+package qyang.com.recommendation_service.scoring;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.cache.RecommendationCache;
+import qyang.com.recommendation_service.dtos.BatchRecommendationResponse;
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.InteractionRequest;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.models.Product;
+import qyang.com.recommendation_service.models.User;
+import qyang.com.recommendation_service.repositories.ProductRepository;
+import qyang.com.recommendation_service.repositories.UserRepository;
+import qyang.com.recommendation_service.services.RecommendationService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// its own context: the model it loads must not leak into tests that expect no fallback
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+		"recommendation.scoring.enabled=true",
+		"recommendation.scoring.list-size=5",
+		"recommendation.scoring.split-size=3"
+})
+@SpringBootTest
+@Transactional
+public class ScoringEngineTest {
+	private static final Path MODEL_PATH = writeModel();
+
+	@Autowired
+	private ScoringEngine scoringEngine;
+
+	@Autowired
+	private RecommendationService recommendationService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private RecommendationCache recommendationCache;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@DynamicPropertySource
+	static void modelPath(DynamicPropertyRegistry registry) {
+		registry.add("recommendation.scoring.model-path", MODEL_PATH::toString);
+	}
+
+	@BeforeEach
+	public void setUp() {
+		userRepository.save(new User("USER-000000003", "modeluser", "password123"));
+		productRepository.deleteAll();
+		for (int i = 0; i < 40; i++) {
+			productRepository.save(new Product(String.format("B%09d", i), "Product " + i, 10.0f, 4.0f, 10, i % 4 == 0 ? "Books" : "All_Beauty"));
+		}
+		scoringEngine.refresh();
+	}
+
+	@Test
+	public void getUserRecommendations_WhenUserHasNoRecommendation_ScoresAgainstModel() throws IOException {
+		FactorModel model = FactorModel.open(MODEL_PATH);
+		List<String> expected = model.itemIds(model.topK(model.userVector("USER-000000003"), 5));
+
+		RecommendationResponse response = recommendationService.getUserRecommendation("USER-000000003");
+
+		assertTrue(scoringEngine.isReady());
+		assertEquals(RecommendationResponse.SOURCE_MODEL, response.getSource());
+		assertEquals(expected, response.getProductList());
+	}
+
+	@Test
+	public void getBatchRecommendations_WhenUserHasNoRecommendation_ScoresAgainstModel() {
+		BatchRecommendationResponse response = recommendationService.getUserRecommendations(List.of("USER-000000003"));
+
+		assertEquals(RecommendationResponse.SOURCE_MODEL, response.getRecommendations().get("USER-000000003").getSource());
+		assertEquals(5, response.getRecommendations().get("USER-000000003").getProductList().size());
+	}
+
+	@Test
+	public void getCategoryRecommendations_WhenUserHasNoRecommendation_ScoresCategoryItems() throws IOException {
+		FactorModel model = FactorModel.open(MODEL_PATH);
+		int[] books = IntStream.range(0, 10).map(i -> 4 * i).toArray();
+		List<String> expected = model.itemIds(model.scan(model.userVector("USER-000000003"), 5, books, 0, books.length).drain());
+
+		CategoryRecommendationResponse response = recommendationService.getCategoryRecommendation("USER-000000003", "Books");
+
+		assertEquals(RecommendationResponse.SOURCE_MODEL, response.getSource());
+		assertEquals(expected, response.getProductList());
+		assertNull(scoringEngine.recommend("USER-000000003", "nonexistent"));
+	}
+
+	@Test
+	public void foldInInteractions_ForUserNotInModel_ServesScoredList() {
+		userRepository.save(new User("USER-NEW", "newuser", "password123"));
+
+		RecommendationResponse folded = recommendationService.foldInInteractions("USER-NEW", List.of(
+				new InteractionRequest("B000000001", 5.0f), new InteractionRequest("B000000002", 1.0f), new InteractionRequest("B999999999", 4.0f)));
+		recommendationCache.invalidateUser("USER-NEW");
+		RecommendationResponse response = recommendationService.getUserRecommendation("USER-NEW");
+
+		assertEquals(RecommendationResponse.SOURCE_MODEL, folded.getSource());
+		assertEquals(5, folded.getProductList().size());
+		assertEquals(RecommendationResponse.SOURCE_MODEL, response.getSource());
+		assertEquals(folded.getProductList(), response.getProductList());
+		assertTrue(scoringEngine.hasFoldedVector("USER-NEW"));
+	}
+
+	@Test
+	public void foldInInteractions_WithOnlyUnknownProducts_ThrowsException() {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, ()->
+				recommendationService.foldInInteractions("USER-000000003", List.of(new InteractionRequest("B999999999", 4.0f))));
+
+		assertEquals("None of the rated products is known to the model", e.getMessage());
+	}
+
+	@Test
+	public void recommend_WhenUserNotInModel_ReturnsNull() {
+		assertNull(scoringEngine.recommend("USER-UNKNOWN"));
+	}
+
+	private static Path writeModel() {
+		try {
+			Path path = Files.createTempFile("factors", ".bin");
+			path.toFile().deleteOnExit();
+			FactorModelFiles.writeRandom(path, 10, 200, 8, 42);
+			return path;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package qyang.com.recommendation_service.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import qyang.com.recommendation_service.dtos.EventRequest;
+import qyang.com.recommendation_service.exceptions.EventBufferFullException;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// its own context: a tiny buffer whose writer only wakes up hourly, so it fills up
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+		"recommendation.events.buffer-size=4",
+		"recommendation.events.flush-interval=PT1H",
+		"recommendation.events.batch.max-size=3"
+})
+@SpringBootTest
+public class EventServiceTest {
+	@Autowired
+	private EventService eventService;
+
+	@Test
+	public void record_WhenBufferFull_RejectsWholeBatch() {
+		assertEquals(3, eventService.record(events(3)));
+
+		assertThrows(EventBufferFullException.class, () -> eventService.record(events(2)));
+		assertEquals(1, eventService.record(events(1)));
+		assertThrows(EventBufferFullException.class, () -> eventService.record(events(1)));
+	}
+
+	@Test
+	public void record_OverMaxBatchSize_ThrowsException() {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> eventService.record(events(4)));
+
+		assertEquals("At most 3 events are allowed per batch", e.getMessage());
+	}
+
+	@Test
+	public void record_WithoutParentAsin_ThrowsException() {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () ->
+				eventService.record(List.of(new EventRequest("USER-1", null, "view"))));
+
+		assertEquals("parentAsin is required", e.getMessage());
+	}
+
+	@Test
+	public void record_WithParentAsinLongerThanColumn_ThrowsException() {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () ->
+				eventService.record(List.of(new EventRequest("USER-1", "B".repeat(51), "view"))));
+
+		assertEquals("parentAsin must be at most 50 characters", e.getMessage());
+		assertThrows(IllegalArgumentException.class, () ->
+				eventService.record(List.of(new EventRequest("U".repeat(101), "B001TEST", "view"))));
+	}
+
+	private static List<EventRequest> events(int count) {
+		return Collections.nCopies(count, new EventRequest("USER-1", "B001TEST", "click"));
+	}
+}
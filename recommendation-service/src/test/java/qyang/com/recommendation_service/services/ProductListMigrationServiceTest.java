@@ -0,0 +1,183 @@
+package qyang.com.recommendation_service.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.ProductListMigrationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.index.ProductDictionary;
+import qyang.com.recommendation_service.models.CategoryRecommendation;
+import qyang.com.recommendation_service.models.CategoryRecommendationId;
+import qyang.com.recommendation_service.models.ProductListCodec;
+import qyang.com.recommendation_service.models.ProductListLookup;
+import qyang.com.recommendation_service.models.Recommendation;
+import qyang.com.recommendation_service.models.User;
+import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
+import qyang.com.recommendation_service.repositories.ProductDictionaryRepository;
+import qyang.com.recommendation_service.repositories.RecommendationRepository;
+import qyang.com.recommendation_service.repositories.UserRepository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(locations = "classpath:application-test.properties", properties = "recommendation.storage.format=binary")
+@SpringBootTest
+@Transactional
+public class ProductListMigrationServiceTest {
+	private static final String PRODUCT_LIST_JSON = "[\"B001TEST\",\"B002TEST\",\"B003TEST\"]";
+
+	@Autowired
+	private ProductListMigrationService productListMigrationService;
+
+	@Autowired
+	private RecommendationService recommendationService;
+
+	@Autowired
+	private RecommendationRepository recommendationRepository;
+
+	@Autowired
+	private CategoryRecommendationRepository categoryRecommendationRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ProductDictionary productDictionary;
+
+	@Autowired
+	private ProductDictionaryRepository productDictionaryRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private User testUser;
+
+	@BeforeEach
+	public void setUp() {
+		recommendationRepository.deleteAll();
+		categoryRecommendationRepository.deleteAll();
+		userRepository.deleteAll();
+
+		testUser = userRepository.save(new User("testuser", "password123"));
+		recommendationRepository.save(new Recommendation(testUser.getUserId(), PRODUCT_LIST_JSON));
+		categoryRecommendationRepository.save(new CategoryRecommendation(
+				new CategoryRecommendationId(testUser.getUserId(), "All_Beauty"), PRODUCT_LIST_JSON));
+	}
+
+	@Test
+	public void migrateToBinary_EncodesEveryRow() {
+		ProductListMigrationResponse response = productListMigrationService.migrateToBinary(false);
+
+		assertEquals(1, response.getRecommendationsMigrated());
+		assertEquals(1, response.getCategoryRecommendationsMigrated());
+		assertTrue(response.getDictionarySize() >= 3);
+
+		byte[] encoded = recommendationRepository.findById(testUser.getUserId()).orElseThrow().getProductListBin();
+		assertNotNull(encoded);
+		assertTrue(encoded.length < PRODUCT_LIST_JSON.length() / 4);
+	}
+
+	@Test
+	public void getRecommendations_InBinaryFormat_DecodesMigratedColumn() {
+		productListMigrationService.migrateToBinary(false);
+		recommendationRepository.flush();
+		categoryRecommendationRepository.flush();
+		// the JSON columns no longer match, so a correct answer can only come from the binary ones
+		jdbcTemplate.update("UPDATE recommendations SET product_list = '[]' WHERE user_id = ?", testUser.getUserId());
+		jdbcTemplate.update("UPDATE category_recommendations SET product_list = '[]' WHERE user_id = ?", testUser.getUserId());
+
+		RecommendationResponse response = recommendationService.getUserRecommendation(testUser.getUserId());
+		CategoryRecommendationResponse categoryResponse = recommendationService.getCategoryRecommendation(testUser.getUserId(), "All_Beauty");
+
+		assertEquals(Arrays.asList("B001TEST", "B002TEST", "B003TEST"), response.getProductList());
+		assertEquals(Arrays.asList("B001TEST", "B002TEST", "B003TEST"), categoryResponse.getProductList());
+	}
+
+	@Test
+	public void lookups_ReadOnlyTheColumnOfTheirFormat() {
+		productListMigrationService.migrateToBinary(false);
+		recommendationRepository.flush();
+
+		ProductListLookup binary = recommendationRepository.lookupBinaryByUserId(testUser.getUserId()).orElseThrow();
+		ProductListLookup json = recommendationRepository.lookupJsonByUserId(testUser.getUserId()).orElseThrow();
+
+		assertNotNull(binary.getProductListBin());
+		assertNull(binary.getProductList());
+		assertEquals(PRODUCT_LIST_JSON, json.getProductList());
+		assertNull(json.getProductListBin());
+	}
+
+	@Test
+	public void migrateToBinary_WithClearJson_ServesFromBinaryCopy() {
+		ProductListMigrationResponse response = productListMigrationService.migrateToBinary(true);
+
+		assertEquals(2, response.getProductListsCleared());
+		assertNull(jdbcTemplate.queryForObject("SELECT product_list FROM recommendations WHERE user_id = ?", String.class, testUser.getUserId()));
+		assertNull(jdbcTemplate.queryForObject("SELECT product_list FROM category_recommendations WHERE user_id = ?", String.class, testUser.getUserId()));
+		assertEquals(List.of("B001TEST", "B002TEST", "B003TEST"), recommendationService.getUserRecommendation(testUser.getUserId()).getProductList());
+		// switching back to JSON still finds the list
+		assertNotNull(recommendationRepository.lookupJsonByUserId(testUser.getUserId()).orElseThrow().getProductListBin());
+		assertNotNull(categoryRecommendationRepository.lookupJsonByUserIdAndCategory(testUser.getUserId(), "All_Beauty").orElseThrow().getProductListBin());
+	}
+
+	@Test
+	public void saveRecommendation_WithNewProductList_DropsStaleBinaryCopy() {
+		productListMigrationService.migrateToBinary(false);
+		recommendationRepository.flush();
+
+		Recommendation recommendation = recommendationRepository.findById(testUser.getUserId()).orElseThrow();
+		recommendation.setProductList("[\"B004TEST\"]");
+		recommendationRepository.saveAndFlush(recommendation);
+
+		assertNull(recommendationRepository.findById(testUser.getUserId()).orElseThrow().getProductListBin());
+		assertEquals(List.of("B004TEST"), recommendationService.getUserRecommendation(testUser.getUserId()).getProductList());
+	}
+
+	@Test
+	public void getRecommendations_InBinaryFormat_FallsBackToJsonForUnmigratedRows() {
+		RecommendationResponse response = recommendationService.getUserRecommendation(testUser.getUserId());
+
+		assertEquals(List.of("B001TEST", "B002TEST", "B003TEST"), response.getProductList());
+	}
+
+	@Test
+	public void productDictionary_WhenAnotherInstanceAssignedSameAsin_UsesItsIndex() {
+		String asin = "B0" + UUID.randomUUID().toString().substring(0, 8);
+		// committed behind this instance's back, as another pod would
+		TransactionTemplate otherInstance = new TransactionTemplate(transactionManager);
+		otherInstance.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		int assigned = otherInstance.execute(status -> {
+			Integer max = productDictionaryRepository.findMaxProductIndex();
+			int index = max == null ? 0 : max + 1;
+			productDictionaryRepository.insert(index, asin);
+			return index;
+		});
+		assertEquals(-1, productDictionary.indexOf(asin));
+
+		assertEquals(assigned, productDictionary.getOrAssign(asin));
+		assertEquals(asin, productDictionary.asinOf(assigned));
+	}
+
+	@Test
+	public void binaryCodec_RoundTripsLargeIndexes() {
+		int[] productIndexes = {0, 127, 128, 16_383, 16_384, Integer.MAX_VALUE};
+
+		byte[] encoded = ProductListCodec.encodeBinary(productIndexes);
+
+		assertArrayEquals(productIndexes, ProductListCodec.decodeBinaryIndexes(encoded));
+	}
+}
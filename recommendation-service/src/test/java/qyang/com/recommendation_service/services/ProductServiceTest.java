@@ -10,6 +10,7 @@ import qyang.com.recommendation_service.dtos.ProductResponse;
 import qyang.com.recommendation_service.models.Product;
 import qyang.com.recommendation_service.repositories.ProductRepository;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -75,4 +76,15 @@ public class ProductServiceTest {
 		assertTrue(responses.isEmpty());
 	}
 
+	@Test
+	public void findByParentAsins_ReturnsProductsInRequestedOrder() {
+		productRepository.save(new Product("B00TEST456", "Other Product", 9.99f, 4.0f, 10, "All_Beauty"));
+
+		List<ProductResponse> responses = productService.findByParentAsins(Arrays.asList("B00TEST456", "notexistent", "B00TEST123"));
+
+		assertEquals(2, responses.size());
+		assertEquals("B00TEST456", responses.get(0).getParentAsin());
+		assertEquals("B00TEST123", responses.get(1).getParentAsin());
+	}
+
 }
@@ -2,23 +2,38 @@ package qyang.com.recommendation_service.services;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.cache.RecommendationCache;
+import qyang.com.recommendation_service.dtos.BatchRecommendationResponse;
 import qyang.com.recommendation_service.dtos.CategoryRecommendationResponse;
+import qyang.com.recommendation_service.dtos.EventRequest;
 import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
 import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.KnownUserFilter;
+import qyang.com.recommendation_service.index.ProductDictionary;
+import qyang.com.recommendation_service.index.ProductFilter;
+import qyang.com.recommendation_service.index.SeenItemFilter;
 import qyang.com.recommendation_service.models.CategoryRecommendation;
 import qyang.com.recommendation_service.models.CategoryRecommendationId;
+import qyang.com.recommendation_service.models.Product;
 import qyang.com.recommendation_service.models.Recommendation;
 import qyang.com.recommendation_service.models.User;
 import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
+import qyang.com.recommendation_service.repositories.ProductRepository;
 import qyang.com.recommendation_service.repositories.RecommendationRepository;
 import qyang.com.recommendation_service.repositories.UserRepository;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -40,9 +55,33 @@ public class RecommendationServiceTest {
 	@Autowired
 	private UserRepository userRepository;
 
+	@Autowired
+	private RecommendationCache recommendationCache;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	@Autowired
+	private KnownUserFilter knownUserFilter;
+
+	@Autowired
+	private SeenItemFilter seenItemFilter;
+
+	@Autowired
+	private EventService eventService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private ProductDictionary productDictionary;
+
 	private User testUser;
 	private Recommendation testRecommendation;
 	private CategoryRecommendation testCategoryRecommendation;
@@ -87,6 +126,15 @@ public class RecommendationServiceTest {
 				recommendationService.getUserRecommendation("nonexistent"));
 	}
 
+	@Test
+	public void getUserRecommendations_WhenUserHasNoRecommendation_ThrowsException() {
+		User userWithoutRecommendation = userRepository.save(new User("norecs", "password123"));
+
+		ResourceNotFoundException e = assertThrows(ResourceNotFoundException.class, ()->
+				recommendationService.getUserRecommendation(userWithoutRecommendation.getUserId()));
+		assertEquals("No recommendation found for user: " + userWithoutRecommendation.getUserId(), e.getMessage());
+	}
+
 	@Test
 	public void getCategoryRecommendations_WhenExists_ReturnsRecommendations() {
 		CategoryRecommendationResponse response = recommendationService.getCategoryRecommendation(testUser.getUserId(), "All_Beauty");
@@ -110,4 +158,209 @@ public class RecommendationServiceTest {
 		assertThrows(ResourceNotFoundException.class, ()->
 				recommendationService.getCategoryRecommendation(testUser.getUserId(), "nonexistent"));
 	}
+
+	@Test
+	public void getUserRecommendations_WhenCached_DoesNotHitRepository() {
+		RecommendationResponse first = recommendationService.getUserRecommendation(testUser.getUserId());
+		recommendationRepository.deleteById(testUser.getUserId());
+
+		RecommendationResponse second = recommendationService.getUserRecommendation(testUser.getUserId());
+
+		assertSame(first, second);
+	}
+
+	@Test
+	public void getUserRecommendations_AfterInvalidation_ReloadsFromRepository() {
+		recommendationService.getUserRecommendation(testUser.getUserId());
+		recommendationRepository.deleteById(testUser.getUserId());
+		recommendationCache.invalidateUser(testUser.getUserId());
+
+		assertThrows(ResourceNotFoundException.class, ()->
+				recommendationService.getUserRecommendation(testUser.getUserId()));
+	}
+
+	@Test
+	public void getCategoryRecommendations_WhenCached_DoesNotHitRepository() {
+		CategoryRecommendationId categoryId = new CategoryRecommendationId(testUser.getUserId(), "All_Beauty");
+		CategoryRecommendationResponse first = recommendationService.getCategoryRecommendation(testUser.getUserId(), "All_Beauty");
+		categoryRecommendationRepository.deleteById(categoryId);
+
+		CategoryRecommendationResponse second = recommendationService.getCategoryRecommendation(testUser.getUserId(), "All_Beauty");
+
+		assertSame(first, second);
+	}
+
+	@Test
+	public void saveRecommendation_WithMalformedProductList_ThrowsException() {
+		Recommendation malformed = new Recommendation(testUser.getUserId(), "{\"B001TEST\": 1}");
+
+		assertThrows(InvalidDataAccessApiUsageException.class, ()->
+				recommendationRepository.saveAndFlush(malformed));
+	}
+
+	@Test
+	public void recommendationResponse_FromStoredJson_SerializesVerbatim() throws JsonProcessingException {
+		RecommendationResponse response = RecommendationResponse.ofJson("USER-1", "[\"B001TEST\",\"B002TEST\"]");
+
+		assertEquals("{\"userId\":\"USER-1\",\"source\":\"personalized\",\"productList\":[\"B001TEST\",\"B002TEST\"]}", objectMapper.writeValueAsString(response));
+		assertEquals(Arrays.asList("B001TEST", "B002TEST"), response.getProductList());
+	}
+
+	@Test
+	public void recommendationResponse_FromStoredJson_SliceStopsAfterRequestedElements() throws JsonProcessingException {
+		// the value after the slice is not valid JSON, so reading past it would fail
+		RecommendationResponse response = RecommendationResponse.ofJson("USER-1", "[\"B001TEST\",\"B002TEST\",\"B003TEST\", not json");
+
+		RecommendationResponse slice = response.slice(1, 1);
+
+		assertEquals(List.of("B002TEST"), slice.getProductList());
+		assertEquals("{\"userId\":\"USER-1\",\"source\":\"personalized\",\"productList\":[\"B002TEST\"]}", objectMapper.writeValueAsString(slice));
+	}
+
+	@Test
+	public void getBatchRecommendations_MixesFoundAndNotFoundUsers() {
+		BatchRecommendationResponse response = recommendationService.getUserRecommendations(
+				Arrays.asList(testUser.getUserId(), "nonexistent", testUser.getUserId()));
+
+		assertEquals(1, response.getRecommendations().size());
+		assertEquals(2, response.getRecommendations().get(testUser.getUserId()).getProductList().size());
+		assertEquals("User not found: nonexistent", response.getNotFound().get("nonexistent"));
+	}
+
+	@Test
+	public void getUserRecommendation_RecordsExperimentMetricsForVariant() {
+		double hits = experimentCount("recommendation.experiment.cache", "result", "hit");
+		double misses = experimentCount("recommendation.experiment.cache", "result", "miss");
+		double errors = experimentCount("recommendation.experiment.errors", "exception", "ResourceNotFoundException");
+		long timed = meterRegistry.get("recommendation.experiment.latency").tag("variant", "default").timer().count();
+
+		recommendationService.getUserRecommendation(testUser.getUserId());
+		recommendationService.getUserRecommendation(testUser.getUserId());
+		assertThrows(ResourceNotFoundException.class, () -> recommendationService.getUserRecommendation("USER-missing"));
+
+		assertEquals(hits + 1, experimentCount("recommendation.experiment.cache", "result", "hit"));
+		assertEquals(misses + 2, experimentCount("recommendation.experiment.cache", "result", "miss"));
+		// an unknown user is not a failure of the variant's source
+		assertEquals(errors, experimentCount("recommendation.experiment.errors", "exception", "ResourceNotFoundException"));
+		assertEquals(timed + 3, meterRegistry.get("recommendation.experiment.latency").tag("variant", "default").timer().count());
+	}
+
+	@Test
+	public void getBatchRecommendations_OverMaxSize_ThrowsException() {
+		List<String> userIds = new ArrayList<>();
+		for (int i = 0; i <= 500; i++) {
+			userIds.add("USER-" + i);
+		}
+
+		assertThrows(IllegalArgumentException.class, ()->
+				recommendationService.getUserRecommendations(userIds));
+	}
+
+	@Test
+	public void knownUserFilter_AfterUserSaved_AdmitsUser() {
+		User newUser = userRepository.save(new User("newuser", "password123"));
+
+		assertTrue(knownUserFilter.getStats().isReady());
+		assertTrue(knownUserFilter.mightExist(newUser.getUserId()));
+	}
+
+	@Test
+	public void knownUserFilter_AfterRebuild_KeepsExistingUsers() {
+		knownUserFilter.rebuild();
+
+		assertTrue(knownUserFilter.mightExist(testUser.getUserId()));
+		assertFalse(knownUserFilter.mightExist("nonexistent"));
+		assertThrows(ResourceNotFoundException.class, ()->
+				recommendationService.getUserRecommendation("nonexistent"));
+	}
+
+	@Test
+	public void knownUserFilter_WithUserRegisteredOnAnotherInstance_AdmitsUserAfterCatchUp() {
+		knownUserFilter.rebuild();
+		// inserted without JPA, so only the table knows about the user, as on another replica
+		jdbcTemplate.update("INSERT INTO users (user_id, username, password) VALUES ('USER-REPLICA', 'replicauser', 'password123')");
+
+		assertFalse(knownUserFilter.mightExist("USER-REPLICA"));
+
+		knownUserFilter.catchUp();
+
+		assertTrue(knownUserFilter.mightExist("USER-REPLICA"));
+		assertFalse(knownUserFilter.mightExist("nonexistent"));
+	}
+
+	@Test
+	public void getAllCategoryRecommendations_ReturnsEveryCategoryAndCachesThem() {
+		categoryRecommendationRepository.save(new CategoryRecommendation(
+				new CategoryRecommendationId(testUser.getUserId(), "Books"), "[\"B003TEST\"]"));
+
+		UserCategoryRecommendationsResponse response = recommendationService.getAllCategoryRecommendations(testUser.getUserId());
+
+		assertEquals(2, response.getCategories().size());
+		assertEquals("All_Beauty", response.getCategories().get(0).getCategory());
+		assertEquals(List.of("B003TEST"), response.getCategories().get(1).getProductList());
+		assertSame(response.getCategories().get(1),
+				recommendationService.getCategoryRecommendation(testUser.getUserId(), "Books"));
+	}
+
+	@Test
+	public void getAllCategoryRecommendations_WhenUserHasNoCategories_ReturnsEmptyList() {
+		User userWithoutRecommendation = userRepository.save(new User("norecs", "password123"));
+
+		UserCategoryRecommendationsResponse response = recommendationService.getAllCategoryRecommendations(userWithoutRecommendation.getUserId());
+
+		assertTrue(response.getCategories().isEmpty());
+	}
+
+	@Test
+	public void getAllCategoryRecommendations_WhenUserNotExists_ThrowsException() {
+		assertThrows(ResourceNotFoundException.class, ()->
+				recommendationService.getAllCategoryRecommendations("nonexistent"));
+	}
+
+	@Test
+	public void getUserRecommendation_AfterPurchaseEvent_DropsPurchasedProduct() {
+		ProductFilter noFilter = new ProductFilter(null, null, null, null);
+		assertEquals(List.of("B001TEST", "B002TEST"), recommendationService.getUserRecommendation(testUser.getUserId(), false, noFilter, false, false, 0, Integer.MAX_VALUE).getProductList());
+
+		productRepository.save(new Product("B001TEST", "Test One", 10.0f, 4.5f, 20, "All_Beauty"));
+		eventService.record(List.of(new EventRequest(testUser.getUserId(), "B001TEST", "purchase")));
+		seenItemFilter.assignPending();
+
+		assertEquals(List.of("B002TEST"), recommendationService.getUserRecommendation(testUser.getUserId(), false, noFilter, false, false, 0, Integer.MAX_VALUE).getProductList());
+		assertEquals(List.of("B002TEST"), recommendationService.getCategoryRecommendation(testUser.getUserId(), "All_Beauty", false, 0, Integer.MAX_VALUE).getProductList());
+		assertEquals(List.of("B002TEST"), recommendationService.getUserRecommendations(List.of(testUser.getUserId())).getRecommendations().get(testUser.getUserId()).getProductList());
+		// the cached list stays whole
+		assertEquals(2, recommendationService.getUserRecommendation(testUser.getUserId()).getProductList().size());
+	}
+
+	@Test
+	public void seenItemFilter_Refresh_LoadsPurchasesFromEventsTable() {
+		productRepository.save(new Product("B002TEST", "Test Two", 10.0f, 4.5f, 20, "All_Beauty"));
+		productRepository.flush();
+		jdbcTemplate.update("INSERT INTO events (user_id, parent_asin, event_type, occurred_at) VALUES (?, ?, 'PURCHASE', CURRENT_TIMESTAMP)",
+				testUser.getUserId(), "B002TEST");
+		jdbcTemplate.update("INSERT INTO events (user_id, parent_asin, event_type, occurred_at) VALUES (?, ?, 'VIEW', CURRENT_TIMESTAMP)",
+				testUser.getUserId(), "B001TEST");
+		seenItemFilter.refresh();
+
+		assertTrue(seenItemFilter.hasSeen(testUser.getUserId(), "B002TEST"));
+		assertFalse(seenItemFilter.hasSeen(testUser.getUserId(), "B001TEST"));
+		assertEquals(List.of("B001TEST"), recommendationService.getUserRecommendation(testUser.getUserId(), false, new ProductFilter(null, null, null, null), false, false, 0, 1).getProductList());
+	}
+
+	@Test
+	public void seenItemFilter_WithProductMissingFromCatalog_AssignsNoIndex() {
+		String asin = "B0MADEUP" + testUser.getUserId();
+
+		eventService.record(List.of(new EventRequest(testUser.getUserId(), asin, "purchase")));
+		seenItemFilter.assignPending();
+
+		assertEquals(-1, productDictionary.indexOf(asin));
+		assertFalse(seenItemFilter.hasSeen(testUser.getUserId(), asin));
+	}
+
+	private double experimentCount(String name, String tag, String value) {
+		Counter counter = meterRegistry.find(name).tag("variant", "default").tag(tag, value).counter();
+		return counter == null ? 0 : counter.count();
+	}
 }
@@ -0,0 +1,206 @@
+package qyang.com.recommendation_service.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+import qyang.com.recommendation_service.cache.RecommendationCache;
+import qyang.com.recommendation_service.dtos.BatchRecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationResponse;
+import qyang.com.recommendation_service.dtos.RecommendationSnapshotResponse;
+import qyang.com.recommendation_service.dtos.RecommendationSnapshotStatusResponse;
+import qyang.com.recommendation_service.dtos.UserCategoryRecommendationsResponse;
+import qyang.com.recommendation_service.exceptions.RecommendationNotFoundException;
+import qyang.com.recommendation_service.exceptions.ResourceNotFoundException;
+import qyang.com.recommendation_service.index.KnownUserFilter;
+import qyang.com.recommendation_service.models.CategoryRecommendation;
+import qyang.com.recommendation_service.models.CategoryRecommendationId;
+import qyang.com.recommendation_service.models.Recommendation;
+import qyang.com.recommendation_service.models.User;
+import qyang.com.recommendation_service.repositories.CategoryRecommendationRepository;
+import qyang.com.recommendation_service.repositories.RecommendationRepository;
+import qyang.com.recommendation_service.repositories.UserRepository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+		"recommendation.source=snapshot",
+		"recommendation.snapshot.directory=${java.io.tmpdir}/recommendation-service-test/snapshots"
+})
+@SpringBootTest
+@Transactional
+public class RecommendationSnapshotServiceTest {
+	private static final String PRODUCT_LIST_JSON = "[\"B001TEST\",\"B002TEST\"]";
+
+	@Autowired
+	private RecommendationSnapshotService recommendationSnapshotService;
+
+	@Autowired
+	private RecommendationService recommendationService;
+
+	@Autowired
+	private RecommendationRepository recommendationRepository;
+
+	@Autowired
+	private CategoryRecommendationRepository categoryRecommendationRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private KnownUserFilter knownUserFilter;
+
+	@Autowired
+	private RecommendationCache recommendationCache;
+
+	private User testUser;
+	private User userWithoutRecommendation;
+
+	@BeforeEach
+	public void setUp() {
+		recommendationRepository.deleteAll();
+		categoryRecommendationRepository.deleteAll();
+		userRepository.deleteAll();
+
+		testUser = userRepository.save(new User("testuser", "password123"));
+		userWithoutRecommendation = userRepository.save(new User("norecs", "password123"));
+		recommendationRepository.save(new Recommendation(testUser.getUserId(), PRODUCT_LIST_JSON));
+		categoryRecommendationRepository.save(new CategoryRecommendation(
+				new CategoryRecommendationId(testUser.getUserId(), "All_Beauty"), PRODUCT_LIST_JSON));
+	}
+
+	@Test
+	public void export_WritesEveryUser() {
+		RecommendationSnapshotResponse response = recommendationSnapshotService.export();
+
+		assertEquals(2, response.getUsers());
+		assertEquals(1, response.getCategoryRecommendations());
+		assertEquals(2, response.getProducts());
+	}
+
+	@Test
+	public void getRecommendations_FromSnapshot_IgnoreLaterDatabaseChanges() {
+		recommendationSnapshotService.activate(recommendationSnapshotService.export().getVersion());
+		// a correct answer after this can only come from the snapshot
+		recommendationRepository.deleteAll();
+		categoryRecommendationRepository.deleteAll();
+		recommendationRepository.flush();
+		categoryRecommendationRepository.flush();
+
+		UserCategoryRecommendationsResponse categories = recommendationService.getAllCategoryRecommendations(testUser.getUserId());
+
+		assertEquals(Arrays.asList("B001TEST", "B002TEST"), recommendationService.getUserRecommendation(testUser.getUserId()).getProductList());
+		assertEquals(List.of("B001TEST", "B002TEST"), categories.getCategories().get(0).getProductList());
+		assertEquals("All_Beauty", categories.getCategories().get(0).getCategory());
+	}
+
+	@Test
+	public void getRecommendations_FromSnapshot_KeepNotFoundMessages() {
+		recommendationSnapshotService.activate(recommendationSnapshotService.export().getVersion());
+
+		ResourceNotFoundException e = assertThrows(ResourceNotFoundException.class, ()->
+				recommendationService.getUserRecommendation(userWithoutRecommendation.getUserId()));
+		assertEquals("No recommendation found for user: " + userWithoutRecommendation.getUserId(), e.getMessage());
+		assertThrows(ResourceNotFoundException.class, ()->
+				recommendationService.getCategoryRecommendation(testUser.getUserId(), "Books"));
+
+		BatchRecommendationResponse batch = recommendationService.getUserRecommendations(
+				Arrays.asList(testUser.getUserId(), "nonexistent"));
+		assertEquals(1, batch.getRecommendations().size());
+		assertEquals("User not found: nonexistent", batch.getNotFound().get("nonexistent"));
+	}
+
+	@Test
+	public void getRecommendations_ForUserCreatedAfterExport_AreNotFoundAsRecommendations() {
+		recommendationSnapshotService.activate(recommendationSnapshotService.export().getVersion());
+		User newUser = userRepository.saveAndFlush(new User("newuser", "password123"));
+
+		assertThrows(RecommendationNotFoundException.class, ()->
+				recommendationService.getUserRecommendation(newUser.getUserId()));
+		assertThrows(RecommendationNotFoundException.class, ()->
+				recommendationService.getCategoryRecommendation(newUser.getUserId(), "All_Beauty"));
+		assertTrue(recommendationService.getAllCategoryRecommendations(newUser.getUserId()).getCategories().isEmpty());
+
+		BatchRecommendationResponse batch = recommendationService.getUserRecommendations(
+				Arrays.asList(newUser.getUserId(), "nonexistent"));
+		assertEquals("No recommendation found for user: " + newUser.getUserId(), batch.getNotFound().get(newUser.getUserId()));
+		assertEquals("User not found: nonexistent", batch.getNotFound().get("nonexistent"));
+	}
+
+	@Test
+	public void getRecommendation_ForIdAdmittedByKnownUserFilter_DoesNotAskDatabase() {
+		recommendationSnapshotService.activate(recommendationSnapshotService.export().getVersion());
+		// stands in for a Bloom filter false positive: only a database lookup could tell it is not a user
+		knownUserFilter.add("USER-GHOST");
+
+		assertThrows(RecommendationNotFoundException.class, ()->
+				recommendationService.getUserRecommendation("USER-GHOST"));
+	}
+
+	@Test
+	public void activate_RefreshesCachedResponsesAndRollbackRestoresThem() {
+		String oldVersion = recommendationSnapshotService.export().getVersion();
+		recommendationSnapshotService.activate(oldVersion);
+		assertEquals(List.of("B001TEST", "B002TEST"), recommendationService.getUserRecommendation(testUser.getUserId()).getProductList());
+
+		Recommendation recommendation = recommendationRepository.findById(testUser.getUserId()).orElseThrow();
+		recommendation.setProductList("[\"B003TEST\"]");
+		recommendationRepository.saveAndFlush(recommendation);
+		String newVersion = recommendationSnapshotService.export().getVersion();
+		RecommendationSnapshotStatusResponse status = recommendationSnapshotService.activate(newVersion);
+
+		assertEquals(newVersion, status.getActive().getVersion());
+		assertEquals(oldVersion, status.getPrevious().getVersion());
+		// served from the refreshed cache entry, not a stale one
+		awaitCachedProductList(testUser.getUserId(), List.of("B003TEST"));
+
+		status = recommendationSnapshotService.rollback();
+
+		assertEquals(oldVersion, status.getActive().getVersion());
+		awaitCachedProductList(testUser.getUserId(), List.of("B001TEST", "B002TEST"));
+	}
+
+	@Test
+	public void activate_KeepsCachedFoldInResponses() {
+		String version = recommendationSnapshotService.export().getVersion();
+		recommendationSnapshotService.activate(version);
+		assertEquals(List.of("B001TEST", "B002TEST"), recommendationService.getUserRecommendation(testUser.getUserId()).getProductList());
+		RecommendationResponse folded = new RecommendationResponse(userWithoutRecommendation.getUserId(), List.of("B009TEST"));
+		folded.setSource(RecommendationResponse.SOURCE_MODEL);
+		recommendationCache.putUserRecommendation(folded);
+
+		Recommendation recommendation = recommendationRepository.findById(testUser.getUserId()).orElseThrow();
+		recommendation.setProductList("[\"B003TEST\"]");
+		recommendationRepository.saveAndFlush(recommendation);
+		recommendationSnapshotService.activate(recommendationSnapshotService.export().getVersion());
+		awaitCachedProductList(testUser.getUserId(), List.of("B003TEST"));
+
+		assertSame(folded, recommendationCache.getUserRecommendation(userWithoutRecommendation.getUserId()));
+	}
+
+	// the cache is refreshed on the loader thread after a swap
+	private void awaitCachedProductList(String userId, List<String> expected) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		RecommendationResponse cached = recommendationCache.getUserRecommendation(userId);
+		while ((cached == null || !expected.equals(cached.getProductList())) && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+			cached = recommendationCache.getUserRecommendation(userId);
+		}
+		assertNotNull(cached);
+		assertEquals(expected, cached.getProductList());
+	}
+
+	@Test
+	public void activate_WhenVersionUnknown_ThrowsException() {
+		assertThrows(ResourceNotFoundException.class, ()->
+				recommendationSnapshotService.activate("recommendations-00000000000000000"));
+		assertThrows(ResourceNotFoundException.class, ()->
+				recommendationSnapshotService.activate("../../etc/passwd"));
+	}
+}
@@ -0,0 +1,82 @@
+package qyang.com.recommendation_service.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecommendationSnapshotTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void open_AfterWrite_ServesEveryUser() throws IOException {
+		Path path = directory.resolve("recommendations.snapshot");
+		try (RecommendationSnapshotWriter writer = new RecommendationSnapshotWriter(path)) {
+			for (int i = 0; i < 5_000; i++) {
+				TreeMap<String, List<String>> categories = new TreeMap<>();
+				if (i % 2 == 0) {
+					categories.put("Books", List.of("B00" + i));
+					categories.put("All_Beauty", List.of("B00" + (i + 1), "B00" + (i + 2)));
+				}
+				writer.addUser("USER-" + i, i % 3 == 0 ? null : List.of("B00" + i, "B00" + (i + 1)), categories);
+			}
+			writer.finish();
+		}
+
+		RecommendationSnapshot snapshot = RecommendationSnapshot.open(path);
+
+		assertTrue(snapshot.verify());
+		assertEquals(5_000, snapshot.getUserCount());
+		assertEquals(5_000, snapshot.getCategoryCount());
+		for (int i = 0; i < 5_000; i++) {
+			RecommendationSnapshot.UserRecord user = snapshot.findUser("USER-" + i).orElseThrow();
+			assertEquals(i % 3 != 0, user.hasRecommendation());
+			if (i % 3 != 0) {
+				assertEquals(List.of("B00" + i, "B00" + (i + 1)), user.getProductList());
+			}
+			if (i % 2 == 0) {
+				assertEquals(List.of("B00" + i), user.getCategoryProductList("Books"));
+				assertEquals(List.of("All_Beauty", "Books"), List.copyOf(user.getCategoryProductLists().keySet()));
+			} else {
+				assertNull(user.getCategoryProductList("Books"));
+				assertEquals(Map.of(), user.getCategoryProductLists());
+			}
+		}
+		assertTrue(snapshot.findUser("nonexistent").isEmpty());
+	}
+
+	@Test
+	public void verify_WhenFileCorrupted_ReturnsFalse() throws IOException {
+		Path path = directory.resolve("recommendations.snapshot");
+		try (RecommendationSnapshotWriter writer = new RecommendationSnapshotWriter(path)) {
+			writer.addUser("USER-1", List.of("B001TEST"), new TreeMap<>());
+			writer.finish();
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{'X'}), RecommendationSnapshot.HEADER_SIZE + 3);
+		}
+
+		assertFalse(RecommendationSnapshot.open(path).verify());
+	}
+
+	@Test
+	public void open_WhenNotASnapshot_ThrowsException() throws IOException {
+		Path path = directory.resolve("other.bin");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(128));
+		}
+
+		assertThrows(IllegalStateException.class, ()->
+				RecommendationSnapshot.open(path));
+	}
+}
@@ -0,0 +1,75 @@
+package qyang.com.recommendation_service.sources;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecommendationExperimentTest {
+	@Test
+	public void variantOf_WithoutVariants_ReturnsDefaultVariant() {
+		RecommendationExperiment experiment = experiment("default", List.of());
+
+		RecommendationExperiment.Variant variant = experiment.variantOf("USER-00000001");
+
+		assertEquals(RecommendationExperiment.DEFAULT_VARIANT, variant.getName());
+		assertEquals(RecommendationSourceType.DATABASE, variant.getSourceType());
+		assertEquals(1, experiment.getVariants().size());
+	}
+
+	@Test
+	public void variantOf_SplitsUsersByWeightAndKeepsThemInPlace() {
+		RecommendationExperiment experiment = experiment("ranking", List.of("control:database:90", "scored:model:10"));
+		RecommendationExperiment again = experiment("ranking", List.of("control:database:90", "scored:model:10"));
+
+		int scored = 0;
+		for (int i = 0; i < 10000; i++) {
+			String userId = String.format("USER-%08d", i);
+			RecommendationExperiment.Variant variant = experiment.variantOf(userId);
+			assertEquals(variant.getName(), again.variantOf(userId).getName());
+			if (variant.getSourceType() == RecommendationSourceType.MODEL) {
+				scored++;
+			}
+		}
+		assertTrue(scored > 800 && scored < 1200, "scored users: " + scored);
+	}
+
+	@Test
+	public void variantOf_AfterRenamingExperiment_ReshufflesUsers() {
+		RecommendationExperiment first = experiment("first", List.of("a:database:1", "b:popularity:1"));
+		RecommendationExperiment second = experiment("second", List.of("a:database:1", "b:popularity:1"));
+
+		int moved = 0;
+		for (int i = 0; i < 1000; i++) {
+			String userId = String.format("USER-%08d", i);
+			if (!first.variantOf(userId).getName().equals(second.variantOf(userId).getName())) {
+				moved++;
+			}
+		}
+		assertTrue(moved > 400 && moved < 600, "moved users: " + moved);
+	}
+
+	@Test
+	public void constructor_WithInvalidVariants_Throws() {
+		assertThrows(IllegalArgumentException.class, () -> experiment("default", List.of("control:database")));
+		assertThrows(IllegalArgumentException.class, () -> experiment("default", List.of("control:redis:50")));
+		assertThrows(IllegalArgumentException.class, () -> experiment("default", List.of("control:database:0")));
+		assertThrows(IllegalArgumentException.class, () -> experiment("default", List.of("control:database:50", "control:model:50")));
+	}
+
+	@Test
+	public void usesSource_CoversDefaultSourceAndVariants() {
+		RecommendationExperiment experiment = experiment("default", List.of("control:database:50", "frozen:snapshot:50"));
+
+		assertTrue(experiment.usesSource(RecommendationSourceType.SNAPSHOT));
+		assertTrue(experiment.usesSource(RecommendationSourceType.DATABASE));
+		assertFalse(experiment.usesSource(RecommendationSourceType.MODEL));
+	}
+
+	// sources are only handed out, never called, so none is needed here
+	private static RecommendationExperiment experiment(String name, List<String> variants) {
+		return new RecommendationExperiment(null, null, null, null, new SimpleMeterRegistry(), RecommendationSourceType.DATABASE, name, variants);
+	}
+}
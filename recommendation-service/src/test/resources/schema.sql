@@ -1,3 +1,5 @@
+DROP TABLE IF EXISTS events;
+DROP TABLE IF EXISTS product_dictionary;
 DROP TABLE IF EXISTS category_recommendations;
 DROP TABLE IF EXISTS recommendations;
 DROP TABLE IF EXISTS profiles;
@@ -9,9 +11,12 @@ CREATE TABLE users (
     user_id VARCHAR(100) PRIMARY KEY,
     username VARCHAR(50) NOT NULL UNIQUE,
     password VARCHAR(100) NOT NULL,
-    role VARCHAR(20) DEFAULT 'ROLE_USER'
+    role VARCHAR(20) DEFAULT 'ROLE_USER',
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
 );
 
+CREATE INDEX idx_users_created_at ON users (created_at);
+
 CREATE TABLE profiles (
     user_id VARCHAR(100) PRIMARY KEY,
     email VARCHAR(255) NOT NULL,
@@ -35,6 +40,7 @@ CREATE TABLE products (
 CREATE TABLE recommendations (
     user_id VARCHAR(100) PRIMARY KEY,
     product_list JSON,
+    product_list_bin VARBINARY(4096),
     FOREIGN KEY (user_id) REFERENCES users(user_id)
 );
 
@@ -42,6 +48,24 @@ CREATE TABLE category_recommendations (
     category VARCHAR(50) NOT NULL,
     user_id VARCHAR(100) NOT NULL,
     product_list JSON,
+    product_list_bin VARBINARY(4096),
     PRIMARY KEY (category, user_id),
     FOREIGN KEY (user_id) REFERENCES users(user_id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX idx_category_recommendations_user_id ON category_recommendations (user_id);
+
+CREATE TABLE product_dictionary (
+    product_index INT PRIMARY KEY,
+    parent_asin VARCHAR(50) NOT NULL UNIQUE
+);
+
+CREATE TABLE events (
+    event_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id VARCHAR(100) NOT NULL,
+    parent_asin VARCHAR(50) NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    occurred_at TIMESTAMP(3) NOT NULL
+);
+
+CREATE INDEX idx_events_user_id ON events (user_id);